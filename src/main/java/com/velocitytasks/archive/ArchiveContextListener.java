@@ -0,0 +1,85 @@
+package com.velocitytasks.archive;
+
+import com.velocitytasks.service.TaskService;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Attaches a task archive and starts the archiver, as configured by the
+ * {@code velocitytasks.archive.*} context parameters. Each parameter can be overridden by a
+ * system property of the same name.
+ *
+ * <ul>
+ *   <li>{@code velocitytasks.archive.directory} - where the archive is kept; archiving is off if empty (default)</li>
+ *   <li>{@code velocitytasks.archive.maxAge} - how long completed tasks stay in memory, as an ISO-8601 duration (default {@code P30D})</li>
+ *   <li>{@code velocitytasks.archive.interval} - how often the archiver runs (default {@code PT1H})</li>
+ * </ul>
+ */
+public class ArchiveContextListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(ArchiveContextListener.class.getName());
+    private static final String PARAM_DIRECTORY = "velocitytasks.archive.directory";
+    private static final String PARAM_MAX_AGE = "velocitytasks.archive.maxAge";
+    private static final String PARAM_INTERVAL = "velocitytasks.archive.interval";
+    private static final String DEFAULT_MAX_AGE = "P30D";
+    private static final String DEFAULT_INTERVAL = "PT1H";
+
+    private TaskArchive archive;
+    private TaskArchiver archiver;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String directory = getSetting(context, PARAM_DIRECTORY, "");
+        if (directory.isEmpty()) {
+            return;
+        }
+        TaskService taskService = TaskService.getInstance();
+
+        try {
+            Duration maxAge = Duration.parse(getSetting(context, PARAM_MAX_AGE, DEFAULT_MAX_AGE).trim());
+            Duration interval = Duration.parse(getSetting(context, PARAM_INTERVAL, DEFAULT_INTERVAL).trim());
+            archive = TaskArchive.open(Paths.get(directory.trim()));
+            taskService.setArchive(archive);
+            archiver = new TaskArchiver(taskService, archive, maxAge).start(interval);
+            LOGGER.info("Archiving tasks completed more than " + maxAge + " ago to " + directory.trim()
+                    + " (" + archive.getTaskCount() + " archived)");
+        } catch (IOException | DateTimeParseException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Failed to start task archiving", e);
+            contextDestroyed(event);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (archiver != null) {
+            archiver.close();
+            archiver = null;
+        }
+        if (archive != null) {
+            TaskService.getInstance().setArchive(null);
+            try {
+                archive.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing task archive", e);
+            }
+            archive = null;
+        }
+    }
+
+    private static String getSetting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = context.getInitParameter(name);
+        }
+        return value != null && !value.trim().isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,720 @@
+package com.velocitytasks.archive;
+
+import com.velocitytasks.codec.BinaryTaskCodec;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold store for archived tasks: an append-only file of compressed blocks on local disk.
+ * Every archived task is completed.
+ *
+ * <pre>
+ * block   := magic(int) headerLength(int) payloadLength(int) headerCrc(int) payloadCrc(int) header payload
+ * header  := count(int) priorityCount(int)* minId(utf) maxId(utf) bloomWords(int) bloomWord(long)*
+ * payload := deflate(BinaryTaskCodec task list, sorted by ID)
+ * </pre>
+ *
+ * <p>Only the headers are kept in memory. They form a sparse index: a lookup by ID reads just
+ * the blocks whose ID range and Bloom filter admit it, and the per-priority counts answer
+ * statistics without reading any payload. Archived tasks are immutable; removing one appends
+ * a tombstone ({@code block:id}) to a separate log, and a later copy of the same task in a
+ * newer block is unaffected by tombstones of older copies.
+ *
+ * <p>Once removed tasks outnumber live ones, {@linkplain #compact compaction} rewrites the live
+ * tasks into a new file that replaces the blocks and all tombstones at once. It is put off
+ * while a {@linkplain #openReader reader} is open, since readers hold on to block positions.
+ *
+ * <p>A block cut short by a crash is truncated away on open, and an interrupted compaction is
+ * finished or discarded. Appends and removals are serialized; reads run concurrently with them
+ * and with each other, and only compaction excludes everything else.
+ */
+public class TaskArchive implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TaskArchive.class.getName());
+    public static final int DEFAULT_BLOCK_TASKS = 512;
+    static final String BLOCKS_FILE = "blocks.dat";
+    static final String TOMBSTONES_FILE = "tombstones.log";
+    /** Blocks being rewritten by a compaction */
+    static final String COMPACTING_FILE = "blocks.dat.compacting";
+    /** Complete rewritten blocks, replacing {@link #BLOCKS_FILE} once the tombstones are gone */
+    static final String COMPACTED_FILE = "blocks.dat.compacted";
+
+    private static final int MAGIC = 0x56544231; // "VTB1"
+    private static final int FIXED_HEADER_BYTES = 20;
+    private static final int BLOOM_BITS_PER_TASK = 10;
+    private static final int BLOOM_HASHES = 4;
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private final Path directory;
+    private final int blockTasks;
+    /** Shared by every other operation; compaction takes it exclusively to swap the files */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel blocksFile;
+    private FileChannel tombstonesFile;
+    private final List<Block> blocks = new CopyOnWriteArrayList<>();
+    private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+    private final AtomicLongArray liveCounts = new AtomicLongArray(PRIORITIES.length);
+    private final AtomicInteger openReaders = new AtomicInteger();
+
+    private TaskArchive(Path directory, int blockTasks) throws IOException {
+        this.directory = directory;
+        this.blockTasks = blockTasks;
+        Files.createDirectories(directory);
+        if (Files.exists(directory.resolve(COMPACTED_FILE))) {
+            finishCompaction();
+        }
+        Files.deleteIfExists(directory.resolve(COMPACTING_FILE));
+        openFiles();
+    }
+
+    private void openFiles() throws IOException {
+        blocksFile = FileChannel.open(directory.resolve(BLOCKS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            tombstonesFile = FileChannel.open(directory.resolve(TOMBSTONES_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            blocksFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open (or create) the archive in a directory
+     */
+    public static TaskArchive open(Path directory) throws IOException {
+        return open(directory, DEFAULT_BLOCK_TASKS);
+    }
+
+    public static TaskArchive open(Path directory, int blockTasks) throws IOException {
+        if (blockTasks <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        TaskArchive archive = new TaskArchive(directory, blockTasks);
+        try {
+            archive.load();
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * Durably append tasks, in blocks of up to the configured size. Only completed tasks
+     * can be archived.
+     */
+    public void append(List<Task> tasks) throws IOException {
+        for (Task task : tasks) {
+            if (task.getId() == null || !task.isCompleted()) {
+                throw new IllegalArgumentException("Only completed tasks with an ID can be archived");
+            }
+        }
+        List<Task> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparing(Task::getId));
+        lock.readLock().lock();
+        try {
+            synchronized (this) {
+                for (int from = 0; from < sorted.size(); from += blockTasks) {
+                    addBlock(writeBlock(blocksFile, sorted.subList(from, Math.min(sorted.size(), from + blockTasks))));
+                }
+                blocksFile.force(false);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The newest live copy of an archived task
+     */
+    public Optional<Task> get(String id) throws IOException {
+        lock.readLock().lock();
+        try {
+            Located located = locate(id);
+            return located != null ? Optional.of(located.task) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an archived task (for example because it was deleted or moved back to the
+     * hot store)
+     *
+     * @return the task that was removed, or {@code null} if it was not archived
+     */
+    public Task remove(String id) throws IOException {
+        lock.readLock().lock();
+        try {
+            // Most IDs were never archived; find that out without waiting for an append
+            if (locate(id) == null) {
+                return null;
+            }
+            synchronized (this) {
+                Located located = locate(id);
+                if (located == null) {
+                    return null;
+                }
+                String tombstone = located.blockIndex + ":" + id;
+                byte[] line = (tombstone + "\n").getBytes(StandardCharsets.UTF_8);
+                writeFully(tombstonesFile, ByteBuffer.wrap(line), tombstonesFile.size());
+                tombstonesFile.force(false);
+                tombstones.add(tombstone);
+                liveCounts.decrementAndGet(priorityOf(located.task).ordinal());
+                return located.task;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every live archived task, optionally only those of one priority
+     */
+    public void scan(TaskPriority priority, Consumer<Task> consumer) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<Block> current = new ArrayList<>(blocks);
+            for (int index = 0; index < current.size(); index++) {
+                Block block = current.get(index);
+                if (priority != null && block.priorityCounts[priority.ordinal()] == 0) {
+                    continue;
+                }
+                for (Task task : readBlock(block)) {
+                    if ((priority == null || priorityOf(task) == priority) && !isTombstoned(index, task.getId())) {
+                        consumer.accept(task);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Open a reader over the blocks archived so far, returning their live tasks one block at
+     * a time. Tasks removed before the reader gets to their block are skipped. Close it when
+     * done; until then compaction is put off.
+     */
+    public Reader openReader() {
+        lock.readLock().lock();
+        try {
+            openReaders.incrementAndGet();
+            return new Reader(new ArrayList<>(blocks));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether removed tasks take up at least as much of the archive as live ones, and at least
+     * a block's worth, and no reader is open
+     */
+    public boolean needsCompaction() {
+        int removed = tombstones.size();
+        return removed >= blockTasks && removed >= getTaskCount() && openReaders.get() == 0;
+    }
+
+    /**
+     * Rewrite the archive with only its live tasks, dropping removed tasks, copies superseded
+     * by a newer block, and every tombstone. Other operations wait until it is done. Nothing
+     * is rewritten while a reader is open.
+     *
+     * @return the number of live tasks kept
+     */
+    public long compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (openReaders.get() > 0) {
+                return getTaskCount();
+            }
+            Path compacting = directory.resolve(COMPACTING_FILE);
+            try (FileChannel file = FileChannel.open(compacting, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // Newest first, so only the newest copy of a task is kept
+                Set<String> kept = new HashSet<>();
+                List<Task> pending = new ArrayList<>();
+                for (int index = blocks.size() - 1; index >= 0; index--) {
+                    for (Task task : readBlock(blocks.get(index))) {
+                        if (!isTombstoned(index, task.getId()) && kept.add(task.getId())) {
+                            pending.add(task);
+                        }
+                    }
+                    if (pending.size() >= blockTasks || index == 0) {
+                        pending.sort(Comparator.comparing(Task::getId));
+                        for (int from = 0; from < pending.size(); from += blockTasks) {
+                            writeBlock(file, pending.subList(from, Math.min(pending.size(), from + blockTasks)));
+                        }
+                        pending.clear();
+                    }
+                }
+                file.force(true);
+            }
+            Files.move(compacting, directory.resolve(COMPACTED_FILE), StandardCopyOption.ATOMIC_MOVE);
+
+            close();
+            try {
+                finishCompaction();
+            } finally {
+                openFiles();
+                blocks.clear();
+                tombstones.clear();
+                for (int i = 0; i < liveCounts.length(); i++) {
+                    liveCounts.set(i, 0);
+                }
+                load();
+            }
+            return getTaskCount();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the blocks with the compacted ones. Tombstones name blocks of the old file, so
+     * they are dropped first; until the rename, the compacted file exists and a reopened
+     * archive finishes the job.
+     */
+    private void finishCompaction() throws IOException {
+        try (FileChannel file = FileChannel.open(directory.resolve(TOMBSTONES_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(directory.resolve(COMPACTED_FILE), directory.resolve(BLOCKS_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Number of live archived tasks
+     */
+    public long getTaskCount() {
+        long total = 0;
+        for (int i = 0; i < liveCounts.length(); i++) {
+            total += liveCounts.get(i);
+        }
+        return total;
+    }
+
+    public long getTaskCount(TaskPriority priority) {
+        return liveCounts.get(priority.ordinal());
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public long getSizeBytes() throws IOException {
+        lock.readLock().lock();
+        try {
+            return blocksFile.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            blocksFile.close();
+        } finally {
+            tombstonesFile.close();
+        }
+    }
+
+    private void load() throws IOException {
+        long size = blocksFile.size();
+        long position = 0;
+        while (position < size) {
+            Block block = readHeader(position, size);
+            if (block == null) {
+                LOGGER.warning("Truncating incomplete archive block at offset " + position);
+                blocksFile.truncate(position);
+                break;
+            }
+            addBlock(block);
+            position = block.payloadOffset + block.payloadLength;
+        }
+        loadTombstones();
+    }
+
+    private void loadTombstones() throws IOException {
+        byte[] content = new byte[(int) tombstonesFile.size()];
+        readFully(tombstonesFile, ByteBuffer.wrap(content), 0);
+        Map<Integer, List<String>> idsByBlock = new HashMap<>();
+        for (String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+            int separator = line.indexOf(':');
+            if (separator <= 0 || !tombstones.add(line)) {
+                continue;
+            }
+            int blockIndex = Integer.parseInt(line.substring(0, separator));
+            idsByBlock.computeIfAbsent(blockIndex, key -> new ArrayList<>()).add(line.substring(separator + 1));
+        }
+        // Tombstoned tasks no longer count; reading their blocks once tells their priorities
+        for (Map.Entry<Integer, List<String>> entry : idsByBlock.entrySet()) {
+            if (entry.getKey() >= blocks.size()) {
+                continue;
+            }
+            List<Task> tasks = readBlock(blocks.get(entry.getKey()));
+            for (String id : entry.getValue()) {
+                Task task = find(tasks, id);
+                if (task != null) {
+                    liveCounts.decrementAndGet(priorityOf(task).ordinal());
+                }
+            }
+        }
+    }
+
+    private void addBlock(Block block) {
+        blocks.add(block);
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            liveCounts.addAndGet(i, block.priorityCounts[i]);
+        }
+    }
+
+    private Located locate(String id) throws IOException {
+        if (id == null) {
+            return null;
+        }
+        List<Block> current = new ArrayList<>(blocks);
+        // Newest first: a task archived again after being restored lives in a later block
+        for (int index = current.size() - 1; index >= 0; index--) {
+            Block block = current.get(index);
+            if (id.compareTo(block.minId) < 0 || id.compareTo(block.maxId) > 0 || !block.mightContain(id)) {
+                continue;
+            }
+            Task task = find(readBlock(block), id);
+            if (task != null) {
+                return isTombstoned(index, id) ? null : new Located(index, task);
+            }
+        }
+        return null;
+    }
+
+    private boolean isTombstoned(int blockIndex, String id) {
+        return !tombstones.isEmpty() && tombstones.contains(blockIndex + ":" + id);
+    }
+
+    private Block writeBlock(FileChannel file, List<Task> tasks) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(tasks.size() * 96);
+        BinaryTaskCodec.writeTasks(encoded, tasks);
+        byte[] payload = deflate(encoded.toByteArray());
+
+        int[] priorityCounts = new int[PRIORITIES.length];
+        for (Task task : tasks) {
+            priorityCounts[priorityOf(task).ordinal()]++;
+        }
+        long[] bloom = new long[Math.max(1, (tasks.size() * BLOOM_BITS_PER_TASK + 63) / 64)];
+        for (Task task : tasks) {
+            addToBloom(bloom, task.getId());
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(64 + bloom.length * 8);
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(tasks.size());
+        for (int count : priorityCounts) {
+            header.writeInt(count);
+        }
+        header.writeUTF(tasks.get(0).getId());
+        header.writeUTF(tasks.get(tasks.size() - 1).getId());
+        header.writeInt(bloom.length);
+        for (long word : bloom) {
+            header.writeLong(word);
+        }
+        header.flush();
+        byte[] headerContent = headerBytes.toByteArray();
+
+        ByteBuffer record = ByteBuffer.allocate(FIXED_HEADER_BYTES + headerContent.length + payload.length);
+        record.putInt(MAGIC);
+        record.putInt(headerContent.length);
+        record.putInt(payload.length);
+        record.putInt(crc(headerContent));
+        record.putInt(crc(payload));
+        record.put(headerContent);
+        record.put(payload);
+        record.flip();
+
+        long offset = file.size();
+        writeFully(file, record, offset);
+        return new Block(offset + FIXED_HEADER_BYTES + headerContent.length, payload.length, crc(payload),
+                tasks.size(), priorityCounts, tasks.get(0).getId(), tasks.get(tasks.size() - 1).getId(), bloom);
+    }
+
+    /**
+     * Read the block header at a position, or {@code null} if it is incomplete or corrupt
+     */
+    private Block readHeader(long position, long fileSize) throws IOException {
+        if (fileSize - position < FIXED_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_BYTES);
+        readFully(blocksFile, fixed, position);
+        fixed.flip();
+        int magic = fixed.getInt();
+        int headerLength = fixed.getInt();
+        int payloadLength = fixed.getInt();
+        int headerCrc = fixed.getInt();
+        int payloadCrc = fixed.getInt();
+        long payloadOffset = position + FIXED_HEADER_BYTES + headerLength;
+        if (magic != MAGIC || headerLength < 0 || payloadLength < 0 || payloadOffset + payloadLength > fileSize) {
+            return null;
+        }
+        byte[] headerContent = new byte[headerLength];
+        readFully(blocksFile, ByteBuffer.wrap(headerContent), position + FIXED_HEADER_BYTES);
+        if (crc(headerContent) != headerCrc) {
+            return null;
+        }
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerContent));
+        int count = header.readInt();
+        int[] priorityCounts = new int[PRIORITIES.length];
+        for (int i = 0; i < priorityCounts.length; i++) {
+            priorityCounts[i] = header.readInt();
+        }
+        String minId = header.readUTF();
+        String maxId = header.readUTF();
+        long[] bloom = new long[header.readInt()];
+        for (int i = 0; i < bloom.length; i++) {
+            bloom[i] = header.readLong();
+        }
+        return new Block(payloadOffset, payloadLength, payloadCrc, count, priorityCounts, minId, maxId, bloom);
+    }
+
+    private List<Task> readBlock(Block block) throws IOException {
+        byte[] payload = new byte[block.payloadLength];
+        readFully(blocksFile, ByteBuffer.wrap(payload), block.payloadOffset);
+        if (crc(payload) != block.payloadCrc) {
+            throw new IOException("Corrupt archive block at offset " + block.payloadOffset);
+        }
+        return BinaryTaskCodec.readTasks(new ByteArrayInputStream(inflate(payload)));
+    }
+
+    private static Task find(List<Task> sortedTasks, String id) {
+        int low = 0;
+        int high = sortedTasks.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = sortedTasks.get(middle).getId().compareTo(id);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return sortedTasks.get(middle);
+            }
+        }
+        return null;
+    }
+
+    private static TaskPriority priorityOf(Task task) {
+        return task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM;
+    }
+
+    private static void addToBloom(long[] bloom, String id) {
+        long bits = bloom.length * 64L;
+        int h1 = id.hashCode();
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Truncated archive block");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    /**
+     * In-memory header of one block
+     */
+    private static final class Block {
+        final long payloadOffset;
+        final int payloadLength;
+        final int payloadCrc;
+        final int count;
+        final int[] priorityCounts;
+        final String minId;
+        final String maxId;
+        final long[] bloom;
+
+        Block(long payloadOffset, int payloadLength, int payloadCrc, int count, int[] priorityCounts,
+              String minId, String maxId, long[] bloom) {
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+            this.payloadCrc = payloadCrc;
+            this.count = count;
+            this.priorityCounts = priorityCounts;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.bloom = bloom;
+        }
+
+        boolean mightContain(String id) {
+            long bits = bloom.length * 64L;
+            int h1 = id.hashCode();
+            int h2 = mix(h1) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bits);
+                if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cursor over the blocks of the archive as of when it was opened; see {@link #openReader}.
+     * Read by one thread at a time.
+     */
+    public final class Reader implements Closeable {
+        private final List<Block> readBlocks;
+        private int next;
+        private boolean closed;
+
+        private Reader(List<Block> readBlocks) {
+            this.readBlocks = readBlocks;
+        }
+
+        /**
+         * The live tasks of the next block that has any
+         *
+         * @return the tasks, sorted by ID; empty once every block has been read
+         */
+        public List<Task> nextBlock() throws IOException {
+            lock.readLock().lock();
+            try {
+                while (!closed && next < readBlocks.size()) {
+                    // Without compaction, block indexes still match the tombstones
+                    int index = next++;
+                    List<Task> live = new ArrayList<>();
+                    for (Task task : readBlock(readBlocks.get(index))) {
+                        if (!isTombstoned(index, task.getId())) {
+                            live.add(task);
+                        }
+                    }
+                    if (!live.isEmpty()) {
+                        return live;
+                    }
+                }
+                return new ArrayList<>();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                openReaders.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Located {
+        final int blockIndex;
+        final Task task;
+
+        Located(int blockIndex, Task task) {
+            this.blockIndex = blockIndex;
+            this.task = task;
+        }
+    }
+}
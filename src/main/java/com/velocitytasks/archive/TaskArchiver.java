@@ -0,0 +1,132 @@
+package com.velocitytasks.archive;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.service.TaskQuery;
+import com.velocitytasks.service.TaskService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically moves tasks that were completed longer ago than a maximum age from memory
+ * into a {@link TaskArchive}. A task's last update time stands in for its completion time, or
+ * its creation time if it has none; tasks with neither are never archived.
+ *
+ * <p>Each batch is written to the archive before it is evicted from memory, so a task is
+ * always in at least one of the two. A task updated between the two steps stays in memory
+ * and its now stale archived copy is removed again. After each run the archive is compacted
+ * if removed tasks have come to outnumber live ones.
+ */
+public class TaskArchiver implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TaskArchiver.class.getName());
+    static final int BATCH_SIZE = 4096;
+
+    private final TaskService taskService;
+    private final TaskArchive archive;
+    private final Duration maxAge;
+    private final ScheduledExecutorService scheduler;
+
+    public TaskArchiver(TaskService taskService, TaskArchive archive, Duration maxAge) {
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("Maximum age cannot be negative");
+        }
+        this.taskService = taskService;
+        this.archive = archive;
+        this.maxAge = maxAge;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Archive old tasks now and then every interval
+     */
+    public TaskArchiver start(Duration interval) {
+        long millis = interval.toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Archiving failed; retrying next interval", e);
+            }
+        }, 0, millis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Archive every task completed before the cutoff
+     *
+     * @return the number of tasks moved to the archive
+     */
+    public long runOnce() throws IOException {
+        String cutoff = LocalDateTime.now().minus(maxAge).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        long archived = 0;
+        while (true) {
+            // Oldest first, so each batch is a prefix of what remains to be archived
+            List<Task> candidates = taskService.query(TaskQuery.all()
+                    .completed(true).sort(TaskQuery.Sort.UPDATED_ASC).limit(BATCH_SIZE));
+            List<Task> batch = new ArrayList<>(candidates.size());
+            for (Task task : candidates) {
+                if (task.getUpdatedAt() == null) {
+                    // Sorted first, so later candidates may still be old enough
+                    if (task.getCreatedAt() != null && task.getCreatedAt().compareTo(cutoff) < 0) {
+                        batch.add(task);
+                    }
+                    continue;
+                }
+                if (task.getUpdatedAt().compareTo(cutoff) >= 0) {
+                    break;
+                }
+                batch.add(task);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            archive.append(batch);
+            int evicted = 0;
+            for (Task task : batch) {
+                if (taskService.evictToArchive(task)) {
+                    evicted++;
+                } else {
+                    archive.remove(task.getId());
+                }
+            }
+            archived += evicted;
+            if (evicted == 0 || batch.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            LOGGER.info("Archived " + archived + " completed tasks");
+        }
+        if (archive.needsCompaction()) {
+            LOGGER.info("Compacted task archive to " + archive.compact() + " live tasks");
+        }
+        return archived;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.velocitytasks.codec;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link Task} and task lists for service-to-service traffic.
+ *
+ * <pre>
+ * message   := version(1 byte) (task | list)
+ * list      := varint(count) task*
+ * task      := string(id) string(title) priority completed(1 byte) timestamp(createdAt) timestamp(updatedAt)
+ * string    := varint(utf8Length + 1) utf8Bytes      -- 0 encodes null
+ * priority  := 1 byte                                -- 0 = null, otherwise ordinal + 1
+ * timestamp := 0 (null)
+ *            | 1 zigzagVarint(epochSecond) varint(nanos)
+ *            | 2 string                              -- non-canonical values are kept verbatim
+ * </pre>
+ */
+public final class BinaryTaskCodec {
+    public static final String MEDIA_TYPE = "application/x-velocitytasks";
+    private static final int VERSION = 1;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+    private static final int MAX_LIST_TASKS = 1 << 20;
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private static final int TIMESTAMP_NULL = 0;
+    private static final int TIMESTAMP_EPOCH = 1;
+    private static final int TIMESTAMP_STRING = 2;
+
+    private BinaryTaskCodec() {
+    }
+
+    /**
+     * Whether an {@code Accept} header value asks for the binary format: one of its media
+     * ranges names it exactly, with a non-zero quality. Wildcards keep the JSON default.
+     */
+    public static boolean accepted(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        for (String range : accept.split(",")) {
+            String[] parts = range.split(";");
+            if (!isMediaType(parts[0])) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                int equals = parts[i].indexOf('=');
+                if (equals > 0 && parts[i].substring(0, equals).trim().equalsIgnoreCase("q")) {
+                    return quality(parts[i].substring(equals + 1).trim()) > 0;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a {@code Content-Type} header value is the binary format, whatever its parameters
+     */
+    public static boolean isContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        return isMediaType(end < 0 ? contentType : contentType.substring(0, end));
+    }
+
+    private static boolean isMediaType(String type) {
+        // Media types are case-insensitive
+        return type.trim().equalsIgnoreCase(MEDIA_TYPE);
+    }
+
+    /**
+     * Value of a {@code q} parameter; a malformed one makes the range unacceptable
+     */
+    private static double quality(String value) {
+        try {
+            double quality = Double.parseDouble(value);
+            return quality >= 0 && quality <= 1 ? quality : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static void writeTask(OutputStream out, Task task) throws IOException {
+        Encoder encoder = new Encoder(out);
+        encoder.writeByte(VERSION);
+        encoder.writeTask(task);
+        encoder.flush();
+    }
+
+    public static void writeTasks(OutputStream out, Collection<Task> tasks) throws IOException {
+        Encoder encoder = new Encoder(out);
+        encoder.writeByte(VERSION);
+        encoder.writeVarint(tasks.size());
+        for (Task task : tasks) {
+            encoder.writeTask(task);
+        }
+        encoder.flush();
+    }
+
+    /**
+     * Read a message holding one task, which must make up the whole stream
+     */
+    public static Task readTask(InputStream in) throws IOException {
+        Decoder decoder = new Decoder(in);
+        decoder.readVersion();
+        Task task = decoder.readTask();
+        decoder.readEnd();
+        return task;
+    }
+
+    /**
+     * Read a message holding a task list, which must make up the whole stream
+     */
+    public static List<Task> readTasks(InputStream in) throws IOException {
+        Decoder decoder = new Decoder(in);
+        decoder.readVersion();
+        long count = decoder.readVarint();
+        if (count < 0 || count > MAX_LIST_TASKS) {
+            throw new IOException("Invalid task count: " + count);
+        }
+        List<Task> tasks = new ArrayList<>((int) Math.min(count, 1024));
+        for (long i = 0; i < count; i++) {
+            tasks.add(decoder.readTask());
+        }
+        decoder.readEnd();
+        return tasks;
+    }
+
+    /**
+     * Buffered writer; encodes straight into its buffer without intermediate byte arrays
+     */
+    private static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private final long[] timestamp = new long[2];
+        private int position;
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeTask(Task task) throws IOException {
+            writeString(task.getId());
+            writeString(task.getTitle());
+            writeByte(task.getPriority() == null ? 0 : task.getPriority().ordinal() + 1);
+            writeByte(task.isCompleted() ? 1 : 0);
+            writeTimestamp(task.getCreatedAt());
+            writeTimestamp(task.getUpdatedAt());
+        }
+
+        void writeTimestamp(String value) throws IOException {
+            if (value == null) {
+                writeByte(TIMESTAMP_NULL);
+            } else if (IsoTimestamps.parse(value, timestamp)) {
+                writeByte(TIMESTAMP_EPOCH);
+                writeVarint((timestamp[0] << 1) ^ (timestamp[0] >> 63));
+                writeVarint(timestamp[1]);
+            } else {
+                writeByte(TIMESTAMP_STRING);
+                writeString(value);
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            int length = value.length();
+            int utf8Length = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    utf8Length += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            writeVarint(utf8Length + 1L);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    writeByte(c);
+                } else if (c < 0x800) {
+                    writeByte(0xC0 | (c >> 6));
+                    writeByte(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    writeByte(0xF0 | (codePoint >> 18));
+                    writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                    writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                    writeByte(0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Lone surrogates are replaced, as String.getBytes(UTF_8) does
+                    writeByte('?');
+                } else {
+                    writeByte(0xE0 | (c >> 12));
+                    writeByte(0x80 | ((c >> 6) & 0x3F));
+                    writeByte(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+    }
+
+    /**
+     * Buffered reader; strings are decoded directly from its buffer when they fit
+     */
+    private static final class Decoder {
+        private final InputStream in;
+        private byte[] buffer = new byte[8192];
+        private final StringBuilder timestampBuilder = new StringBuilder(29);
+        private int position;
+        private int limit;
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        void readVersion() throws IOException {
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary task format version: " + version);
+            }
+        }
+
+        void readEnd() throws IOException {
+            if (position < limit || in.read() >= 0) {
+                throw new IOException("Trailing bytes after binary task message");
+            }
+        }
+
+        Task readTask() throws IOException {
+            String id = readString();
+            String title = readString();
+            int priority = readByte();
+            if (priority > PRIORITIES.length) {
+                throw new IOException("Invalid priority: " + priority);
+            }
+            boolean completed = readByte() != 0;
+            String createdAt = readTimestamp();
+            String updatedAt = readTimestamp();
+            return new Task(id, title, priority == 0 ? null : PRIORITIES[priority - 1],
+                    completed, createdAt, updatedAt);
+        }
+
+        String readTimestamp() throws IOException {
+            int tag = readByte();
+            if (tag == TIMESTAMP_NULL) {
+                return null;
+            } else if (tag == TIMESTAMP_EPOCH) {
+                long zigzag = readVarint();
+                long epochSecond = (zigzag >>> 1) ^ -(zigzag & 1);
+                long nanos = readVarint();
+                if (nanos < 0 || nanos > 999_999_999) {
+                    throw new IOException("Invalid timestamp nanos: " + nanos);
+                }
+                timestampBuilder.setLength(0);
+                IsoTimestamps.format(epochSecond, (int) nanos, timestampBuilder);
+                return timestampBuilder.toString();
+            } else if (tag == TIMESTAMP_STRING) {
+                return readString();
+            }
+            throw new IOException("Invalid timestamp tag: " + tag);
+        }
+
+        String readString() throws IOException {
+            long encoded = readVarint();
+            if (encoded == 0) {
+                return null;
+            }
+            long length = encoded - 1;
+            if (length > MAX_STRING_BYTES) {
+                throw new IOException("String too long: " + length);
+            }
+            int size = (int) length;
+            if (limit - position < size) {
+                compact(size);
+            }
+            String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                position = 0;
+                limit = in.read(buffer, 0, buffer.length);
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new EOFException("Truncated binary task message");
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        /**
+         * Ensure {@code size} bytes are buffered contiguously from {@code position}
+         */
+        private void compact(int size) throws IOException {
+            int available = limit - position;
+            byte[] target = size > buffer.length ? new byte[size] : buffer;
+            System.arraycopy(buffer, position, target, 0, available);
+            buffer = target;
+            position = 0;
+            limit = available;
+            while (limit < size) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new EOFException("Truncated binary task message");
+                }
+                limit += read;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.velocitytasks.codec;
+
+import java.time.LocalDate;
+
+/**
+ * Allocation-free conversion between the {@code ISO_LOCAL_DATE_TIME} strings stored on tasks
+ * ({@code yyyy-MM-ddTHH:mm:ss[.fraction]}, fraction without trailing zeros) and epoch seconds
+ * plus nanoseconds.
+ */
+final class IsoTimestamps {
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private IsoTimestamps() {
+    }
+
+    /**
+     * Parse a canonical timestamp into {@code result[0] = epochSecond, result[1] = nanos}
+     *
+     * @return {@code false} if the value is not in canonical form and must be kept as a string
+     */
+    static boolean parse(String value, long[] result) {
+        int length = value.length();
+        if (length < 19 || length == 20 || length > 29
+                || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return false;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 28 && day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        int nanos = 0;
+        if (length > 19) {
+            if (value.charAt(19) != '.' || value.charAt(length - 1) == '0') {
+                return false;
+            }
+            int fraction = digits(value, 20, length - 20);
+            if (fraction < 0) {
+                return false;
+            }
+            nanos = fraction;
+            for (int i = length - 20; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        result[0] = epochDay * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        result[1] = nanos;
+        return true;
+    }
+
+    /**
+     * Append the canonical form of an epoch second and nanos to {@code out}
+     */
+    static void format(long epochSecond, int nanos, StringBuilder out) {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        pad(out, date.getYear(), 4).append('-');
+        pad(out, date.getMonthValue(), 2).append('-');
+        pad(out, date.getDayOfMonth(), 2).append('T');
+        pad(out, secondOfDay / 3600, 2).append(':');
+        pad(out, secondOfDay / 60 % 60, 2).append(':');
+        pad(out, secondOfDay % 60, 2);
+        if (nanos != 0) {
+            int digits = 9;
+            while (nanos % 10 == 0) {
+                nanos /= 10;
+                digits--;
+            }
+            out.append('.');
+            pad(out, nanos, digits);
+        }
+    }
+
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return LocalDate.of(year, month, 1).lengthOfMonth();
+    }
+
+    private static StringBuilder pad(StringBuilder out, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        return out.append(value);
+    }
+}
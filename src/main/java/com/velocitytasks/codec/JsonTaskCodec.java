@@ -0,0 +1,341 @@
+package com.velocitytasks.codec;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hand-written streaming JSON codec for {@link Task} and API error responses.
+ *
+ * <p>Output is byte-for-byte what the previous pretty-printing, HTML-safe Gson instance
+ * produced; input follows Gson's rules for the same types. Reading never runs the
+ * {@code Task()} constructor: fields the body omits are left {@code null} (priority defaults
+ * to {@code MEDIUM}, as before) and {@code TaskService.addTask} fills in the ID and timestamps.
+ */
+public final class JsonTaskCodec {
+    /** Newline-delimited JSON: one compact task object per line */
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    private static final String INDENT = "  ";
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['<'] = "\\u003c";
+        ESCAPES['>'] = "\\u003e";
+        ESCAPES['&'] = "\\u0026";
+        ESCAPES['='] = "\\u003d";
+        ESCAPES['\''] = "\\u0027";
+    }
+
+    private JsonTaskCodec() {
+    }
+
+    /**
+     * Create a writer with the API's output settings (two-space indent, HTML-safe)
+     */
+    public static JsonWriter newWriter(Writer out) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent(INDENT);
+        writer.setHtmlSafe(true);
+        return writer;
+    }
+
+    public static void writeTask(Writer out, Task task) throws IOException {
+        writeTask(out, task, "");
+    }
+
+    public static void writeTasks(Writer out, Collection<Task> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            out.write("[]");
+            return;
+        }
+        out.write("[\n" + INDENT);
+        boolean first = true;
+        for (Task task : tasks) {
+            if (!first) {
+                out.write(",\n" + INDENT);
+            }
+            writeTask(out, task, INDENT);
+            first = false;
+        }
+        out.write("\n]");
+    }
+
+    public static void writeError(Writer out, String message, int status) throws IOException {
+        JsonWriter writer = newWriter(out);
+        writer.beginObject();
+        writer.name("error").value(message);
+        writer.name("status").value(status);
+        writer.name("timestamp").value(System.currentTimeMillis());
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Write a task as one line of compact JSON followed by a newline, the record format of
+     * {@link #NDJSON_MEDIA_TYPE} streams
+     */
+    public static void writeTaskLine(Writer out, Task task) throws IOException {
+        writeTask(out, task, null);
+        out.write('\n');
+    }
+
+    /**
+     * Write one task object: pretty-printed with its opening brace already indented by
+     * {@code indent}, or compact on a single line if {@code indent} is {@code null}
+     */
+    private static void writeTask(Writer out, Task task, String indent) throws IOException {
+        String fieldIndent = indent != null ? indent + INDENT : null;
+        out.write('{');
+        writeStringField(out, fieldIndent, "id", task.getId(), true);
+        writeStringField(out, fieldIndent, "title", task.getTitle(), task.getId() == null);
+        boolean first = task.getId() == null && task.getTitle() == null;
+        if (task.getPriority() != null) {
+            writeName(out, fieldIndent, "priority", first);
+            out.write('"');
+            out.write(task.getPriority().name());
+            out.write('"');
+            first = false;
+        }
+        writeName(out, fieldIndent, "completed", first);
+        out.write(task.isCompleted() ? "true" : "false");
+        writeStringField(out, fieldIndent, "createdAt", task.getCreatedAt(), false);
+        writeStringField(out, fieldIndent, "updatedAt", task.getUpdatedAt(), false);
+        if (indent != null) {
+            out.write('\n');
+            out.write(indent);
+        }
+        out.write('}');
+    }
+
+    private static void writeStringField(Writer out, String indent, String name, String value, boolean first)
+            throws IOException {
+        if (value != null) {
+            writeName(out, indent, name, first);
+            writeQuoted(out, value);
+        }
+    }
+
+    private static void writeName(Writer out, String indent, String name, boolean first) throws IOException {
+        if (indent == null) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write('"');
+            out.write(name);
+            out.write("\":");
+            return;
+        }
+        out.write(first ? "\n" : ",\n");
+        out.write(indent);
+        out.write('"');
+        out.write(name);
+        out.write("\": ");
+    }
+
+    /**
+     * Write a quoted string with Gson's HTML-safe escaping, copying unescaped runs in bulk
+     */
+    private static void writeQuoted(Writer out, String value) throws IOException {
+        out.write('"');
+        int runStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < ESCAPES.length) {
+                replacement = ESCAPES[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (runStart < i) {
+                out.write(value, runStart, i - runStart);
+            }
+            out.write(replacement);
+            runStart = i + 1;
+        }
+        if (runStart < length) {
+            out.write(value, runStart, length - runStart);
+        }
+        out.write('"');
+    }
+
+    /**
+     * Read a single task
+     *
+     * @return the task, or {@code null} for an empty body or a JSON {@code null}
+     */
+    public static Task readTask(Reader in) throws IOException {
+        JsonReader reader = newReader(in);
+        if (isEmptyDocument(reader)) {
+            return null;
+        }
+        Task task = readTask(reader);
+        assertFullyConsumed(reader);
+        return task;
+    }
+
+    /**
+     * Read a task from one line of an {@link #NDJSON_MEDIA_TYPE} stream
+     *
+     * @return the task, or {@code null} for a blank line or a JSON {@code null}
+     */
+    public static Task readTaskLine(String line) throws IOException {
+        return readTask(new StringReader(line));
+    }
+
+    /**
+     * Read a JSON array of tasks
+     *
+     * @return the tasks, or {@code null} for an empty body or a JSON {@code null}
+     */
+    public static List<Task> readTasks(Reader in) throws IOException {
+        JsonReader reader = newReader(in);
+        if (isEmptyDocument(reader)) {
+            return null;
+        }
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            assertFullyConsumed(reader);
+            return null;
+        }
+        List<Task> tasks = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            tasks.add(readTask(reader));
+        }
+        reader.endArray();
+        assertFullyConsumed(reader);
+        return tasks;
+    }
+
+    public static Task readTask(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String id = null;
+        String title = null;
+        TaskPriority priority = TaskPriority.MEDIUM;
+        boolean completed = false;
+        String createdAt = null;
+        String updatedAt = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = readString(reader);
+                    break;
+                case "title":
+                    title = readString(reader);
+                    break;
+                case "priority":
+                    priority = readPriority(reader);
+                    break;
+                case "completed":
+                    completed = readBoolean(reader);
+                    break;
+                case "createdAt":
+                    createdAt = readString(reader);
+                    break;
+                case "updatedAt":
+                    updatedAt = readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Task(id, title, priority, completed, createdAt, updatedAt);
+    }
+
+    private static JsonReader newReader(Reader in) {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+        return reader;
+    }
+
+    private static boolean isEmptyDocument(JsonReader reader) throws IOException {
+        try {
+            reader.peek();
+            return false;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    private static void assertFullyConsumed(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    private static TaskPriority readPriority(JsonReader reader) throws IOException {
+        String name = readString(reader);
+        if (name == null) {
+            return null;
+        }
+        // Unknown constants read as null, matching Gson's enum handling
+        for (TaskPriority priority : PRIORITIES) {
+            if (priority.name().equals(name)) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+    private static boolean readBoolean(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(reader.nextString());
+        }
+        return reader.nextBoolean();
+    }
+}
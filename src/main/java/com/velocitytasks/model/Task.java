@@ -2,12 +2,13 @@ package com.velocitytasks.model;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.UUID;
 
 /**
  * Task model representing a single task in the VelocityTasks application.
  */
 public class Task {
+    private static volatile TaskIdGenerator idGenerator = new TimeOrderedIdGenerator();
+
     private String id;
     private String title;
     private TaskPriority priority;
@@ -16,7 +17,7 @@ public class Task {
     private String updatedAt;
 
     public Task() {
-        this.id = UUID.randomUUID().toString();
+        this.id = generateId();
         this.createdAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
         this.updatedAt = this.createdAt;
         this.completed = false;
@@ -29,6 +30,48 @@ public class Task {
         this.priority = priority;
     }
 
+    /**
+     * Create a task from stored field values without generating an ID or timestamps
+     */
+    public Task(String id, String title, TaskPriority priority, boolean completed,
+                String createdAt, String updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.priority = priority;
+        this.completed = completed;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Copy constructor; copies every field as-is without generating a new ID or timestamps
+     */
+    public Task(Task other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.priority = other.priority;
+        this.completed = other.completed;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
+    /**
+     * Generate a new task ID with the configured generator
+     */
+    public static String generateId() {
+        return idGenerator.nextId();
+    }
+
+    /**
+     * Replace the task ID generator (time-ordered version 7 UUIDs by default)
+     */
+    public static void setIdGenerator(TaskIdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("ID generator cannot be null");
+        }
+        idGenerator = generator;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
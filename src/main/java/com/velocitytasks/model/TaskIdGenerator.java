@@ -0,0 +1,21 @@
+package com.velocitytasks.model;
+
+import java.util.UUID;
+
+/**
+ * Strategy for generating new task IDs. The active generator is set with
+ * {@link Task#setIdGenerator(TaskIdGenerator)}.
+ */
+@FunctionalInterface
+public interface TaskIdGenerator {
+
+    /**
+     * Random version 4 UUIDs, as IDs were generated before time-ordered IDs
+     */
+    TaskIdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+    /**
+     * Generate a new, unique task ID
+     */
+    String nextId();
+}
@@ -0,0 +1,56 @@
+package com.velocitytasks.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates time-sortable version 7 UUIDs without shared state.
+ *
+ * <p>Layout: 48-bit Unix timestamp in milliseconds, version, a 12-bit per-thread counter that
+ * increases within each millisecond, variant, then 62 random bits from {@link ThreadLocalRandom}.
+ * IDs from one thread are strictly increasing; IDs from different threads are ordered by
+ * millisecond. The canonical lowercase string form sorts the same way as the numeric value,
+ * so IDs can be compared as strings.
+ *
+ * <p>The per-thread state is a plain {@code long[]}, so the worker threads of a servlet
+ * container never hold on to a class of this application after it is undeployed.
+ */
+public class TimeOrderedIdGenerator implements TaskIdGenerator {
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_LIMIT = 1 << COUNTER_BITS;
+
+    private static final int LAST_MILLIS = 0;
+    private static final int COUNTER = 1;
+
+    /** Last millisecond and counter of the calling thread */
+    private final ThreadLocal<long[]> state = ThreadLocal.withInitial(() -> new long[2]);
+
+    @Override
+    public String nextId() {
+        return nextUuid().toString();
+    }
+
+    public UUID nextUuid() {
+        long[] current = state.get();
+        long now = System.currentTimeMillis();
+        if (now > current[LAST_MILLIS]) {
+            current[LAST_MILLIS] = now;
+            // Start each millisecond at a random point in the lower half to keep headroom
+            current[COUNTER] = ThreadLocalRandom.current().nextInt(COUNTER_LIMIT >> 1);
+        } else if (++current[COUNTER] == COUNTER_LIMIT) {
+            // Counter exhausted (or the clock went backwards): borrow from the next millisecond
+            current[LAST_MILLIS]++;
+            current[COUNTER] = 0;
+        }
+        long mostSigBits = (current[LAST_MILLIS] << 16) | 0x7000L | current[COUNTER];
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() >>> 2) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Extract the creation time in milliseconds from an ID produced by this generator
+     */
+    public static long timestampOf(String id) {
+        return UUID.fromString(id).getMostSignificantBits() >>> 16;
+    }
+}
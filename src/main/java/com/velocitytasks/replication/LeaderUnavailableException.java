@@ -0,0 +1,12 @@
+package com.velocitytasks.replication;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a follower cannot forward a write because the leader is unreachable.
+ */
+public class LeaderUnavailableException extends IOException {
+    public LeaderUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,91 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.service.TaskService;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts this node as a replication leader or follower, as configured by the
+ * {@code velocitytasks.replication.*} context parameters. Each parameter can be overridden
+ * by a system property of the same name, so several nodes can run from one WAR on one host.
+ *
+ * <ul>
+ *   <li>{@code velocitytasks.replication.role} - {@code none} (default), {@code leader} or {@code follower}</li>
+ *   <li>{@code velocitytasks.replication.port} - port the leader listens on</li>
+ *   <li>{@code velocitytasks.replication.bindAddress} - address the leader listens on (loopback by default)</li>
+ *   <li>{@code velocitytasks.replication.secret} - shared secret of the leader and its followers;
+ *       required for a leader listening on anything but loopback</li>
+ *   <li>{@code velocitytasks.replication.leader} - {@code host:port} of the leader, for followers</li>
+ * </ul>
+ */
+public class ReplicationContextListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(ReplicationContextListener.class.getName());
+    public static final String LEADER_ATTRIBUTE = "velocitytasks.replication.leaderNode";
+    public static final String FOLLOWER_ATTRIBUTE = "velocitytasks.replication.followerNode";
+    private static final String PARAM_ROLE = "velocitytasks.replication.role";
+    private static final String PARAM_PORT = "velocitytasks.replication.port";
+    private static final String PARAM_LEADER = "velocitytasks.replication.leader";
+    private static final String PARAM_BIND_ADDRESS = "velocitytasks.replication.bindAddress";
+    private static final String PARAM_SECRET = "velocitytasks.replication.secret";
+    private static final int DEFAULT_PORT = 7070;
+
+    private Closeable node;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String role = getSetting(context, PARAM_ROLE, "none").trim().toLowerCase();
+        TaskService taskService = TaskService.getInstance();
+        String secret = getSetting(context, PARAM_SECRET, null);
+
+        try {
+            if ("leader".equals(role)) {
+                int port = Integer.parseInt(getSetting(context, PARAM_PORT, String.valueOf(DEFAULT_PORT)));
+                String bindAddress = getSetting(context, PARAM_BIND_ADDRESS, null);
+                ReplicationLeader leader = new ReplicationLeader(taskService,
+                        bindAddress != null ? InetAddress.getByName(bindAddress.trim()) : InetAddress.getLoopbackAddress(),
+                        port, secret, ReplicationLeader.DEFAULT_LOG_CAPACITY, ReplicationLeader.DEFAULT_MAX_BATCH).start();
+                context.setAttribute(LEADER_ATTRIBUTE, leader);
+                node = leader;
+            } else if ("follower".equals(role)) {
+                String leaderAddress = getSetting(context, PARAM_LEADER, "localhost:" + DEFAULT_PORT);
+                int separator = leaderAddress.lastIndexOf(':');
+                String host = leaderAddress.substring(0, separator);
+                int port = Integer.parseInt(leaderAddress.substring(separator + 1));
+                ReplicationFollower follower = new ReplicationFollower(taskService, host, port, secret).start();
+                context.setAttribute(FOLLOWER_ATTRIBUTE, follower);
+                node = follower;
+                LOGGER.info("Replicating from leader at " + leaderAddress);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to start replication as " + role, e);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (node != null) {
+            try {
+                node.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error stopping replication", e);
+            }
+        }
+    }
+
+    private static String getSetting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = context.getInitParameter(name);
+        }
+        return value != null && !value.trim().isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,36 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.model.Task;
+
+/**
+ * A single mutation in the replication log.
+ */
+public class ReplicationEntry {
+    public static final byte OP_PUT = 1;
+    public static final byte OP_DELETE = 2;
+
+    private final long offset;
+    private final byte op;
+    private final String taskId;
+    private final Task task;
+
+    private ReplicationEntry(long offset, byte op, String taskId, Task task) {
+        this.offset = offset;
+        this.op = op;
+        this.taskId = taskId;
+        this.task = task;
+    }
+
+    public static ReplicationEntry put(long offset, Task task) {
+        return new ReplicationEntry(offset, OP_PUT, task.getId(), task);
+    }
+
+    public static ReplicationEntry delete(long offset, String taskId) {
+        return new ReplicationEntry(offset, OP_DELETE, taskId, null);
+    }
+
+    public long getOffset() { return offset; }
+    public byte getOp() { return op; }
+    public String getTaskId() { return taskId; }
+    public Task getTask() { return task; }
+}
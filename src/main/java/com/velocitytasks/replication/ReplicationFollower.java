@@ -0,0 +1,385 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.service.TaskService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follower side of task replication. Subscribes to a {@link ReplicationLeader}, applies the
+ * streamed mutations to the local {@link TaskService} (which then serves reads), reconnects
+ * and catches up from its last applied offset after failures, and forwards writes to the leader.
+ */
+public class ReplicationFollower implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ReplicationFollower.class.getName());
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long READ_YOUR_WRITES_TIMEOUT_MILLIS = 2000;
+
+    private final TaskService taskService;
+    private final String leaderHost;
+    private final int leaderPort;
+    private final String secret;
+    private final Thread subscriber;
+    private final Object appliedMonitor = new Object();
+    private final Object writeLock = new Object();
+
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private volatile long leaderRunId;
+    private volatile long appliedOffset;
+    private volatile long leaderOffset;
+    private volatile long lastContactMillis;
+    private volatile Socket subscribeSocket;
+    private Socket writeSocket;
+    private DataInputStream writeIn;
+    private DataOutputStream writeOut;
+
+    public ReplicationFollower(TaskService taskService, String leaderHost, int leaderPort) {
+        this(taskService, leaderHost, leaderPort, null);
+    }
+
+    /**
+     * Create a follower that authenticates to the leader with a shared secret
+     */
+    public ReplicationFollower(TaskService taskService, String leaderHost, int leaderPort, String secret) {
+        this(taskService, leaderHost, leaderPort, secret, ReplicationProtocol.NO_RUN, ReplicationProtocol.BOOTSTRAP);
+    }
+
+    /**
+     * Create a follower for a replica that already holds the state of leader run
+     * {@code leaderRunId} up to {@code appliedOffset}; it catches up from the next offset
+     * instead of a full snapshot, unless the leader has restarted since.
+     */
+    public ReplicationFollower(TaskService taskService, String leaderHost, int leaderPort, String secret,
+            long leaderRunId, long appliedOffset) {
+        this.taskService = taskService;
+        this.leaderRunId = leaderRunId;
+        this.appliedOffset = appliedOffset;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+        this.secret = secret == null || secret.isEmpty() ? null : secret;
+        this.subscriber = new Thread(this::subscribeLoop,
+                "replication-follower-" + leaderHost + ":" + leaderPort);
+        this.subscriber.setDaemon(true);
+    }
+
+    /**
+     * Start replicating from the leader in the background
+     */
+    public ReplicationFollower start() {
+        subscriber.start();
+        return this;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Last leader offset applied locally ({@code -1} before the initial snapshot)
+     */
+    public long getAppliedOffset() {
+        return appliedOffset;
+    }
+
+    /**
+     * Run of the leader whose offsets {@link #getAppliedOffset()} counts
+     */
+    public long getLeaderRunId() {
+        return leaderRunId;
+    }
+
+    /**
+     * Latest leader offset this follower has heard of
+     */
+    public long getLeaderOffset() {
+        return leaderOffset;
+    }
+
+    /**
+     * Replica lag in log entries
+     */
+    public long getLag() {
+        return Math.max(0, leaderOffset - Math.max(0, appliedOffset));
+    }
+
+    /**
+     * Milliseconds since the last frame (data or heartbeat) from the leader
+     */
+    public long getMillisSinceLastContact() {
+        return lastContactMillis == 0 ? -1 : System.currentTimeMillis() - lastContactMillis;
+    }
+
+    /**
+     * Block until the given leader offset has been applied locally
+     *
+     * @return {@code true} if the offset was reached within the timeout
+     */
+    public boolean awaitOffset(long offset, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (appliedMonitor) {
+            while (appliedOffset < offset) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                appliedMonitor.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void subscribeLoop() {
+        long backoff = 100;
+        while (running) {
+            try (Socket socket = connect(ReplicationProtocol.CHANNEL_SUBSCRIBE)) {
+                subscribeSocket = socket;
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeLong(leaderRunId);
+                out.writeLong(appliedOffset == ReplicationProtocol.BOOTSTRAP
+                        ? ReplicationProtocol.BOOTSTRAP : appliedOffset + 1);
+                out.flush();
+                connected = true;
+                backoff = 100;
+                consume(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.FINE, "Replication stream from leader interrupted", e);
+                }
+            } finally {
+                connected = false;
+                subscribeSocket = null;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    private void consume(DataInputStream in) throws IOException {
+        while (running) {
+            byte frame = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            if (frame == ReplicationProtocol.FRAME_SNAPSHOT) {
+                long runId = in.readLong();
+                long offset = in.readLong();
+                List<Task> tasks = ReplicationProtocol.readSnapshotTasks(in);
+                taskService.applyReplicatedSnapshot(tasks);
+                // Offsets of a restarted leader start over
+                leaderOffset = runId == leaderRunId ? Math.max(leaderOffset, offset) : offset;
+                markApplied(offset);
+                leaderRunId = runId;
+                LOGGER.info("Applied replication snapshot of " + tasks.size() + " tasks at offset " + offset);
+            } else if (frame == ReplicationProtocol.FRAME_BATCH) {
+                leaderOffset = in.readLong();
+                List<ReplicationEntry> entries = ReplicationProtocol.readBatchEntries(in);
+                for (ReplicationEntry entry : entries) {
+                    if (entry.getOp() == ReplicationEntry.OP_PUT) {
+                        taskService.applyReplicatedPut(entry.getTask());
+                    } else {
+                        taskService.applyReplicatedDelete(entry.getTaskId());
+                    }
+                }
+                if (!entries.isEmpty()) {
+                    markApplied(entries.get(entries.size() - 1).getOffset());
+                }
+            } else {
+                throw new IOException("Unknown replication frame: " + frame);
+            }
+        }
+    }
+
+    private void markApplied(long offset) {
+        synchronized (appliedMonitor) {
+            appliedOffset = offset;
+            appliedMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Forward a new task to the leader
+     */
+    public Task forwardAdd(Task task) throws LeaderUnavailableException {
+        return forwardAdd(null, task);
+    }
+
+    /**
+     * Forward a new task to the leader, which applies a write with the same request ID only
+     * once, whichever follower forwards it
+     *
+     * @param requestId stable ID of the write, such as one derived from a client's idempotency
+     *                  key, or {@code null} for a fresh one
+     */
+    public Task forwardAdd(String requestId, Task task) throws LeaderUnavailableException {
+        WriteResult result = forward(ReplicationProtocol.WRITE_ADD, requestId, null, task);
+        if (result.status == ReplicationProtocol.STATUS_BAD_REQUEST) {
+            throw new IllegalArgumentException("Task rejected by leader");
+        }
+        return result.task;
+    }
+
+    /**
+     * Forward a task update to the leader
+     */
+    public Optional<Task> forwardUpdate(String id, Task updatedTask) throws LeaderUnavailableException {
+        return forwardUpdate(null, id, updatedTask);
+    }
+
+    /**
+     * Forward a task update to the leader; see {@link #forwardAdd(String, Task)} for the request ID
+     */
+    public Optional<Task> forwardUpdate(String requestId, String id, Task updatedTask)
+            throws LeaderUnavailableException {
+        WriteResult result = forward(ReplicationProtocol.WRITE_UPDATE, requestId, id, updatedTask);
+        if (result.status == ReplicationProtocol.STATUS_BAD_REQUEST) {
+            throw new IllegalArgumentException("Task rejected by leader");
+        }
+        return Optional.ofNullable(result.task);
+    }
+
+    /**
+     * Forward a task deletion to the leader
+     */
+    public boolean forwardDelete(String id) throws LeaderUnavailableException {
+        return forwardDelete(null, id);
+    }
+
+    /**
+     * Forward a task deletion to the leader; see {@link #forwardAdd(String, Task)} for the request ID
+     */
+    public boolean forwardDelete(String requestId, String id) throws LeaderUnavailableException {
+        return forward(ReplicationProtocol.WRITE_DELETE, requestId, id, null).status == ReplicationProtocol.STATUS_OK;
+    }
+
+    private WriteResult forward(byte op, String requestId, String id, Task task) throws LeaderUnavailableException {
+        if (requestId == null) {
+            requestId = UUID.randomUUID().toString();
+        }
+        WriteResult result;
+        synchronized (writeLock) {
+            try {
+                result = sendWrite(op, requestId, id, task);
+            } catch (IOException e) {
+                // The pooled connection may have gone stale; retry once on a fresh one. The leader
+                // answers a request ID it has seen with the original outcome, so this is safe even
+                // if the first attempt was applied and only its answer was lost.
+                closeWriteChannel();
+                try {
+                    result = sendWrite(op, requestId, id, task);
+                } catch (IOException retryFailure) {
+                    closeWriteChannel();
+                    throw new LeaderUnavailableException("Cannot forward write to leader at "
+                            + leaderHost + ":" + leaderPort, retryFailure);
+                }
+            }
+        }
+        // Read-your-writes: wait until the local replica has caught up with the write
+        try {
+            awaitOffset(result.offset, READ_YOUR_WRITES_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private WriteResult sendWrite(byte op, String requestId, String id, Task task) throws IOException {
+        if (writeSocket == null) {
+            writeSocket = connect(ReplicationProtocol.CHANNEL_WRITE);
+            writeIn = new DataInputStream(new BufferedInputStream(writeSocket.getInputStream()));
+            writeOut = new DataOutputStream(new BufferedOutputStream(writeSocket.getOutputStream()));
+        }
+        writeOut.writeByte(op);
+        ReplicationProtocol.writeString(writeOut, requestId);
+        if (id != null) {
+            ReplicationProtocol.writeString(writeOut, id);
+        }
+        if (task != null) {
+            ReplicationProtocol.writeTask(writeOut, task);
+        }
+        writeOut.flush();
+
+        WriteResult result = new WriteResult();
+        result.status = writeIn.readByte();
+        result.offset = writeIn.readLong();
+        if (writeIn.readBoolean()) {
+            result.task = ReplicationProtocol.readTask(writeIn);
+        }
+        return result;
+    }
+
+    private Socket connect(byte channel) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(leaderHost, leaderPort), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            // The leader heartbeats subscribers, so a silent socket means the leader is gone
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeByte(channel);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] nonce = new byte[ReplicationProtocol.NONCE_BYTES];
+            in.readFully(nonce);
+            ReplicationProtocol.writeProof(out, ReplicationProtocol.proof(secret, nonce, channel));
+            out.flush();
+            if (in.readByte() != ReplicationProtocol.HANDSHAKE_ACCEPTED) {
+                LOGGER.warning("Leader at " + leaderHost + ":" + leaderPort + " rejected the replication secret");
+                throw new IOException("Replication secret rejected by leader");
+            }
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void closeWriteChannel() {
+        if (writeSocket != null) {
+            try {
+                writeSocket.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+            writeSocket = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        subscriber.interrupt();
+        Socket socket = subscribeSocket;
+        if (socket != null) {
+            socket.close();
+        }
+        synchronized (writeLock) {
+            closeWriteChannel();
+        }
+    }
+
+    private static class WriteResult {
+        private byte status;
+        private long offset;
+        private Task task;
+    }
+}
@@ -0,0 +1,409 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.service.TaskService;
+import com.velocitytasks.service.TaskSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Leader side of task replication. Records every mutation of the local {@link TaskService}
+ * in a {@link ReplicationLog} and streams it over TCP to connected followers in batches.
+ * Followers that are new, or that fell behind the retained log, first receive a snapshot.
+ * Writes forwarded by followers are applied to the local service; the outcomes of recent
+ * writes are kept by request ID, so a write a follower retries is answered, not applied twice.
+ *
+ * <p>The leader listens on the loopback interface unless given another address, and only on
+ * loopback may it run without a shared secret; with a secret, connections that cannot prove
+ * they know it are refused.
+ */
+public class ReplicationLeader implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ReplicationLeader.class.getName());
+    public static final int DEFAULT_LOG_CAPACITY = 100_000;
+    public static final int DEFAULT_MAX_BATCH = 512;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_RECENT_WRITES = 10_000;
+
+    private final TaskService taskService;
+    private final ReplicationLog log;
+    private final int maxBatch;
+    private final String secret;
+    private final SecureRandom random = new SecureRandom();
+    private final long runId = newRunId(random);
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Map<Socket, FollowerState> subscribers = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    /** Forwarded writes by request ID, oldest first; guarded by itself */
+    private final Map<String, ForwardedWrite> recentWrites = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ForwardedWrite> eldest) {
+            return size() > MAX_RECENT_WRITES;
+        }
+    };
+    private volatile boolean running = true;
+
+    public ReplicationLeader(TaskService taskService, int port) throws IOException {
+        this(taskService, port, DEFAULT_LOG_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Create a leader listening on the loopback interface without a shared secret
+     */
+    public ReplicationLeader(TaskService taskService, int port, int logCapacity, int maxBatch)
+            throws IOException {
+        this(taskService, InetAddress.getLoopbackAddress(), port, null, logCapacity, maxBatch);
+    }
+
+    /**
+     * Create a leader listening on {@code bindAddress}
+     *
+     * @param secret shared secret followers must prove they know; required unless
+     *               {@code bindAddress} is a loopback address
+     */
+    public ReplicationLeader(TaskService taskService, InetAddress bindAddress, int port, String secret,
+            int logCapacity, int maxBatch) throws IOException {
+        if (maxBatch <= 0 || maxBatch > ReplicationProtocol.MAX_BATCH_ENTRIES) {
+            throw new IllegalArgumentException("Batch size must be between 1 and "
+                    + ReplicationProtocol.MAX_BATCH_ENTRIES);
+        }
+        this.secret = secret == null || secret.isEmpty() ? null : secret;
+        if (this.secret == null && !bindAddress.isLoopbackAddress()) {
+            throw new IllegalArgumentException("A replication secret is required to listen on " + bindAddress);
+        }
+        this.taskService = taskService;
+        this.log = new ReplicationLog(logCapacity);
+        this.maxBatch = maxBatch;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "replication-leader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        taskService.addMutationListener(log);
+    }
+
+    /**
+     * Start accepting follower connections
+     */
+    public ReplicationLeader start() {
+        executor.execute(this::acceptLoop);
+        LOGGER.info("Replication leader listening on " + serverSocket.getLocalSocketAddress());
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Random identifier of this leader run; log offsets restart with every run
+     */
+    public long getRunId() {
+        return runId;
+    }
+
+    public long getHeadOffset() {
+        return log.getHeadOffset();
+    }
+
+    public int getFollowerCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Largest number of entries any connected follower has yet to be sent
+     */
+    public long getMaxFollowerLag() {
+        long head = log.getHeadOffset();
+        long lag = 0;
+        for (FollowerState state : subscribers.values()) {
+            lag = Math.max(lag, head - state.sentOffset);
+        }
+        return lag;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.WARNING, "Error accepting follower connection", e);
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        connections.add(socket);
+        try (socket) {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != ReplicationProtocol.MAGIC) {
+                LOGGER.warning("Rejected replication connection with bad handshake from "
+                        + socket.getRemoteSocketAddress());
+                return;
+            }
+            byte channel = in.readByte();
+            if (!authenticate(in, out, channel)) {
+                LOGGER.warning("Rejected replication connection with a wrong secret from "
+                        + socket.getRemoteSocketAddress());
+                return;
+            }
+            if (channel == ReplicationProtocol.CHANNEL_SUBSCRIBE) {
+                long followerRunId = in.readLong();
+                long nextOffset = in.readLong();
+                socket.setSoTimeout(0);
+                streamTo(socket, out, followerRunId, nextOffset);
+            } else if (channel == ReplicationProtocol.CHANNEL_WRITE) {
+                socket.setSoTimeout(0);
+                serveWrites(in, out);
+            }
+        } catch (EOFException | SocketException e) {
+            // Follower disconnected or leader shutting down
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.log(Level.WARNING, "Replication connection failed", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Challenge the peer to prove it knows the secret, and tell it whether it did
+     */
+    private boolean authenticate(DataInputStream in, DataOutputStream out, byte channel) throws IOException {
+        byte[] nonce = new byte[ReplicationProtocol.NONCE_BYTES];
+        random.nextBytes(nonce);
+        out.write(nonce);
+        out.flush();
+        byte[] proof = ReplicationProtocol.readProof(in);
+        boolean accepted = secret == null
+                || MessageDigest.isEqual(proof, ReplicationProtocol.proof(secret, nonce, channel));
+        out.writeByte(accepted ? ReplicationProtocol.HANDSHAKE_ACCEPTED : ReplicationProtocol.HANDSHAKE_REJECTED);
+        out.flush();
+        return accepted;
+    }
+
+    private void streamTo(Socket socket, DataOutputStream out, long followerRunId, long nextOffset)
+            throws IOException, InterruptedException {
+        FollowerState state = new FollowerState();
+        subscribers.put(socket, state);
+        LOGGER.info("Follower subscribed from " + socket.getRemoteSocketAddress()
+                + " at offset " + nextOffset);
+        try {
+            if (nextOffset == ReplicationProtocol.BOOTSTRAP || followerRunId != runId) {
+                // New follower, or one that replicated an earlier run whose offsets mean nothing now
+                nextOffset = sendSnapshot(out) + 1;
+            }
+            state.sentOffset = nextOffset - 1;
+            while (running) {
+                List<ReplicationEntry> entries = log.read(nextOffset, maxBatch, HEARTBEAT_MILLIS);
+                if (entries == null) {
+                    // Follower is behind the retained log or ahead of it; resynchronise from a snapshot
+                    nextOffset = sendSnapshot(out) + 1;
+                    state.sentOffset = nextOffset - 1;
+                    continue;
+                }
+                ReplicationProtocol.writeBatch(out, log.getHeadOffset(), entries);
+                out.flush();
+                nextOffset += entries.size();
+                state.sentOffset = nextOffset - 1;
+            }
+        } finally {
+            subscribers.remove(socket);
+        }
+    }
+
+    /**
+     * Send a snapshot; every mutation after the returned offset is still streamed afterwards,
+     * so the follower converges even if the snapshot already reflects some of them. Tasks are
+     * read and sent one batch at a time, however many there are.
+     */
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        long offset = log.getHeadOffset();
+        long sent = 0;
+        ReplicationProtocol.writeSnapshotStart(out, runId, offset);
+        try (TaskSnapshot snapshot = taskService.openSnapshot()) {
+            for (List<Task> batch = snapshot.nextBatch(maxBatch); !batch.isEmpty(); batch = snapshot.nextBatch(maxBatch)) {
+                ReplicationProtocol.writeSnapshotChunk(out, batch);
+                sent += batch.size();
+            }
+        } catch (UncheckedIOException e) {
+            // Reading the archive failed; the follower will reconnect and ask again
+            throw new IOException("Failed to read snapshot", e.getCause());
+        }
+        ReplicationProtocol.writeSnapshotEnd(out);
+        out.flush();
+        LOGGER.info("Sent replication snapshot of " + sent + " tasks at offset " + offset);
+        return offset;
+    }
+
+    private void serveWrites(DataInputStream in, DataOutputStream out)
+            throws IOException, InterruptedException {
+        while (running) {
+            byte op = in.readByte();
+            if (op != ReplicationProtocol.WRITE_ADD && op != ReplicationProtocol.WRITE_UPDATE
+                    && op != ReplicationProtocol.WRITE_DELETE) {
+                throw new IOException("Unknown forwarded write: " + op);
+            }
+            String requestId = ReplicationProtocol.readString(in);
+            if (requestId == null) {
+                throw new IOException("Forwarded write without a request ID");
+            }
+            String id = op != ReplicationProtocol.WRITE_ADD ? ReplicationProtocol.readString(in) : null;
+            Task task = op != ReplicationProtocol.WRITE_DELETE ? ReplicationProtocol.readTask(in) : null;
+
+            ForwardedWrite write;
+            boolean first;
+            synchronized (recentWrites) {
+                write = recentWrites.get(requestId);
+                first = write == null;
+                if (first) {
+                    write = new ForwardedWrite();
+                    recentWrites.put(requestId, write);
+                }
+            }
+            if (first) {
+                try {
+                    apply(op, id, task, write);
+                } catch (RuntimeException e) {
+                    synchronized (recentWrites) {
+                        recentWrites.remove(requestId, write);
+                    }
+                    write.finish();
+                    throw e;
+                }
+                write.finish();
+            } else if (!write.await()) {
+                throw new IOException("Retried write " + requestId + " failed on the leader");
+            }
+
+            out.writeByte(write.status);
+            out.writeLong(write.offset);
+            out.writeBoolean(write.result != null);
+            if (write.result != null) {
+                ReplicationProtocol.writeTask(out, new Task(write.result));
+            }
+            out.flush();
+        }
+    }
+
+    private void apply(byte op, String id, Task task, ForwardedWrite write) {
+        byte status = ReplicationProtocol.STATUS_OK;
+        Task result = null;
+        try {
+            if (op == ReplicationProtocol.WRITE_ADD) {
+                result = taskService.addTask(task);
+            } else if (op == ReplicationProtocol.WRITE_UPDATE) {
+                Optional<Task> updated = taskService.updateTask(id, task);
+                if (updated.isPresent()) {
+                    result = updated.get();
+                } else {
+                    status = ReplicationProtocol.STATUS_NOT_FOUND;
+                }
+            } else if (!taskService.deleteTask(id)) {
+                status = ReplicationProtocol.STATUS_NOT_FOUND;
+            }
+        } catch (IllegalArgumentException e) {
+            status = ReplicationProtocol.STATUS_BAD_REQUEST;
+        }
+        write.status = status;
+        write.offset = log.getHeadOffset();
+        write.result = result;
+        write.applied = true;
+    }
+
+    private static long newRunId(SecureRandom random) {
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == ReplicationProtocol.NO_RUN);
+        return id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        taskService.removeMutationListener(log);
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        executor.shutdownNow();
+        // The port is only released once the accepting thread has left accept()
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FollowerState {
+        private volatile long sentOffset;
+    }
+
+    /**
+     * Outcome of a forwarded write, awaited by retries that arrive while it is still running
+     */
+    private static class ForwardedWrite {
+        private byte status;
+        private long offset;
+        private Task result;
+        private boolean applied;
+        private boolean finished;
+
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * @return whether the write was applied, rather than failed
+         */
+        synchronized boolean await() throws InterruptedException {
+            while (!finished) {
+                wait();
+            }
+            return applied;
+        }
+    }
+}
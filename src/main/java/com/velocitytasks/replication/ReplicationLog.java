@@ -0,0 +1,89 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.service.TaskMutationListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded, in-memory log of task mutations with monotonically increasing offsets.
+ * Offsets start at 1; only the most recent {@code capacity} entries are retained,
+ * and readers asking for older offsets must fall back to a full snapshot.
+ */
+public class ReplicationLog implements TaskMutationListener {
+    private final ReplicationEntry[] ring;
+    private long nextOffset = 1;
+
+    public ReplicationLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.ring = new ReplicationEntry[capacity];
+    }
+
+    @Override
+    public void onTaskPut(Task task) {
+        synchronized (this) {
+            append(ReplicationEntry.put(nextOffset, task));
+        }
+    }
+
+    @Override
+    public void onTaskDeleted(String id) {
+        synchronized (this) {
+            append(ReplicationEntry.delete(nextOffset, id));
+        }
+    }
+
+    private void append(ReplicationEntry entry) {
+        ring[(int) (entry.getOffset() % ring.length)] = entry;
+        nextOffset++;
+        notifyAll();
+    }
+
+    /**
+     * Offset of the most recently appended entry (0 if the log is empty)
+     */
+    public synchronized long getHeadOffset() {
+        return nextOffset - 1;
+    }
+
+    /**
+     * Oldest offset still retained
+     */
+    public synchronized long getFirstOffset() {
+        return Math.max(1, nextOffset - ring.length);
+    }
+
+    /**
+     * Read up to {@code maxEntries} entries starting at {@code fromOffset}, waiting up to
+     * {@code timeoutMillis} for new entries if none are available yet.
+     *
+     * @return the entries (possibly empty), or {@code null} if {@code fromOffset} is no longer
+     *         retained or lies beyond the next offset to be written
+     */
+    public synchronized List<ReplicationEntry> read(long fromOffset, int maxEntries, long timeoutMillis)
+            throws InterruptedException {
+        if (fromOffset > nextOffset) {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (fromOffset >= nextOffset) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        if (fromOffset < getFirstOffset()) {
+            return null;
+        }
+        long end = Math.min(nextOffset, fromOffset + maxEntries);
+        List<ReplicationEntry> entries = new ArrayList<>((int) Math.max(0, end - fromOffset));
+        for (long offset = fromOffset; offset < end; offset++) {
+            entries.add(ring[(int) (offset % ring.length)]);
+        }
+        return entries;
+    }
+}
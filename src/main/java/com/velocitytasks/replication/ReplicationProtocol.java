@@ -0,0 +1,216 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Wire format shared by {@link ReplicationLeader} and {@link ReplicationFollower}.
+ *
+ * <p>A connection starts with {@link #MAGIC} and a channel byte. The leader answers with a
+ * random nonce, the follower proves it knows the shared secret by sending an HMAC of the nonce
+ * and channel, and the leader accepts or rejects the connection. A subscribe channel then
+ * carries the leader run the follower last replicated ({@link #NO_RUN} if none) and its next
+ * wanted offset ({@link #BOOTSTRAP} for a full snapshot), and the leader answers with a stream
+ * of snapshot and batch frames. A snapshot frame carries its tasks in chunks of at most
+ * {@link #MAX_BATCH_ENTRIES}, ended by an empty one, so the leader never holds all of them in
+ * memory. Offsets only mean something within one leader run, so a
+ * follower of another run is resynchronised from a snapshot. A write channel carries
+ * forwarded write requests, each with a request ID that makes retrying it safe, and each
+ * answered with a status, the leader offset and the task.
+ *
+ * <p>Counts and lengths read from the peer are bounded before anything is allocated for them.
+ */
+final class ReplicationProtocol {
+    static final int MAGIC = 0x56545233; // "VTR3"
+
+    static final byte CHANNEL_SUBSCRIBE = 'S';
+    static final byte CHANNEL_WRITE = 'W';
+
+    static final int NONCE_BYTES = 16;
+    static final byte HANDSHAKE_REJECTED = 0;
+    static final byte HANDSHAKE_ACCEPTED = 1;
+    private static final int MAX_PROOF_BYTES = 64;
+    private static final String PROOF_ALGORITHM = "HmacSHA256";
+
+    static final long NO_RUN = 0L;
+    static final long BOOTSTRAP = -1L;
+
+    static final int MAX_BATCH_ENTRIES = 65_536;
+    static final int MAX_SNAPSHOT_TASKS = 10_000_000;
+    static final int MAX_STRING_BYTES = 1 << 20;
+
+    static final byte FRAME_BATCH = 1;
+    static final byte FRAME_SNAPSHOT = 2;
+
+    static final byte WRITE_ADD = 1;
+    static final byte WRITE_UPDATE = 2;
+    static final byte WRITE_DELETE = 3;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_NOT_FOUND = 1;
+    static final byte STATUS_BAD_REQUEST = 2;
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * Proof that a peer knows {@code secret}, bound to the leader's nonce and the channel
+     * (empty when no secret is configured)
+     */
+    static byte[] proof(String secret, byte[] nonce, byte channel) {
+        if (secret == null) {
+            return new byte[0];
+        }
+        try {
+            Mac mac = Mac.getInstance(PROOF_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), PROOF_ALGORITHM));
+            mac.update(nonce);
+            mac.update(channel);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(PROOF_ALGORITHM + " is not available", e);
+        }
+    }
+
+    static void writeProof(DataOutputStream out, byte[] proof) throws IOException {
+        out.writeByte(proof.length);
+        out.write(proof);
+    }
+
+    static byte[] readProof(DataInputStream in) throws IOException {
+        byte[] proof = new byte[readCount(in.readUnsignedByte(), MAX_PROOF_BYTES, "proof bytes")];
+        in.readFully(proof);
+        return proof;
+    }
+
+    static void writeBatch(DataOutputStream out, long leaderHead, List<ReplicationEntry> entries)
+            throws IOException {
+        out.writeByte(FRAME_BATCH);
+        out.writeLong(leaderHead);
+        out.writeInt(entries.size());
+        for (ReplicationEntry entry : entries) {
+            out.writeLong(entry.getOffset());
+            out.writeByte(entry.getOp());
+            if (entry.getOp() == ReplicationEntry.OP_PUT) {
+                writeTask(out, entry.getTask());
+            } else {
+                writeString(out, entry.getTaskId());
+            }
+        }
+    }
+
+    static List<ReplicationEntry> readBatchEntries(DataInputStream in) throws IOException {
+        int count = readCount(in.readInt(), MAX_BATCH_ENTRIES, "batch entries");
+        List<ReplicationEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long offset = in.readLong();
+            byte op = in.readByte();
+            if (op == ReplicationEntry.OP_PUT) {
+                entries.add(ReplicationEntry.put(offset, readTask(in)));
+            } else if (op == ReplicationEntry.OP_DELETE) {
+                entries.add(ReplicationEntry.delete(offset, readString(in)));
+            } else {
+                throw new IOException("Unknown replication op: " + op);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Start a snapshot frame; its tasks follow as {@linkplain #writeSnapshotChunk chunks}
+     */
+    static void writeSnapshotStart(DataOutputStream out, long runId, long offset) throws IOException {
+        out.writeByte(FRAME_SNAPSHOT);
+        out.writeLong(runId);
+        out.writeLong(offset);
+    }
+
+    static void writeSnapshotChunk(DataOutputStream out, List<Task> tasks) throws IOException {
+        if (tasks.isEmpty() || tasks.size() > MAX_BATCH_ENTRIES) {
+            throw new IllegalArgumentException("Snapshot chunks hold 1 to " + MAX_BATCH_ENTRIES + " tasks");
+        }
+        out.writeInt(tasks.size());
+        for (Task task : tasks) {
+            writeTask(out, task);
+        }
+    }
+
+    static void writeSnapshotEnd(DataOutputStream out) throws IOException {
+        out.writeInt(0);
+    }
+
+    static List<Task> readSnapshotTasks(DataInputStream in) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (int count = readCount(in.readInt(), MAX_BATCH_ENTRIES, "snapshot chunk tasks"); count > 0;
+                count = readCount(in.readInt(), MAX_BATCH_ENTRIES, "snapshot chunk tasks")) {
+            readCount(tasks.size() + count, MAX_SNAPSHOT_TASKS, "snapshot tasks");
+            for (int i = 0; i < count; i++) {
+                tasks.add(readTask(in));
+            }
+        }
+        return tasks;
+    }
+
+    static void writeTask(DataOutputStream out, Task task) throws IOException {
+        writeString(out, task.getId());
+        writeString(out, task.getTitle());
+        out.writeByte(task.getPriority() != null ? task.getPriority().ordinal() : -1);
+        out.writeBoolean(task.isCompleted());
+        writeString(out, task.getCreatedAt());
+        writeString(out, task.getUpdatedAt());
+    }
+
+    static Task readTask(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String title = readString(in);
+        byte priority = in.readByte();
+        if (priority < -1 || priority >= PRIORITIES.length) {
+            throw new IOException("Invalid priority: " + priority);
+        }
+        boolean completed = in.readBoolean();
+        String createdAt = readString(in);
+        String updatedAt = readString(in);
+        return new Task(id, title, priority >= 0 ? PRIORITIES[priority] : null,
+                completed, createdAt, updatedAt);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[readCount(length, MAX_STRING_BYTES, "string bytes")];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(int count, int max, String what) throws IOException {
+        if (count < 0 || count > max) {
+            throw new IOException("Peer sent " + count + " " + what + ", limit is " + max);
+        }
+        return count;
+    }
+}
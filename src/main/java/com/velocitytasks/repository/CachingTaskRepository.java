@@ -0,0 +1,149 @@
+package com.velocitytasks.repository;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskQuery;
+import com.velocitytasks.service.TaskRepository;
+import com.velocitytasks.service.TaskSnapshot;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Read-through cache of tasks by ID in front of a slower repository. Lookups that miss load
+ * from the delegate and keep the result, least recently used first out; every change made
+ * through this repository updates the cache. Queries, counts and snapshots go straight to
+ * the delegate (listing responses are cached by the service itself).
+ *
+ * <p>A lookup that was loading while a change was made does not keep its result, since it
+ * may have read the state from before the change.
+ */
+public class CachingTaskRepository implements TaskRepository {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final TaskRepository delegate;
+    private final Map<String, Task> cache;
+    /** Bumped by every change, so loads that overlapped one can be discarded */
+    private long generation;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingTaskRepository(TaskRepository delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingTaskRepository(TaskRepository delegate, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.delegate = delegate;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Task> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public Optional<Task> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        long loadGeneration;
+        synchronized (cache) {
+            Task cached = cache.get(id);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return Optional.of(cached);
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+        Optional<Task> loaded = delegate.findById(id);
+        if (loaded.isPresent()) {
+            synchronized (cache) {
+                if (generation == loadGeneration) {
+                    cache.put(id, loaded.get());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public boolean contains(String id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<Task> find(TaskQuery query) {
+        return delegate.find(query);
+    }
+
+    @Override
+    public long count(Boolean completed, TaskPriority priority) {
+        return delegate.count(completed, priority);
+    }
+
+    @Override
+    public Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange) {
+        // The delegate reports each change once it is visible and before the next change to the
+        // same ID, so the cache follows the changes to each ID in order
+        return delegate.compute(id, remapping, (previous, current) -> {
+            synchronized (cache) {
+                generation++;
+                if (current != null) {
+                    cache.put(id, current);
+                } else {
+                    cache.remove(id);
+                }
+            }
+            onChange.accept(previous, current);
+        });
+    }
+
+    @Override
+    public void saveAll(List<Task> tasks) {
+        delegate.saveAll(tasks);
+        synchronized (cache) {
+            generation++;
+            for (Task task : tasks) {
+                cache.remove(task.getId());
+            }
+        }
+    }
+
+    @Override
+    public List<String> findAllIds() {
+        return delegate.findAllIds();
+    }
+
+    @Override
+    public TaskSnapshot openSnapshot() {
+        return delegate.openSnapshot();
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            cache.clear();
+        }
+        delegate.close();
+    }
+}
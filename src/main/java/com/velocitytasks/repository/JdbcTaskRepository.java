@@ -0,0 +1,607 @@
+package com.velocitytasks.repository;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskQuery;
+import com.velocitytasks.service.TaskRepository;
+import com.velocitytasks.service.TaskRepositoryException;
+import com.velocitytasks.service.TaskSnapshot;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Repository in an embedded SQL database reached through JDBC, such as H2 in file mode
+ * ({@code jdbc:h2:./data/tasks}). The tables are created on first use.
+ *
+ * <p>A fixed pool of connections is opened up front, each with its own cache of prepared
+ * statements. Status and priority filters and the sort keys are served by indexes; title
+ * searches go through a table of the lowercased titles' three-character sequences, so only
+ * tasks containing every trigram of the search term are compared with it. Changes to one ID
+ * are serialized by a striped lock, as this process is the database's only writer.
+ *
+ * <p>A missing priority is stored as {@code MEDIUM}.
+ */
+public class JdbcTaskRepository implements TaskRepository {
+    public static final int DEFAULT_POOL_SIZE = 8;
+    private static final int BATCH_SIZE = 500;
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_CACHED_STATEMENTS = 64;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private static final String COLUMNS = "id, title, priority, completed, created_at, updated_at";
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS tasks ("
+                + "id VARCHAR(64) PRIMARY KEY, "
+                + "title VARCHAR(1000000) NOT NULL, "
+                + "title_lower VARCHAR(1000000) NOT NULL, "
+                + "priority INT NOT NULL, "
+                + "completed BOOLEAN NOT NULL, "
+                + "created_at VARCHAR(64), "
+                + "updated_at VARCHAR(64))",
+        "CREATE INDEX IF NOT EXISTS tasks_status_priority ON tasks (completed, priority)",
+        "CREATE INDEX IF NOT EXISTS tasks_created_at ON tasks (created_at)",
+        "CREATE INDEX IF NOT EXISTS tasks_updated_at ON tasks (updated_at)",
+        "CREATE TABLE IF NOT EXISTS task_trigrams ("
+                + "trigram VARCHAR(3) NOT NULL, "
+                + "id VARCHAR(64) NOT NULL, "
+                + "PRIMARY KEY (trigram, id))",
+        "CREATE INDEX IF NOT EXISTS task_trigrams_id ON task_trigrams (id)"
+    };
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM tasks WHERE id = ?";
+    private static final String INSERT = "INSERT INTO tasks (" + COLUMNS + ", title_lower) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE tasks SET title = ?, priority = ?, completed = ?, "
+            + "created_at = ?, updated_at = ?, title_lower = ? WHERE id = ?";
+    private static final String DELETE = "DELETE FROM tasks WHERE id = ?";
+    private static final String INSERT_TRIGRAM = "INSERT INTO task_trigrams (trigram, id) VALUES (?, ?)";
+    private static final String DELETE_TRIGRAMS = "DELETE FROM task_trigrams WHERE id = ?";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final List<PooledConnection> connections = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idle;
+    private final ReentrantLock[] idLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private JdbcTaskRepository(String url, String user, String password, int poolSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < idLocks.length; i++) {
+            idLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public static JdbcTaskRepository open(String url) {
+        return open(url, null, null, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Connect to the database, creating the tables if needed
+     */
+    public static JdbcTaskRepository open(String url, String user, String password, int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        JdbcTaskRepository repository = new JdbcTaskRepository(url, user, password, poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                PooledConnection connection = new PooledConnection(repository.connect());
+                repository.connections.add(connection);
+                repository.idle.add(connection);
+            }
+            try (Statement statement = repository.connections.get(0).connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+        } catch (SQLException e) {
+            repository.close();
+            throw new TaskRepositoryException("Failed to open task database " + url, e);
+        }
+        return repository;
+    }
+
+    @Override
+    public Optional<Task> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        PooledConnection connection = acquire();
+        try {
+            return Optional.ofNullable(select(connection, id));
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to read task " + id, e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public List<Task> find(TaskQuery query) {
+        if (query.getLimit() == 0) {
+            return new ArrayList<>();
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM tasks WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        appendFilters(sql, parameters, query.getCompleted(), query.getPriority());
+        if (query.getSearch() != null) {
+            String search = query.getSearch().toLowerCase();
+            Set<String> trigrams = trigramsOf(search);
+            if (!trigrams.isEmpty()) {
+                sql.append(" AND id IN (SELECT id FROM task_trigrams WHERE trigram IN (?");
+                sql.append(", ?".repeat(trigrams.size() - 1));
+                sql.append(") GROUP BY id HAVING COUNT(*) = ?)");
+                parameters.addAll(trigrams);
+                parameters.add(trigrams.size());
+            }
+            // Trigrams can over-match (and short searches have none), so check the whole term
+            sql.append(" AND title_lower LIKE ? ESCAPE '!'");
+            parameters.add("%" + search.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+        }
+        sql.append(" ORDER BY ").append(orderBy(query.getSort()));
+        if (query.getLimit() != Integer.MAX_VALUE) {
+            sql.append(" LIMIT ?");
+            parameters.add(query.getLimit());
+        }
+
+        PooledConnection connection = acquire();
+        try {
+            PreparedStatement statement = connection.prepare(sql.toString());
+            bind(statement, parameters);
+            try (ResultSet rows = statement.executeQuery()) {
+                List<Task> result = new ArrayList<>();
+                while (rows.next()) {
+                    result.add(readTask(rows));
+                }
+                return result;
+            }
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to query tasks", e);
+        } finally {
+            connection.releaseUncached();
+            release(connection);
+        }
+    }
+
+    @Override
+    public long count(Boolean completed, TaskPriority priority) {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM tasks WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        appendFilters(sql, parameters, completed, priority);
+        PooledConnection connection = acquire();
+        try {
+            PreparedStatement statement = connection.prepare(sql.toString());
+            bind(statement, parameters);
+            try (ResultSet rows = statement.executeQuery()) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to count tasks", e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange) {
+        ReentrantLock lock = idLocks[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Task current;
+            Task next;
+            PooledConnection connection = acquire();
+            try {
+                current = select(connection, id);
+                next = remapping.apply(id, current);
+                if (next == current) {
+                    return current;
+                }
+                connection.connection.setAutoCommit(false);
+                try {
+                    if (next == null) {
+                        delete(connection, id);
+                    } else if (current == null) {
+                        insert(connection, next);
+                    } else {
+                        update(connection, current, next);
+                    }
+                    connection.executeBatches();
+                    connection.connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.connection.rollback();
+                    throw e;
+                } finally {
+                    connection.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new TaskRepositoryException("Failed to write task " + id, e);
+            } finally {
+                release(connection);
+            }
+            onChange.accept(current, next);
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(List<Task> tasks) {
+        PooledConnection connection = acquire();
+        try {
+            connection.connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < tasks.size(); from += BATCH_SIZE) {
+                    List<Task> batch = tasks.subList(from, Math.min(tasks.size(), from + BATCH_SIZE));
+                    for (Task task : batch) {
+                        delete(connection, task.getId());
+                    }
+                    for (Task task : batch) {
+                        insert(connection, task);
+                    }
+                    connection.executeBatches();
+                }
+                connection.connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.connection.rollback();
+                throw e;
+            } finally {
+                connection.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to save " + tasks.size() + " tasks", e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public List<String> findAllIds() {
+        PooledConnection connection = acquire();
+        try (ResultSet rows = connection.prepare("SELECT id FROM tasks").executeQuery()) {
+            List<String> ids = new ArrayList<>();
+            while (rows.next()) {
+                ids.add(rows.getString(1));
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to list task IDs", e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * A snapshot is a serializable read-only transaction on a connection of its own, read
+     * in ID order one batch at a time
+     */
+    @Override
+    public TaskSnapshot openSnapshot() {
+        try {
+            return new JdbcSnapshot(connect());
+        } catch (SQLException e) {
+            throw new TaskRepositoryException("Failed to open task snapshot", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PooledConnection connection : connections) {
+            try {
+                connection.connection.close();
+            } catch (SQLException e) {
+                // Closing anyway; nothing left to do with it
+            }
+        }
+        connections.clear();
+        idle.clear();
+    }
+
+    private Connection connect() throws SQLException {
+        return user != null ? DriverManager.getConnection(url, user, password) : DriverManager.getConnection(url);
+    }
+
+    private PooledConnection acquire() {
+        try {
+            PooledConnection connection = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (connection == null) {
+                throw new TaskRepositoryException("No database connection available",
+                        new SQLException("Timed out waiting for a pooled connection"));
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRepositoryException("Interrupted waiting for a database connection", e);
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        idle.offer(connection);
+    }
+
+    private static Task select(PooledConnection connection, String id) throws SQLException {
+        PreparedStatement statement = connection.prepare(SELECT_BY_ID);
+        statement.setString(1, id);
+        try (ResultSet rows = statement.executeQuery()) {
+            return rows.next() ? readTask(rows) : null;
+        }
+    }
+
+    private static void insert(PooledConnection connection, Task task) throws SQLException {
+        PreparedStatement statement = connection.batch(INSERT);
+        statement.setString(1, task.getId());
+        statement.setString(2, task.getTitle());
+        statement.setInt(3, priorityOf(task).ordinal());
+        statement.setBoolean(4, task.isCompleted());
+        statement.setString(5, task.getCreatedAt());
+        statement.setString(6, task.getUpdatedAt());
+        statement.setString(7, task.getTitle().toLowerCase());
+        statement.addBatch();
+        addTrigrams(connection, task);
+    }
+
+    private static void update(PooledConnection connection, Task current, Task task) throws SQLException {
+        PreparedStatement statement = connection.batch(UPDATE);
+        statement.setString(1, task.getTitle());
+        statement.setInt(2, priorityOf(task).ordinal());
+        statement.setBoolean(3, task.isCompleted());
+        statement.setString(4, task.getCreatedAt());
+        statement.setString(5, task.getUpdatedAt());
+        statement.setString(6, task.getTitle().toLowerCase());
+        statement.setString(7, task.getId());
+        statement.addBatch();
+        if (!Objects.equals(current.getTitle(), task.getTitle())) {
+            PreparedStatement trigrams = connection.batch(DELETE_TRIGRAMS);
+            trigrams.setString(1, task.getId());
+            trigrams.addBatch();
+            addTrigrams(connection, task);
+        }
+    }
+
+    private static void delete(PooledConnection connection, String id) throws SQLException {
+        PreparedStatement trigrams = connection.batch(DELETE_TRIGRAMS);
+        trigrams.setString(1, id);
+        trigrams.addBatch();
+        PreparedStatement statement = connection.batch(DELETE);
+        statement.setString(1, id);
+        statement.addBatch();
+    }
+
+    private static void addTrigrams(PooledConnection connection, Task task) throws SQLException {
+        Set<String> trigrams = trigramsOf(task.getTitle().toLowerCase());
+        if (trigrams.isEmpty()) {
+            return;
+        }
+        PreparedStatement statement = connection.batch(INSERT_TRIGRAM);
+        for (String trigram : trigrams) {
+            statement.setString(1, trigram);
+            statement.setString(2, task.getId());
+            statement.addBatch();
+        }
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static void appendFilters(StringBuilder sql, List<Object> parameters, Boolean completed,
+                                      TaskPriority priority) {
+        if (completed != null) {
+            sql.append(" AND completed = ?");
+            parameters.add(completed);
+        }
+        if (priority != null) {
+            sql.append(" AND priority = ?");
+            parameters.add(priority.ordinal());
+        }
+    }
+
+    /**
+     * The SQL equivalent of each sort's comparator; titles compare by their lowercased form
+     */
+    private static String orderBy(TaskQuery.Sort sort) {
+        switch (sort) {
+            case CREATED_ASC:
+                return "created_at ASC, id ASC";
+            case UPDATED_DESC:
+                return "updated_at DESC, id DESC";
+            case UPDATED_ASC:
+                return "updated_at ASC, id ASC";
+            case TITLE_ASC:
+                return "title_lower ASC, id ASC";
+            case TITLE_DESC:
+                return "title_lower DESC, id DESC";
+            case PRIORITY_DESC:
+                return "priority DESC, created_at DESC, id DESC";
+            case PRIORITY_ASC:
+                return "priority ASC, created_at DESC, id DESC";
+            case CREATED_DESC:
+            default:
+                return "created_at DESC, id DESC";
+        }
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object parameter = parameters.get(i);
+            if (parameter instanceof Boolean) {
+                statement.setBoolean(i + 1, (Boolean) parameter);
+            } else if (parameter instanceof Integer) {
+                statement.setInt(i + 1, (Integer) parameter);
+            } else {
+                statement.setString(i + 1, (String) parameter);
+            }
+        }
+    }
+
+    private static Task readTask(ResultSet rows) throws SQLException {
+        return new Task(rows.getString(1), rows.getString(2), PRIORITIES[rows.getInt(3)], rows.getBoolean(4),
+                rows.getString(5), rows.getString(6));
+    }
+
+    private static TaskPriority priorityOf(Task task) {
+        return task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM;
+    }
+
+    /**
+     * A pooled connection with its prepared statements. Statements queued with
+     * {@link #batch} are executed together, in the order they were first used.
+     */
+    private static final class PooledConnection {
+        final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final Map<String, PreparedStatement> batches = new LinkedHashMap<>();
+        private PreparedStatement uncached;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null) {
+                return statement;
+            }
+            statement = connection.prepareStatement(sql);
+            if (statements.size() < MAX_CACHED_STATEMENTS) {
+                statements.put(sql, statement);
+            } else {
+                // Searches with unusual numbers of trigrams are not worth keeping
+                uncached = statement;
+            }
+            return statement;
+        }
+
+        void releaseUncached() {
+            if (uncached != null) {
+                try {
+                    uncached.close();
+                } catch (SQLException e) {
+                    // Nothing left to do with it
+                }
+                uncached = null;
+            }
+        }
+
+        PreparedStatement batch(String sql) throws SQLException {
+            PreparedStatement statement = batches.get(sql);
+            if (statement == null) {
+                statement = prepare(sql);
+                batches.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void executeBatches() throws SQLException {
+            try {
+                for (PreparedStatement statement : batches.values()) {
+                    statement.executeBatch();
+                }
+            } finally {
+                batches.clear();
+            }
+        }
+    }
+
+    /**
+     * Keyset-paginated read of one transaction's view of the tasks table
+     */
+    private static final class JdbcSnapshot implements TaskSnapshot {
+        private final Connection connection;
+        private final PreparedStatement firstPage;
+        private final PreparedStatement nextPage;
+        private String lastId;
+        private boolean done;
+
+        JdbcSnapshot(Connection connection) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                connection.setReadOnly(true);
+                this.firstPage = connection.prepareStatement(
+                        "SELECT " + COLUMNS + " FROM tasks ORDER BY id LIMIT ?");
+                this.nextPage = connection.prepareStatement(
+                        "SELECT " + COLUMNS + " FROM tasks WHERE id > ? ORDER BY id LIMIT ?");
+                // The first read fixes the transaction's view, so take it now
+                try (Statement statement = connection.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM tasks")) {
+                    rows.next();
+                }
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public List<Task> nextBatch(int maxTasks) {
+            if (maxTasks <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            List<Task> batch = new ArrayList<>();
+            if (done) {
+                return batch;
+            }
+            try {
+                PreparedStatement statement = lastId == null ? firstPage : nextPage;
+                int parameter = 1;
+                if (lastId != null) {
+                    statement.setString(parameter++, lastId);
+                }
+                statement.setInt(parameter, maxTasks);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        batch.add(readTask(rows));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new TaskRepositoryException("Failed to read task snapshot", e);
+            }
+            if (batch.size() < maxTasks) {
+                done = true;
+            }
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            try {
+                connection.rollback();
+                connection.close();
+            } catch (SQLException e) {
+                // The transaction only read, so there is nothing to lose
+            }
+        }
+    }
+}
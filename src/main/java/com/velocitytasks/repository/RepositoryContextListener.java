@@ -0,0 +1,82 @@
+package com.velocitytasks.repository;
+
+import com.velocitytasks.service.TaskRepository;
+import com.velocitytasks.service.TaskRepositoryException;
+import com.velocitytasks.service.TaskService;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chooses where tasks are stored, as configured by the {@code velocitytasks.repository.*}
+ * context parameters. Each parameter can be overridden by a system property of the same name.
+ * Must be registered before every other listener, since the repository has to be chosen
+ * before the {@link TaskService} is first used.
+ *
+ * <ul>
+ *   <li>{@code velocitytasks.repository.url} - JDBC URL of an embedded database, such as {@code jdbc:h2:./data/tasks}; tasks are kept in memory if empty (default)</li>
+ *   <li>{@code velocitytasks.repository.user} / {@code velocitytasks.repository.password} - database credentials, if needed</li>
+ *   <li>{@code velocitytasks.repository.poolSize} - number of pooled connections (default 8)</li>
+ *   <li>{@code velocitytasks.repository.cacheSize} - tasks cached by ID in front of the database; {@code 0} disables the cache (default 10000)</li>
+ * </ul>
+ */
+public class RepositoryContextListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(RepositoryContextListener.class.getName());
+    private static final String PARAM_URL = "velocitytasks.repository.url";
+    private static final String PARAM_USER = "velocitytasks.repository.user";
+    private static final String PARAM_PASSWORD = "velocitytasks.repository.password";
+    private static final String PARAM_POOL_SIZE = "velocitytasks.repository.poolSize";
+    private static final String PARAM_CACHE_SIZE = "velocitytasks.repository.cacheSize";
+
+    private TaskRepository repository;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String url = getSetting(context, PARAM_URL, "").trim();
+        if (url.isEmpty()) {
+            return;
+        }
+
+        try {
+            int poolSize = Integer.parseInt(getSetting(context, PARAM_POOL_SIZE,
+                    String.valueOf(JdbcTaskRepository.DEFAULT_POOL_SIZE)).trim());
+            int cacheSize = Integer.parseInt(getSetting(context, PARAM_CACHE_SIZE,
+                    String.valueOf(CachingTaskRepository.DEFAULT_MAX_ENTRIES)).trim());
+            TaskRepository database = JdbcTaskRepository.open(url, getSetting(context, PARAM_USER, null),
+                    getSetting(context, PARAM_PASSWORD, null), poolSize);
+            repository = cacheSize > 0 ? new CachingTaskRepository(database, cacheSize) : database;
+            TaskService.setDefaultRepository(repository);
+            LOGGER.info("Storing tasks in " + url);
+        } catch (TaskRepositoryException | IllegalArgumentException | IllegalStateException e) {
+            // Starting with tasks in memory beats not starting; the log says why
+            LOGGER.log(Level.SEVERE, "Failed to open task repository " + url + "; keeping tasks in memory", e);
+            contextDestroyed(event);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (repository != null) {
+            try {
+                repository.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing task repository", e);
+            }
+            repository = null;
+        }
+    }
+
+    private static String getSetting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = context.getInitParameter(name);
+        }
+        return value != null && !value.trim().isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,79 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Default repository: tasks in a {@link ConcurrentHashMap}, queried through a
+ * {@link TaskIndex}. Nothing survives a restart.
+ */
+public class InMemoryTaskRepository implements TaskRepository {
+    private final ConcurrentMap<String, Task> tasks = new ConcurrentHashMap<>();
+    private final TaskIndex index = new TaskIndex();
+
+    @Override
+    public Optional<Task> findById(String id) {
+        return id != null ? Optional.ofNullable(tasks.get(id)) : Optional.empty();
+    }
+
+    @Override
+    public boolean contains(String id) {
+        return id != null && tasks.containsKey(id);
+    }
+
+    @Override
+    public List<Task> find(TaskQuery query) {
+        return index.query(query);
+    }
+
+    @Override
+    public long count(Boolean completed, TaskPriority priority) {
+        // Bitmap cardinalities, so counting costs nothing per task
+        return index.count(completed, priority);
+    }
+
+    @Override
+    public Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange) {
+        // The map entry is held throughout, which orders changes to one ID
+        return tasks.compute(id, (key, current) -> {
+            Task next = remapping.apply(key, current);
+            if (next != current) {
+                if (next != null) {
+                    index.put(next);
+                } else {
+                    index.remove(key);
+                }
+                onChange.accept(current, next);
+            }
+            return next;
+        });
+    }
+
+    @Override
+    public void saveAll(List<Task> batch) {
+        for (Task task : batch) {
+            tasks.compute(task.getId(), (key, current) -> {
+                index.put(task);
+                return task;
+            });
+        }
+    }
+
+    @Override
+    public List<String> findAllIds() {
+        return new ArrayList<>(tasks.keySet());
+    }
+
+    @Override
+    public TaskSnapshot openSnapshot() {
+        return index.openSnapshot();
+    }
+}
@@ -0,0 +1,40 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TaskSnapshot} of a {@link TaskIndex}. Memory use does not grow with the number of
+ * tasks, only with the number changed while the snapshot is open.
+ */
+final class IndexSnapshot implements TaskSnapshot {
+    /** Marks a slot that held no task when the snapshot was opened */
+    static final Task ABSENT = new Task(null, null, null, false, null, null);
+
+    private final TaskIndex index;
+    final int end;
+    int cursor;
+    /** Slots changed ahead of the cursor, with their state when the snapshot was opened */
+    final Map<Integer, Task> preImages = new HashMap<>();
+
+    IndexSnapshot(TaskIndex index, int end) {
+        this.index = index;
+        this.end = end;
+    }
+
+    @Override
+    public List<Task> nextBatch(int maxTasks) {
+        if (maxTasks <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        return index.readSnapshot(this, maxTasks);
+    }
+
+    @Override
+    public void close() {
+        index.closeSnapshot(this);
+    }
+}
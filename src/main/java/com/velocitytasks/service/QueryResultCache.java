@@ -0,0 +1,448 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Bounded cache of serialized query responses, keyed by the normalized {@link TaskQuery}
+ * and a response format.
+ *
+ * <p>Each task mutation removes only the entries whose filters match the task before or
+ * after the change. Entries without a search are tracked by their status and priority
+ * filters; entries with a search are tracked by the first trigram of the search term and
+ * found through the trigrams of the changed titles. Every mutation also advances a version:
+ * a response computed while a mutation was applied may be stale, so {@link #put} discards
+ * it unless the version it was computed at is still current.
+ *
+ * <p>Each response is stored with its entity tag, computed once when it is cached rather than
+ * on every request that revalidates it.
+ *
+ * <p>The cache is bounded by entry count and total bytes. Access frequencies, including
+ * those of queries that missed, are estimated with a small count-min sketch that is halved
+ * periodically so old popularity fades. When space is needed the least frequently used
+ * entry (the largest, on ties) is evicted, but only if the new response is used more often
+ * than it, so one-off queries cannot push out the hot listings.
+ */
+public class QueryResultCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    /** Status filters: any, completed, pending */
+    private static final int STATUSES = 3;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ConcurrentMap<Key, CachedResponse> entries = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final AtomicLong version = new AtomicLong();
+    private final Object lock = new Object();
+
+    // Dependency tracking, guarded by lock
+    private final List<Set<Key>> byFilters = new ArrayList<>();
+    private final Map<Long, Set<Key>> bySearchTrigram = new HashMap<>();
+    private final Set<Key> shortSearches = new HashSet<>();
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public QueryResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch(maxEntries);
+        for (int i = 0; i < STATUSES * (PRIORITIES.length + 1); i++) {
+            byFilters.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Cache key for a query and response format (for example a media type)
+     */
+    public static Key key(TaskQuery query, String format) {
+        return new Key(query, format);
+    }
+
+    /**
+     * Current version; read it before running a query whose response will be {@link #put}
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * The cached response for the key, or {@code null} on a miss
+     */
+    public CachedResponse get(Key key) {
+        sketch.increment(key.hashCode());
+        CachedResponse response = entries.get(key);
+        if (response != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Cache a response computed from the service state at {@code computedAtVersion}
+     *
+     * @return whether the response was stored
+     */
+    public boolean put(Key key, byte[] body, long computedAtVersion) {
+        return put(key, new CachedResponse(body), computedAtVersion);
+    }
+
+    /**
+     * Cache a response computed from the service state at {@code computedAtVersion}
+     *
+     * @return whether the response was stored
+     */
+    public boolean put(Key key, CachedResponse response, long computedAtVersion) {
+        int size = response.getBody().length;
+        synchronized (lock) {
+            if (version.get() != computedAtVersion || size > maxBytes) {
+                rejections.increment();
+                return false;
+            }
+            CachedResponse previous = entries.get(key);
+            if (previous != null) {
+                bytes -= previous.getBody().length;
+                entries.put(key, response);
+                bytes += size;
+                return true;
+            }
+            int frequency = sketch.frequency(key.hashCode());
+            while (entries.size() >= maxEntries || bytes + size > maxBytes) {
+                Key victim = selectVictim();
+                if (sketch.frequency(victim.hashCode()) >= frequency) {
+                    rejections.increment();
+                    return false;
+                }
+                removeEntry(victim);
+                evictions.increment();
+            }
+            entries.put(key, response);
+            bytes += size;
+            dependents(key).add(key);
+            return true;
+        }
+    }
+
+    /**
+     * Remove the entries a task mutation may have changed and advance the version.
+     * Either state may be {@code null} (for a creation or a deletion).
+     */
+    public void invalidate(Task before, Task after) {
+        synchronized (lock) {
+            version.incrementAndGet();
+            if (entries.isEmpty()) {
+                return;
+            }
+            Set<Key> candidates = new HashSet<>();
+            collectCandidates(before, candidates);
+            collectCandidates(after, candidates);
+            for (Key key : candidates) {
+                if (key.matches(before) || key.matches(after)) {
+                    removeEntry(key);
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every entry and advance the version
+     */
+    public void clear() {
+        synchronized (lock) {
+            version.incrementAndGet();
+            invalidations.add(entries.size());
+            entries.clear();
+            byFilters.forEach(Set::clear);
+            bySearchTrigram.clear();
+            shortSearches.clear();
+            bytes = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(hits.sum(), misses.sum(), entries.size(), bytes,
+                    evictions.sum(), invalidations.sum(), rejections.sum());
+        }
+    }
+
+    private void collectCandidates(Task task, Set<Key> candidates) {
+        if (task == null) {
+            return;
+        }
+        int[] statuses = {0, task.isCompleted() ? 1 : 2};
+        int[] priorities = {0, priorityFilter(task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM)};
+        for (int status : statuses) {
+            for (int priority : priorities) {
+                candidates.addAll(byFilters.get(filterIndex(status, priority)));
+            }
+        }
+        if (!bySearchTrigram.isEmpty() && task.getTitle() != null) {
+            for (long trigram : TaskIndex.trigramsOf(task.getTitle().toLowerCase())) {
+                Set<Key> keys = bySearchTrigram.get(trigram);
+                if (keys != null) {
+                    candidates.addAll(keys);
+                }
+            }
+        }
+        candidates.addAll(shortSearches);
+    }
+
+    private Set<Key> dependents(Key key) {
+        if (key.search == null) {
+            return byFilters.get(filterIndex(key.statusFilter(), priorityFilter(key.priority)));
+        }
+        long[] trigrams = TaskIndex.trigramsOf(key.search);
+        if (trigrams.length == 0) {
+            return shortSearches;
+        }
+        return bySearchTrigram.computeIfAbsent(trigrams[0], trigram -> new HashSet<>());
+    }
+
+    private void removeEntry(Key key) {
+        CachedResponse response = entries.remove(key);
+        if (response == null) {
+            return;
+        }
+        bytes -= response.getBody().length;
+        Set<Key> keys = dependents(key);
+        keys.remove(key);
+        if (keys.isEmpty() && key.search != null && keys != shortSearches) {
+            bySearchTrigram.remove(TaskIndex.trigramsOf(key.search)[0]);
+        }
+    }
+
+    private Key selectVictim() {
+        Key victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        int victimSize = 0;
+        for (Map.Entry<Key, CachedResponse> entry : entries.entrySet()) {
+            int frequency = sketch.frequency(entry.getKey().hashCode());
+            int size = entry.getValue().getBody().length;
+            if (frequency < victimFrequency || (frequency == victimFrequency && size > victimSize)) {
+                victim = entry.getKey();
+                victimFrequency = frequency;
+                victimSize = size;
+            }
+        }
+        return victim;
+    }
+
+    private static int priorityFilter(TaskPriority priority) {
+        return priority == null ? 0 : priority.ordinal() + 1;
+    }
+
+    private static int filterIndex(int status, int priority) {
+        return status * (PRIORITIES.length + 1) + priority;
+    }
+
+    /**
+     * Normalized query plus response format. Searches are case-insensitive, so the search
+     * term is lowercased.
+     */
+    public static final class Key {
+        private final String format;
+        private final Boolean completed;
+        private final TaskPriority priority;
+        private final String search;
+        private final TaskQuery.Sort sort;
+        private final int limit;
+        private final boolean includeArchived;
+        private final int hash;
+
+        private Key(TaskQuery query, String format) {
+            this.format = format;
+            this.completed = query.getCompleted();
+            this.priority = query.getPriority();
+            this.search = query.getSearch() != null ? query.getSearch().toLowerCase() : null;
+            this.sort = query.getSort();
+            this.limit = query.getLimit();
+            this.includeArchived = query.isIncludeArchived();
+            this.hash = Objects.hash(format, completed, priority, search, sort, limit, includeArchived);
+        }
+
+        /**
+         * Whether a task in the given state passes this query's filters
+         */
+        boolean matches(Task task) {
+            if (task == null) {
+                return false;
+            }
+            if (completed != null && task.isCompleted() != completed) {
+                return false;
+            }
+            TaskPriority taskPriority = task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM;
+            if (priority != null && taskPriority != priority) {
+                return false;
+            }
+            return search == null || (task.getTitle() != null && task.getTitle().toLowerCase().contains(search));
+        }
+
+        private int statusFilter() {
+            return completed == null ? 0 : completed ? 1 : 2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && limit == other.limit && sort == other.sort
+                    && includeArchived == other.includeArchived
+                    && priority == other.priority && Objects.equals(completed, other.completed)
+                    && Objects.equals(search, other.search) && Objects.equals(format, other.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Serialized response and its strong entity tag: the body's length and CRC32C
+     */
+    public static final class CachedResponse {
+        private final byte[] body;
+        private final String entityTag;
+
+        public CachedResponse(byte[] body) {
+            CRC32C crc = new CRC32C();
+            crc.update(body, 0, body.length);
+            this.body = body;
+            this.entityTag = "\"" + Integer.toHexString(body.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+
+        public byte[] getBody() { return body; }
+        public String getEntityTag() { return entityTag; }
+    }
+
+    /**
+     * Count-min sketch of access frequencies with 4-bit counters, halved after every
+     * {@code 10 * width} increments. Updates are unsynchronized; a lost increment only makes
+     * an estimate slightly low.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+        private final int[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(64, expectedEntries * 8 - 1)) << 1;
+            this.counters = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = indexOf(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        private void age() {
+            additions = 0;
+            for (int[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Point-in-time cache counters
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long entries;
+        private final long bytes;
+        private final long evictions;
+        private final long invalidations;
+        private final long rejections;
+
+        public Stats(long hits, long misses, long entries, long bytes,
+                     long evictions, long invalidations, long rejections) {
+            this.hits = hits;
+            this.misses = misses;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.rejections = rejections;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEntries() { return entries; }
+        public long getBytes() { return bytes; }
+        public long getEvictions() { return evictions; }
+        public long getInvalidations() { return invalidations; }
+        public long getRejections() { return rejections; }
+
+        /**
+         * Share of lookups that hit, as a percentage
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups > 0 ? hits * 100.0 / lookups : 0;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.velocitytasks.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative int slots, split into 65536-slot containers in the
+ * style of Roaring bitmaps. Empty containers are not stored, sparse containers hold a sorted
+ * array of their low 16 bits and dense containers a plain bitset, so both a posting list
+ * with a handful of slots and a set covering millions stay compact and fast to intersect.
+ *
+ * <p>Not thread-safe; {@link TaskIndex} guards all access.
+ */
+final class SlotBitmap {
+    /** Array containers are converted to bitsets above this cardinality */
+    private static final int ARRAY_MAX = 4096;
+    /** Bitsets are converted back to arrays below this cardinality (hysteresis) */
+    private static final int BITSET_MIN = ARRAY_MAX / 2;
+    private static final int BITSET_WORDS = 1024;
+
+    private int[] keys = new int[2];
+    /** Either a {@code char[]} array container or a {@code long[]} bitset container */
+    private Object[] containers = new Object[2];
+    private int[] counts = new int[2];
+    private int size;
+    private int cardinality;
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int slot) {
+        int index = Arrays.binarySearch(keys, 0, size, slot >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) slot;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, counts[index], low) >= 0;
+    }
+
+    boolean add(int slot) {
+        int key = slot >>> 16;
+        char low = (char) slot;
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new char[4]);
+        }
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= mask;
+        } else {
+            char[] values = (char[]) container;
+            int count = counts[index];
+            int position = Arrays.binarySearch(values, 0, count, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (count == ARRAY_MAX) {
+                long[] bits = toBitset(values, count);
+                bits[low >>> 6] |= 1L << low;
+                containers[index] = bits;
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, count * 2));
+                    containers[index] = values;
+                }
+                System.arraycopy(values, position, values, position + 1, count - position);
+                values[position] = low;
+            }
+        }
+        counts[index]++;
+        cardinality++;
+        return true;
+    }
+
+    boolean remove(int slot) {
+        int index = Arrays.binarySearch(keys, 0, size, slot >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) slot;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            bits[low >>> 6] &= ~mask;
+            if (counts[index] - 1 < BITSET_MIN) {
+                containers[index] = toArray(bits, counts[index] - 1);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int count = counts[index];
+            int position = Arrays.binarySearch(values, 0, count, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, count - position - 1);
+        }
+        cardinality--;
+        if (--counts[index] == 0) {
+            removeContainer(index);
+        }
+        return true;
+    }
+
+    /**
+     * Intersection of this bitmap and {@code other} as a new bitmap
+     */
+    SlotBitmap and(SlotBitmap other) {
+        SlotBitmap result = new SlotBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendIntersection(keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visit every slot in ascending order
+     */
+    void forEach(IntConsumer consumer) {
+        for (int index = 0; index < size; index++) {
+            int high = keys[index] << 16;
+            Object container = containers[index];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int word = 0; word < BITSET_WORDS; word++) {
+                    long value = bits[word];
+                    while (value != 0) {
+                        consumer.accept(high | (word << 6) | Long.numberOfTrailingZeros(value));
+                        value &= value - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int k = 0; k < counts[index]; k++) {
+                    consumer.accept(high | values[k]);
+                }
+            }
+        }
+    }
+
+    private void appendIntersection(int key, Object left, int leftCount, Object right, int rightCount) {
+        Object container;
+        int count;
+        if (left instanceof long[] && right instanceof long[]) {
+            long[] a = (long[]) left;
+            long[] b = (long[]) right;
+            long[] bits = new long[BITSET_WORDS];
+            count = 0;
+            for (int word = 0; word < BITSET_WORDS; word++) {
+                bits[word] = a[word] & b[word];
+                count += Long.bitCount(bits[word]);
+            }
+            container = count > ARRAY_MAX ? bits : toArray(bits, count);
+        } else if (left instanceof long[] || right instanceof long[]) {
+            long[] bits = (long[]) (left instanceof long[] ? left : right);
+            char[] values = (char[]) (left instanceof long[] ? right : left);
+            int valueCount = left instanceof long[] ? rightCount : leftCount;
+            char[] result = new char[valueCount];
+            count = 0;
+            for (int k = 0; k < valueCount; k++) {
+                char low = values[k];
+                if ((bits[low >>> 6] & (1L << low)) != 0) {
+                    result[count++] = low;
+                }
+            }
+            container = result;
+        } else {
+            char[] a = (char[]) left;
+            char[] b = (char[]) right;
+            char[] result = new char[Math.min(leftCount, rightCount)];
+            count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < leftCount && j < rightCount) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            container = result;
+        }
+        if (count > 0) {
+            insertContainer(size, key, container);
+            counts[size - 1] = count;
+            cardinality += count;
+        }
+    }
+
+    private void insertContainer(int index, int key, Object container) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(counts, index, counts, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        counts[index] = 0;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private static long[] toBitset(char[] values, int count) {
+        long[] bits = new long[BITSET_WORDS];
+        for (int k = 0; k < count; k++) {
+            bits[values[k] >>> 6] |= 1L << values[k];
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] values = new char[Math.max(count, 1)];
+        int position = 0;
+        for (int word = 0; word < BITSET_WORDS; word++) {
+            long value = bits[word];
+            while (value != 0) {
+                values[position++] = (char) ((word << 6) | Long.numberOfTrailingZeros(value));
+                value &= value - 1;
+            }
+        }
+        return values;
+    }
+}
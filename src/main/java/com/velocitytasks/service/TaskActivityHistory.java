@@ -0,0 +1,187 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling history of task activity (created, completed and deleted tasks by priority),
+ * kept as per-second and per-minute rollups in fixed-size ring buffers.
+ *
+ * <p>Memory is bounded by the ring sizes no matter how long the server runs. Recording an
+ * event only increments preallocated counters; a bucket is reset under a lock the first
+ * time it is reused, which happens at most once per bucket period.
+ */
+public class TaskActivityHistory {
+
+    /**
+     * Kinds of activity that are counted
+     */
+    public enum Event {
+        CREATED, COMPLETED, DELETED
+    }
+
+    public static final int SECOND_BUCKETS = 3600;
+    public static final int MINUTE_BUCKETS = 1440;
+    /** Longest window that can be queried (the span of the per-minute ring) */
+    public static final long MAX_WINDOW_SECONDS = MINUTE_BUCKETS * 60L;
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final int COUNTERS = Event.values().length * PRIORITIES.length;
+
+    private final LongSupplier clock;
+    private final Ring seconds = new Ring(SECOND_BUCKETS, 1);
+    private final Ring minutes = new Ring(MINUTE_BUCKETS, 60);
+
+    public TaskActivityHistory() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Create a history driven by the given millisecond clock
+     */
+    public TaskActivityHistory(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Count one event for a task of the given priority
+     */
+    public void record(Event event, TaskPriority priority) {
+        int counter = counterIndex(event, priority != null ? priority : TaskPriority.MEDIUM);
+        long epochSecond = Math.floorDiv(clock.getAsLong(), 1000L);
+        seconds.increment(epochSecond, counter);
+        minutes.increment(epochSecond, counter);
+    }
+
+    /**
+     * Summarise the last {@code windowSeconds} seconds (clamped to {@link #MAX_WINDOW_SECONDS}),
+     * aggregated into at most {@code maxPoints} series points.
+     */
+    public Window getWindow(long windowSeconds, int maxPoints) {
+        long window = Math.max(1, Math.min(windowSeconds, MAX_WINDOW_SECONDS));
+        Ring ring = window <= SECOND_BUCKETS ? seconds : minutes;
+        long nowSecond = Math.floorDiv(clock.getAsLong(), 1000L);
+        long newestPeriod = Math.floorDiv(nowSecond, ring.periodSeconds);
+        int buckets = (int) Math.max(1, (window + ring.periodSeconds - 1) / ring.periodSeconds);
+        int bucketsPerPoint = (buckets + Math.max(1, maxPoints) - 1) / Math.max(1, maxPoints);
+        int points = (buckets + bucketsPerPoint - 1) / bucketsPerPoint;
+
+        Window result = new Window(window, ring.periodSeconds, ring.periodSeconds * bucketsPerPoint, points);
+        long oldestPeriod = newestPeriod - (long) points * bucketsPerPoint + 1;
+        for (int point = 0; point < points; point++) {
+            long firstPeriod = oldestPeriod + (long) point * bucketsPerPoint;
+            result.pointStartMillis[point] = firstPeriod * ring.periodSeconds * 1000L;
+            for (long period = firstPeriod; period < firstPeriod + bucketsPerPoint; period++) {
+                ring.addTo(period, result, point);
+            }
+        }
+        return result;
+    }
+
+    private static int counterIndex(Event event, TaskPriority priority) {
+        return event.ordinal() * PRIORITIES.length + priority.ordinal();
+    }
+
+    /**
+     * Fixed ring of buckets, each holding every counter for one period
+     */
+    private static final class Ring {
+        private final int size;
+        private final long periodSeconds;
+        private final AtomicLongArray periods;
+        private final AtomicLongArray counters;
+
+        Ring(int size, long periodSeconds) {
+            this.size = size;
+            this.periodSeconds = periodSeconds;
+            this.periods = new AtomicLongArray(size);
+            this.counters = new AtomicLongArray(size * COUNTERS);
+            for (int i = 0; i < size; i++) {
+                periods.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        void increment(long epochSecond, int counter) {
+            long period = Math.floorDiv(epochSecond, periodSeconds);
+            int bucket = (int) Math.floorMod(period, (long) size);
+            if (periods.get(bucket) != period) {
+                roll(bucket, period);
+            }
+            counters.incrementAndGet(bucket * COUNTERS + counter);
+        }
+
+        private synchronized void roll(int bucket, long period) {
+            if (periods.get(bucket) >= period) {
+                return;
+            }
+            // Zero before publishing the new period so increments for it are never wiped
+            for (int i = 0; i < COUNTERS; i++) {
+                counters.set(bucket * COUNTERS + i, 0);
+            }
+            periods.set(bucket, period);
+        }
+
+        void addTo(long period, Window window, int point) {
+            int bucket = (int) Math.floorMod(period, (long) size);
+            if (periods.get(bucket) != period) {
+                return;
+            }
+            for (int i = 0; i < COUNTERS; i++) {
+                long value = counters.get(bucket * COUNTERS + i);
+                window.series[point][i / PRIORITIES.length] += value;
+                window.totals[i] += value;
+            }
+        }
+    }
+
+    /**
+     * Activity counts over a window of time
+     */
+    public static final class Window {
+        private final long windowSeconds;
+        private final long resolutionSeconds;
+        private final long pointSeconds;
+        private final long[] totals = new long[COUNTERS];
+        private final long[] pointStartMillis;
+        private final long[][] series;
+
+        private Window(long windowSeconds, long resolutionSeconds, long pointSeconds, int points) {
+            this.windowSeconds = windowSeconds;
+            this.resolutionSeconds = resolutionSeconds;
+            this.pointSeconds = pointSeconds;
+            this.pointStartMillis = new long[points];
+            this.series = new long[points][Event.values().length];
+        }
+
+        public long getWindowSeconds() { return windowSeconds; }
+        public long getResolutionSeconds() { return resolutionSeconds; }
+        public long getPointSeconds() { return pointSeconds; }
+        public int getPointCount() { return series.length; }
+        public long getPointStartMillis(int point) { return pointStartMillis[point]; }
+
+        public long getPointValue(int point, Event event) {
+            return series[point][event.ordinal()];
+        }
+
+        public long getTotal(Event event, TaskPriority priority) {
+            return totals[counterIndex(event, priority)];
+        }
+
+        public long getTotal(Event event) {
+            long total = 0;
+            for (TaskPriority priority : PRIORITIES) {
+                total += getTotal(event, priority);
+            }
+            return total;
+        }
+
+        /**
+         * Average events per minute over the window
+         */
+        public double getRatePerMinute(Event event) {
+            return getTotal(event) * 60.0 / windowSeconds;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes over the tasks held by {@link InMemoryTaskRepository}, used to run {@link TaskQuery}s.
+ *
+ * <p>Every task occupies an int slot. Compressed {@link SlotBitmap}s record which slots are
+ * completed, pending and of each priority, and a trigram index maps every three-character
+ * sequence of the lowercased titles to the slots containing it. A query intersects the
+ * bitmaps for its filters cheapest-first, then verifies the surviving candidates (trigrams
+ * can over-match a search) and keeps only the top {@code limit} results by the sort order.
+ *
+ * <p>The values each slot was indexed under are kept alongside it, so a task that has been
+ * mutated in place can be re-indexed without knowing its previous state. Timestamps are also
+ * kept as packed numeric keys: comparing those in a primitive array is far cheaper than
+ * following each task to its timestamp strings, which dominates sorting large result sets.
+ *
+ * <p>Open {@link IndexSnapshot}s walk the slots in order. Before a slot at or beyond a
+ * snapshot's cursor changes, its state at the time the snapshot was opened is handed to
+ * the snapshot, so a snapshot only holds the tasks changed while it is open.
+ */
+final class TaskIndex {
+    /** Below this many candidates, checking each one beats intersecting further bitmaps */
+    private static final int VERIFY_THRESHOLD = 64;
+    /** Timestamp key for values that are not ISO local date-times; such slots compare by task */
+    private static final long NO_KEY = -1;
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final SlotBitmap live = new SlotBitmap();
+    private final SlotBitmap completed = new SlotBitmap();
+    private final SlotBitmap pending = new SlotBitmap();
+    private final SlotBitmap[] byPriority = new SlotBitmap[PRIORITIES.length];
+    private final Map<Long, SlotBitmap> trigrams = new HashMap<>();
+    private final List<IndexSnapshot> snapshots = new ArrayList<>();
+
+    private Task[] tasks = new Task[1024];
+    private String[] indexedTitles = new String[1024];
+    private TaskPriority[] indexedPriorities = new TaskPriority[1024];
+    private long[] createdKeys = new long[1024];
+    private long[] updatedKeys = new long[1024];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    TaskIndex() {
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = new SlotBitmap();
+        }
+    }
+
+    /**
+     * Index a new task, or re-index an existing one with the same ID
+     */
+    void put(Task task) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotsById.get(task.getId());
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                preserve(slot);
+                unindex(slot);
+            } else {
+                slot = allocateSlot();
+                preserve(slot);
+                slotsById.put(task.getId(), slot);
+            }
+            index(slot, task);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                preserve(slot);
+                unindex(slot);
+                tasks[slot] = null;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    IndexSnapshot openSnapshot() {
+        lock.writeLock().lock();
+        try {
+            IndexSnapshot snapshot = new IndexSnapshot(this, nextSlot);
+            snapshots.add(snapshot);
+            return snapshot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void closeSnapshot(IndexSnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            snapshots.remove(snapshot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Advance a snapshot over its next slots, returning up to {@code maxTasks} tasks as they
+     * were when it was opened
+     */
+    List<Task> readSnapshot(IndexSnapshot snapshot, int maxTasks) {
+        List<Task> batch = new ArrayList<>(Math.min(maxTasks, 1024));
+        lock.readLock().lock();
+        try {
+            // Only the reading thread touches the cursor; writers see it under the write lock
+            while (snapshot.cursor < snapshot.end && batch.size() < maxTasks) {
+                int slot = snapshot.cursor++;
+                Task preserved = snapshot.preImages.remove(slot);
+                Task task = preserved != null ? preserved : tasks[slot];
+                if (task != null && task != IndexSnapshot.ABSENT) {
+                    batch.add(task);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return batch;
+    }
+
+    /**
+     * Number of tasks matching the optional status and priority
+     */
+    long count(Boolean isCompleted, TaskPriority priority) {
+        lock.readLock().lock();
+        try {
+            SlotBitmap status = isCompleted == null ? live : isCompleted ? completed : pending;
+            if (priority == null) {
+                return status.cardinality();
+            }
+            SlotBitmap byStatus = byPriority[priority.ordinal()];
+            return isCompleted == null ? byStatus.cardinality() : status.and(byStatus).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Task> query(TaskQuery query) {
+        String lowerSearch = query.getSearch() != null ? query.getSearch().toLowerCase() : null;
+        lock.readLock().lock();
+        try {
+            List<SlotBitmap> filters = new ArrayList<>(4);
+            if (query.getCompleted() != null) {
+                filters.add(query.getCompleted() ? completed : pending);
+            }
+            if (query.getPriority() != null) {
+                filters.add(byPriority[query.getPriority().ordinal()]);
+            }
+            if (lowerSearch != null) {
+                for (long trigram : trigramsOf(lowerSearch)) {
+                    SlotBitmap postings = trigrams.get(trigram);
+                    if (postings == null) {
+                        return new ArrayList<>();
+                    }
+                    filters.add(postings);
+                }
+            }
+
+            SlotBitmap candidates = plan(filters);
+            return collect(candidates, query, lowerSearch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersect the filters smallest first, stopping early once few candidates remain
+     */
+    private SlotBitmap plan(List<SlotBitmap> filters) {
+        if (filters.isEmpty()) {
+            return live;
+        }
+        filters.sort(Comparator.comparingInt(SlotBitmap::cardinality));
+        SlotBitmap result = filters.get(0);
+        for (int i = 1; i < filters.size() && result.cardinality() > VERIFY_THRESHOLD; i++) {
+            result = result.and(filters.get(i));
+        }
+        return result;
+    }
+
+    private List<Task> collect(SlotBitmap candidates, TaskQuery query, String lowerSearch) {
+        if (query.getLimit() == 0 || candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        boolean bounded = query.getLimit() < candidates.cardinality();
+        Selection selection = new Selection(query.getSort(), bounded ? query.getLimit() : candidates.cardinality(), bounded);
+        candidates.forEach(slot -> {
+            if (matches(slot, query, lowerSearch)) {
+                selection.offer(slot);
+            }
+        });
+        return selection.drain();
+    }
+
+    private boolean matches(int slot, TaskQuery query, String lowerSearch) {
+        if (query.getCompleted() != null && !(query.getCompleted() ? completed : pending).contains(slot)) {
+            return false;
+        }
+        if (query.getPriority() != null && indexedPriorities[slot] != query.getPriority()) {
+            return false;
+        }
+        return lowerSearch == null || indexedTitles[slot].contains(lowerSearch);
+    }
+
+    private void index(int slot, Task task) {
+        String lowerTitle = task.getTitle() != null ? task.getTitle().toLowerCase() : "";
+        TaskPriority priority = task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM;
+        tasks[slot] = task;
+        indexedTitles[slot] = lowerTitle;
+        indexedPriorities[slot] = priority;
+        createdKeys[slot] = timestampKey(task.getCreatedAt());
+        updatedKeys[slot] = timestampKey(task.getUpdatedAt());
+
+        live.add(slot);
+        (task.isCompleted() ? completed : pending).add(slot);
+        byPriority[priority.ordinal()].add(slot);
+        for (long trigram : trigramsOf(lowerTitle)) {
+            trigrams.computeIfAbsent(trigram, key -> new SlotBitmap()).add(slot);
+        }
+    }
+
+    private void unindex(int slot) {
+        live.remove(slot);
+        completed.remove(slot);
+        pending.remove(slot);
+        byPriority[indexedPriorities[slot].ordinal()].remove(slot);
+        for (long trigram : trigramsOf(indexedTitles[slot])) {
+            SlotBitmap postings = trigrams.get(trigram);
+            if (postings != null && postings.remove(slot) && postings.isEmpty()) {
+                trigrams.remove(trigram);
+            }
+        }
+        indexedTitles[slot] = null;
+        indexedPriorities[slot] = null;
+    }
+
+    /**
+     * Hand the current state of a slot that is about to change to snapshots yet to read it
+     */
+    private void preserve(int slot) {
+        for (IndexSnapshot snapshot : snapshots) {
+            if (slot >= snapshot.cursor && slot < snapshot.end) {
+                snapshot.preImages.putIfAbsent(slot, tasks[slot] != null ? tasks[slot] : IndexSnapshot.ABSENT);
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == tasks.length) {
+            int capacity = tasks.length * 2;
+            tasks = Arrays.copyOf(tasks, capacity);
+            indexedTitles = Arrays.copyOf(indexedTitles, capacity);
+            indexedPriorities = Arrays.copyOf(indexedPriorities, capacity);
+            createdKeys = Arrays.copyOf(createdKeys, capacity);
+            updatedKeys = Arrays.copyOf(updatedKeys, capacity);
+        }
+        return nextSlot++;
+    }
+
+    /**
+     * Digits of an ISO {@code yyyy-MM-ddTHH:mm:ss} prefix as a number, which orders the same as
+     * the strings do up to that prefix; {@link #NO_KEY} for anything else
+     */
+    static long timestampKey(String timestamp) {
+        if (timestamp == null || timestamp.length() < 19) {
+            return NO_KEY;
+        }
+        long key = 0;
+        for (int i = 0; i < 19; i++) {
+            char c = timestamp.charAt(i);
+            if (i == 4 || i == 7) {
+                if (c != '-') {
+                    return NO_KEY;
+                }
+            } else if (i == 10) {
+                if (c != 'T') {
+                    return NO_KEY;
+                }
+            } else if (i == 13 || i == 16) {
+                if (c != ':') {
+                    return NO_KEY;
+                }
+            } else if (c >= '0' && c <= '9') {
+                key = key * 10 + (c - '0');
+            } else {
+                return NO_KEY;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Distinct three-character sequences of a lowercased string, each packed into a long
+     */
+    static long[] trigramsOf(String text) {
+        int count = text.length() - 2;
+        if (count <= 0) {
+            return new long[0];
+        }
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (result[i] != result[distinct - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return distinct == count ? result : Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Collects the slots offered in sort order. When bounded, only the best {@code capacity}
+     * are kept, in a binary heap whose root is the worst one kept; otherwise all of them are
+     * sorted at the end, which lets the merge sort take advantage of runs already in order.
+     */
+    private final class Selection {
+        private final TaskQuery.Sort sort;
+        private final Comparator<Task> order;
+        private final boolean bounded;
+        private final int[] kept;
+        private int size;
+
+        Selection(TaskQuery.Sort sort, int capacity, boolean bounded) {
+            this.sort = sort;
+            this.order = sort.getComparator();
+            this.bounded = bounded;
+            this.kept = new int[capacity];
+        }
+
+        void offer(int slot) {
+            if (!bounded) {
+                kept[size++] = slot;
+            } else if (size < kept.length) {
+                kept[size] = slot;
+                siftUp(size++);
+            } else if (compare(slot, kept[0]) < 0) {
+                kept[0] = slot;
+                siftDown(0);
+            }
+        }
+
+        List<Task> drain() {
+            if (!bounded) {
+                Integer[] boxed = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    boxed[i] = kept[i];
+                }
+                Arrays.sort(boxed, this::compare);
+                List<Task> results = new ArrayList<>(size);
+                for (Integer slot : boxed) {
+                    results.add(tasks[slot]);
+                }
+                return results;
+            }
+            Task[] sorted = new Task[size];
+            while (size > 0) {
+                sorted[size - 1] = tasks[kept[0]];
+                kept[0] = kept[--size];
+                siftDown(0);
+            }
+            return new ArrayList<>(Arrays.asList(sorted));
+        }
+
+        private void siftUp(int index) {
+            int slot = kept[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (compare(slot, kept[parent]) <= 0) {
+                    break;
+                }
+                kept[index] = kept[parent];
+                index = parent;
+            }
+            kept[index] = slot;
+        }
+
+        private void siftDown(int index) {
+            int slot = kept[index];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && compare(kept[child + 1], kept[child]) > 0) {
+                    child++;
+                }
+                if (compare(slot, kept[child]) >= 0) {
+                    break;
+                }
+                kept[index] = kept[child];
+                index = child;
+            }
+            kept[index] = slot;
+        }
+
+        /**
+         * Same result as the sort's task comparator, decided from the indexed keys when possible
+         */
+        private int compare(int left, int right) {
+            int result;
+            switch (sort) {
+                case CREATED_DESC:
+                    result = compareKeys(createdKeys, right, left);
+                    break;
+                case CREATED_ASC:
+                    result = compareKeys(createdKeys, left, right);
+                    break;
+                case UPDATED_DESC:
+                    result = compareKeys(updatedKeys, right, left);
+                    break;
+                case UPDATED_ASC:
+                    result = compareKeys(updatedKeys, left, right);
+                    break;
+                case PRIORITY_DESC:
+                case PRIORITY_ASC:
+                    result = indexedPriorities[left].compareTo(indexedPriorities[right]);
+                    if (sort == TaskQuery.Sort.PRIORITY_DESC) {
+                        result = -result;
+                    }
+                    if (result == 0) {
+                        result = compareKeys(createdKeys, right, left);
+                    }
+                    break;
+                default:
+                    result = 0;
+            }
+            return result != 0 ? result : order.compare(tasks[left], tasks[right]);
+        }
+
+        private int compareKeys(long[] keys, int left, int right) {
+            long leftKey = keys[left];
+            long rightKey = keys[right];
+            if (leftKey == NO_KEY || rightKey == NO_KEY) {
+                return 0;
+            }
+            return Long.compare(leftKey, rightKey);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+
+/**
+ * Receives every mutation applied to a {@link TaskService}.
+ * Callbacks run while the affected task's entry is locked, so mutations of the
+ * same task are always observed in the order they were applied. Implementations
+ * must be fast and must not call back into the service.
+ */
+public interface TaskMutationListener {
+
+    /**
+     * A task was created or updated; {@code task} is a private copy of its new state
+     */
+    void onTaskPut(Task task);
+
+    /**
+     * A task was deleted
+     */
+    void onTaskDeleted(String id);
+}
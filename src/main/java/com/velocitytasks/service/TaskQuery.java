@@ -0,0 +1,153 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.Comparator;
+
+/**
+ * Combinable task query: optional status, priority and title search filters, a sort key and
+ * a result limit. All filters that are set must match.
+ *
+ * <pre>
+ * TaskQuery.all().completed(false).priority(TaskPriority.HIGH).search("report").limit(20)
+ * </pre>
+ */
+public class TaskQuery {
+    /** Missing timestamps sort as the earliest, as they do in the database */
+    private static final Comparator<String> TIMESTAMPS = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    /**
+     * Sort orders for query results
+     */
+    public enum Sort {
+        CREATED_DESC(Comparator.comparing(Task::getCreatedAt, TIMESTAMPS).reversed()),
+        CREATED_ASC(Comparator.comparing(Task::getCreatedAt, TIMESTAMPS)),
+        UPDATED_DESC(Comparator.comparing(Task::getUpdatedAt, TIMESTAMPS).reversed()),
+        UPDATED_ASC(Comparator.comparing(Task::getUpdatedAt, TIMESTAMPS)),
+        TITLE_ASC(Comparator.comparing(Task::getTitle, String.CASE_INSENSITIVE_ORDER)),
+        TITLE_DESC(Comparator.comparing(Task::getTitle, String.CASE_INSENSITIVE_ORDER).reversed()),
+        PRIORITY_DESC(Comparator.comparing(Task::getPriority).reversed()
+                .thenComparing(Comparator.comparing(Task::getCreatedAt, TIMESTAMPS).reversed())),
+        PRIORITY_ASC(Comparator.comparing(Task::getPriority)
+                .thenComparing(Comparator.comparing(Task::getCreatedAt, TIMESTAMPS).reversed()));
+
+        private final Comparator<Task> comparator;
+
+        Sort(Comparator<Task> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Comparator<Task> getComparator() {
+            return comparator;
+        }
+
+        /**
+         * Parse a sort parameter such as {@code createdAt}, {@code -createdAt}, {@code title}
+         * or {@code -priority}; a leading {@code -} means descending.
+         *
+         * @return the sort order, or {@code null} if the value is not recognised
+         */
+        public static Sort fromParameter(String value) {
+            if (value == null) {
+                return null;
+            }
+            boolean descending = value.startsWith("-");
+            String field = descending ? value.substring(1) : value;
+            switch (field) {
+                case "createdAt":
+                    return descending ? CREATED_DESC : CREATED_ASC;
+                case "updatedAt":
+                    return descending ? UPDATED_DESC : UPDATED_ASC;
+                case "title":
+                    return descending ? TITLE_DESC : TITLE_ASC;
+                case "priority":
+                    return descending ? PRIORITY_DESC : PRIORITY_ASC;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private Boolean completed;
+    private TaskPriority priority;
+    private String search;
+    private Sort sort = Sort.CREATED_DESC;
+    private int limit = Integer.MAX_VALUE;
+    private boolean includeArchived;
+
+    /**
+     * Start a query matching every task, newest first
+     */
+    public static TaskQuery all() {
+        return new TaskQuery();
+    }
+
+    /**
+     * Only completed ({@code true}) or pending ({@code false}) tasks; {@code null} for either
+     */
+    public TaskQuery completed(Boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    /**
+     * Only tasks of the given priority; {@code null} for any
+     */
+    public TaskQuery priority(TaskPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Only tasks whose title contains the text, ignoring case; {@code null} or blank for any
+     */
+    public TaskQuery search(String search) {
+        this.search = search == null || search.trim().isEmpty() ? null : search;
+        return this;
+    }
+
+    public TaskQuery sort(Sort sort) {
+        this.sort = sort != null ? sort : Sort.CREATED_DESC;
+        return this;
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Also search tasks moved to the archive (see {@link TaskService#setArchive}). This reads
+     * the archive from disk, so it is much slower than a query of the tasks in memory.
+     */
+    public TaskQuery includeArchived(boolean includeArchived) {
+        this.includeArchived = includeArchived;
+        return this;
+    }
+
+    /**
+     * Whether a task passes this query's filters
+     */
+    public boolean matches(Task task) {
+        if (completed != null && task.isCompleted() != completed) {
+            return false;
+        }
+        TaskPriority taskPriority = task.getPriority() != null ? task.getPriority() : TaskPriority.MEDIUM;
+        if (priority != null && taskPriority != priority) {
+            return false;
+        }
+        return search == null
+                || (task.getTitle() != null && task.getTitle().toLowerCase().contains(search.toLowerCase()));
+    }
+
+    public Boolean getCompleted() { return completed; }
+    public TaskPriority getPriority() { return priority; }
+    public String getSearch() { return search; }
+    public Sort getSort() { return sort; }
+    public int getLimit() { return limit; }
+    public boolean isIncludeArchived() { return includeArchived; }
+}
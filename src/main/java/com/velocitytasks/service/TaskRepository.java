@@ -0,0 +1,72 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Storage behind a {@link TaskService}. The service owns validation, history, listeners and
+ * the response cache; a repository only stores tasks and answers queries over them.
+ *
+ * <p>Stored tasks are treated as immutable: a change replaces the task with a new object, so
+ * tasks handed out by a repository may be shared but must not be modified. Failures of the
+ * underlying store surface as {@link TaskRepositoryException}.
+ */
+public interface TaskRepository extends Closeable {
+
+    Optional<Task> findById(String id);
+
+    default boolean contains(String id) {
+        return findById(id).isPresent();
+    }
+
+    /**
+     * Tasks matching the query's filters, in its order and up to its limit. Archived tasks are
+     * not the repository's concern, so {@link TaskQuery#isIncludeArchived()} is ignored.
+     */
+    List<Task> find(TaskQuery query);
+
+    /**
+     * Number of tasks with the given status and priority; {@code null} for either
+     */
+    long count(Boolean completed, TaskPriority priority);
+
+    /**
+     * Atomically replace the task stored under an ID.
+     *
+     * <p>{@code remapping} receives the current task (or {@code null}) and returns the new one,
+     * {@code null} to delete it, or the current task itself to leave it unchanged. Once a
+     * change is visible to readers, {@code onChange} is called with the previous and new
+     * state. Both run before any other change to the same ID can start, so callbacks for one
+     * ID are never reordered.
+     *
+     * @return the task now stored under the ID, or {@code null}
+     */
+    Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange);
+
+    /**
+     * Store tasks as-is (inserting or overwriting by ID), in as few round trips as the
+     * store allows. No callbacks are made.
+     */
+    void saveAll(List<Task> tasks);
+
+    /**
+     * IDs of every stored task
+     */
+    List<String> findAllIds();
+
+    /**
+     * Open a point-in-time view of every task; see {@link TaskSnapshot}
+     */
+    TaskSnapshot openSnapshot();
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,10 @@
+package com.velocitytasks.service;
+
+/**
+ * Thrown when a {@link TaskRepository} cannot read or write its underlying store.
+ */
+public class TaskRepositoryException extends RuntimeException {
+    public TaskRepositoryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
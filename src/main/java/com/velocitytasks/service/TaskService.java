@@ -1,27 +1,57 @@
 package com.velocitytasks.service;
 
+import com.velocitytasks.archive.TaskArchive;
 import com.velocitytasks.model.Task;
 import com.velocitytasks.model.TaskPriority;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Service class for managing tasks in VelocityTasks application.
- * Uses in-memory storage for simplicity and lightweight operation.
+ * Tasks are kept in a {@link TaskRepository}, in memory unless configured otherwise.
  */
 public class TaskService {
+    private static final Logger LOGGER = Logger.getLogger(TaskService.class.getName());
     private static TaskService instance;
-    private final ConcurrentMap<String, Task> tasks;
+    private static TaskRepository defaultRepository;
+    private final TaskRepository repository;
+    private final List<TaskMutationListener> mutationListeners;
+    private final TaskActivityHistory history;
+    private final QueryResultCache queryCache;
+    private volatile TaskArchive archive;
+    /** Snapshots still reading the archive, which must see tasks leaving it */
+    private final Set<StoreSnapshot> openSnapshots = ConcurrentHashMap.newKeySet();
+    /** Shared while a task leaves the archive, exclusive while a snapshot starts reading it */
+    private final ReadWriteLock archiveRemovals = new ReentrantReadWriteLock();
 
-    private TaskService() {
-        this.tasks = new ConcurrentHashMap<>();
-        initializeSampleData();
+    private TaskService(TaskRepository repository, boolean withSampleData) {
+        this.repository = repository;
+        this.mutationListeners = new CopyOnWriteArrayList<>();
+        this.history = new TaskActivityHistory();
+        this.queryCache = new QueryResultCache();
+        // A persistent repository keeps its tasks across restarts; only seed an empty one
+        if (withSampleData && repository.count(null, null) == 0) {
+            initializeSampleData();
+        }
     }
 
     /**
@@ -29,11 +59,67 @@ public class TaskService {
      */
     public static synchronized TaskService getInstance() {
         if (instance == null) {
-            instance = new TaskService();
+            instance = new TaskService(defaultRepository != null ? defaultRepository : new InMemoryTaskRepository(), true);
         }
         return instance;
     }
 
+    /**
+     * Choose the repository of the singleton instance. Must be called before the instance is
+     * first requested.
+     */
+    public static synchronized void setDefaultRepository(TaskRepository repository) {
+        if (instance != null) {
+            throw new IllegalStateException("TaskService instance already created");
+        }
+        defaultRepository = repository;
+    }
+
+    /**
+     * Create an independent, empty instance (e.g. for additional replication nodes in one JVM)
+     */
+    public static TaskService newStandaloneInstance() {
+        return new TaskService(new InMemoryTaskRepository(), false);
+    }
+
+    /**
+     * Create an independent instance over the given repository, without sample data
+     */
+    public static TaskService newStandaloneInstance(TaskRepository repository) {
+        return new TaskService(repository, false);
+    }
+
+    public TaskRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Register a listener that is notified of every task mutation
+     */
+    public void addMutationListener(TaskMutationListener listener) {
+        mutationListeners.add(listener);
+    }
+
+    /**
+     * Remove a previously registered mutation listener
+     */
+    public void removeMutationListener(TaskMutationListener listener) {
+        mutationListeners.remove(listener);
+    }
+
+    /**
+     * Attach a cold store for old completed tasks (see {@link com.velocitytasks.archive.TaskArchiver}),
+     * or detach it with {@code null}. Lookups, updates and deletes by ID fall through to the
+     * archive; queries only read it when asked to.
+     */
+    public void setArchive(TaskArchive archive) {
+        this.archive = archive;
+    }
+
+    public TaskArchive getArchive() {
+        return archive;
+    }
+
     /**
      * Initialize with some sample data for demonstration
      */
@@ -47,16 +133,67 @@ public class TaskService {
      * Get all tasks sorted by creation date (newest first)
      */
     public List<Task> getAllTasks() {
-        return tasks.values().stream()
-                .sorted(Comparator.comparing(Task::getCreatedAt).reversed())
-                .collect(Collectors.toList());
+        return query(TaskQuery.all());
+    }
+
+    /**
+     * Run a query combining status, priority and title search filters with a sort and limit
+     */
+    public List<Task> query(TaskQuery query) {
+        List<Task> result = repository.find(query);
+        TaskArchive currentArchive = archive;
+        if (!query.isIncludeArchived() || currentArchive == null || currentArchive.getTaskCount() == 0
+                || query.getLimit() == 0 || Boolean.FALSE.equals(query.getCompleted())) {
+            return result;
+        }
+        return mergeArchived(query, result, currentArchive);
+    }
+
+    /**
+     * Merge the archived tasks matching a query into the in-memory results, keeping the
+     * query's order and limit. A task being archived right now is in both; its in-memory
+     * copy wins.
+     */
+    private List<Task> mergeArchived(TaskQuery query, List<Task> result, TaskArchive currentArchive) {
+        Comparator<Task> order = query.getSort().getComparator();
+        int limit = query.getLimit();
+        // Worst kept task on top, so a better one can replace it
+        PriorityQueue<Task> kept = new PriorityQueue<>(order.reversed());
+        kept.addAll(result);
+        try {
+            currentArchive.scan(query.getPriority(), task -> {
+                if (!query.matches(task) || repository.contains(task.getId())) {
+                    return;
+                }
+                if (kept.size() < limit) {
+                    kept.add(task);
+                } else if (order.compare(task, kept.peek()) < 0) {
+                    kept.poll();
+                    kept.add(task);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read task archive", e);
+        }
+        List<Task> merged = new ArrayList<>(kept);
+        merged.sort(order);
+        return merged;
     }
 
     /**
      * Get a specific task by ID
      */
     public Optional<Task> getTaskById(String id) {
-        return Optional.ofNullable(tasks.get(id));
+        Optional<Task> task = repository.findById(id);
+        TaskArchive currentArchive = archive;
+        if (task.isPresent() || id == null || currentArchive == null) {
+            return task;
+        }
+        try {
+            return currentArchive.get(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read task archive", e);
+        }
     }
 
     /**
@@ -70,12 +207,23 @@ public class TaskService {
             throw new IllegalArgumentException("Task title cannot be empty");
         }
         
-        // Ensure task has an ID
-        if (task.getId() == null) {
-            task = new Task(task.getTitle(), task.getPriority());
+        // Ensure task has an ID and timestamps (decoded request bodies leave them unset)
+        boolean newId = task.getId() == null;
+        if (newId) {
+            task.setId(Task.generateId());
+        }
+        if (task.getCreatedAt() == null || task.getUpdatedAt() == null) {
+            String now = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            if (task.getCreatedAt() == null) {
+                task.setCreatedAt(now);
+            }
+            if (task.getUpdatedAt() == null) {
+                task.setUpdatedAt(now);
+            }
         }
         
-        tasks.put(task.getId(), task);
+        // A freshly generated ID cannot have an archived copy
+        put(task, true, newId ? null : archive);
         return task;
     }
 
@@ -87,88 +235,478 @@ public class TaskService {
             return Optional.empty();
         }
         
-        Task existingTask = tasks.get(id);
-        if (existingTask == null) {
-            return Optional.empty();
-        }
+        // Update while holding the entry so concurrent updates and deletes are ordered. The
+        // stored task is replaced by an updated copy rather than changed in place, so readers
+        // and open snapshots holding it keep a consistent state.
+        TaskArchive currentArchive = archive;
+        Task[] restored = new Task[1];
+        Task result = repository.compute(id, (key, existingTask) -> {
+            restored[0] = null;
+            if (existingTask == null) {
+                // Archived tasks are immutable: an update moves the task back into memory
+                restored[0] = findArchived(currentArchive, key);
+                if (restored[0] == null) {
+                    return null;
+                }
+                existingTask = restored[0];
+            }
+            return applyUpdate(existingTask, updatedTask);
+        }, (previous, task) -> {
+            Task before = previous != null ? previous : restored[0];
+            if (restored[0] != null) {
+                dropArchivedCopy(currentArchive, id);
+            }
+            if (task.isCompleted() && !before.isCompleted()) {
+                history.record(TaskActivityHistory.Event.COMPLETED, task.getPriority());
+            }
+            changed(before, task);
+        });
         
-        // Update fields
+        return Optional.ofNullable(result);
+    }
+
+    private Task applyUpdate(Task existingTask, Task updatedTask) {
+        Task task = new Task(existingTask);
         if (updatedTask.getTitle() != null && !updatedTask.getTitle().trim().isEmpty()) {
-            existingTask.setTitle(updatedTask.getTitle());
+            task.setTitle(updatedTask.getTitle());
         }
         if (updatedTask.getPriority() != null) {
-            existingTask.setPriority(updatedTask.getPriority());
+            task.setPriority(updatedTask.getPriority());
         }
-        existingTask.setCompleted(updatedTask.isCompleted());
-        
-        return Optional.of(existingTask);
+        task.setCompleted(updatedTask.isCompleted());
+        return task;
     }
 
     /**
      * Delete a task
      */
     public boolean deleteTask(String id) {
-        return tasks.remove(id) != null;
+        return remove(id, true, archive);
+    }
+
+    /**
+     * Drop a task from memory after it was copied to the archive. Nothing happens if the task
+     * changed (or was deleted) in the meantime, since the archived copy would be stale. This
+     * is not a mutation: listeners are not notified and no activity is recorded.
+     *
+     * <p>The stored task is compared by its fields, not by identity: repositories that read
+     * from a database return a new object for every lookup.
+     *
+     * @return whether the task was evicted
+     */
+    public boolean evictToArchive(Task task) {
+        boolean[] evicted = new boolean[1];
+        repository.compute(task.getId(), (key, existingTask) -> sameState(existingTask, task) ? null : existingTask,
+                (previous, current) -> {
+                    evicted[0] = true;
+                    queryCache.invalidate(previous, null);
+                });
+        return evicted[0];
+    }
+
+    private static boolean sameState(Task stored, Task task) {
+        return stored != null
+                && Objects.equals(stored.getTitle(), task.getTitle())
+                && stored.getPriority() == task.getPriority()
+                && stored.isCompleted() == task.isCompleted()
+                && Objects.equals(stored.getCreatedAt(), task.getCreatedAt())
+                && Objects.equals(stored.getUpdatedAt(), task.getUpdatedAt());
+    }
+
+    private static Task findArchived(TaskArchive currentArchive, String id) {
+        if (currentArchive == null) {
+            return null;
+        }
+        try {
+            return currentArchive.get(id).orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read task archive", e);
+        }
+    }
+
+    private Task removeFromArchive(TaskArchive currentArchive, String id) {
+        if (currentArchive == null) {
+            return null;
+        }
+        try {
+            return removeArchived(currentArchive, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update task archive", e);
+        }
+    }
+
+    /**
+     * Remove the archived copy of a task whose newer state was just written to the repository.
+     * Only called once that write is visible, so a failed write never loses the archived copy.
+     * If the copy cannot be removed the task is left in both stores; the repository's copy
+     * wins for lookups and listings, and deleting the task removes both.
+     */
+    private void dropArchivedCopy(TaskArchive currentArchive, String id) {
+        if (currentArchive == null) {
+            return;
+        }
+        try {
+            removeArchived(currentArchive, id);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to remove archived copy of task " + id, e);
+        }
+    }
+
+    /**
+     * Remove a task from the archive, first handing its archived state to every open snapshot,
+     * which may not have read it yet
+     *
+     * @return the task that was removed, or {@code null} if it was not archived
+     */
+    private Task removeArchived(TaskArchive currentArchive, String id) throws IOException {
+        archiveRemovals.readLock().lock();
+        try {
+            if (!openSnapshots.isEmpty()) {
+                Optional<Task> archived = currentArchive.get(id);
+                if (archived.isEmpty()) {
+                    return null;
+                }
+                for (StoreSnapshot snapshot : openSnapshots) {
+                    snapshot.preserve(archived.get());
+                }
+            }
+            return currentArchive.remove(id);
+        } finally {
+            archiveRemovals.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a task state received from a replication leader (insert or overwrite as-is)
+     */
+    public void applyReplicatedPut(Task task) {
+        put(task, true, archive);
+    }
+
+    /**
+     * Apply a deletion received from a replication leader
+     */
+    public void applyReplicatedDelete(String id) {
+        deleteTask(id);
+    }
+
+    /**
+     * Replace the whole task set with a snapshot received from a replication leader. Tasks
+     * missing from the snapshot are removed from memory and from the archive alike.
+     */
+    public void applyReplicatedSnapshot(List<Task> snapshot) {
+        Set<String> retained = new HashSet<>();
+        for (Task task : snapshot) {
+            retained.add(task.getId());
+        }
+        // A snapshot restores state rather than reporting new activity, so it is written in
+        // bulk and only announced to listeners. Archived copies are superseded once it is saved.
+        repository.saveAll(snapshot);
+        TaskArchive currentArchive = archive;
+        for (Task task : snapshot) {
+            dropArchivedCopy(currentArchive, task.getId());
+        }
+        queryCache.clear();
+        for (Task task : snapshot) {
+            firePut(task);
+        }
+        for (String id : repository.findAllIds()) {
+            if (!retained.contains(id)) {
+                remove(id, false, currentArchive);
+            }
+        }
+        if (currentArchive != null) {
+            List<String> stale = new ArrayList<>();
+            try {
+                currentArchive.scan(null, task -> {
+                    if (!retained.contains(task.getId())) {
+                        stale.add(task.getId());
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read task archive", e);
+            }
+            for (String id : stale) {
+                remove(id, false, currentArchive);
+            }
+        }
+    }
+
+    /**
+     * Copy every task as of one point in time, archived ones included. A task returned twice by
+     * the snapshot is copied once, in its later state.
+     */
+    public List<Task> snapshotTasks() {
+        Map<String, Task> snapshot = new LinkedHashMap<>();
+        try (TaskSnapshot view = openSnapshot()) {
+            for (List<Task> batch = view.nextBatch(1024); !batch.isEmpty(); batch = view.nextBatch(1024)) {
+                for (Task task : batch) {
+                    snapshot.put(task.getId(), new Task(task));
+                }
+            }
+        }
+        return new ArrayList<>(snapshot.values());
+    }
+
+    /**
+     * Open a point-in-time view of every task, archived ones included, that can be read in
+     * batches while mutations continue. Archived tasks come first. A task moving into or out
+     * of the archive just as the snapshot is opened may be returned twice, its later state
+     * last. Close it when done; until then it keeps the previous state of tasks changed after
+     * it was opened, and the archive is not compacted.
+     */
+    public TaskSnapshot openSnapshot() {
+        TaskArchive currentArchive = archive;
+        StoreSnapshot snapshot = new StoreSnapshot();
+        if (currentArchive != null) {
+            // Registered before reading starts, so no task leaves the archive unseen
+            archiveRemovals.writeLock().lock();
+            try {
+                openSnapshots.add(snapshot);
+            } finally {
+                archiveRemovals.writeLock().unlock();
+            }
+        }
+        try {
+            snapshot.open(currentArchive);
+        } catch (RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Insert or overwrite a task. A task written again (by ID) supersedes its archived copy,
+     * which is only removed once the write is visible. Activity is recorded at the same point,
+     * so a write that is rolled back is not counted.
+     *
+     * @param currentArchive archive to look for an earlier copy in, or {@code null} to skip it
+     */
+    private void put(Task task, boolean recordHistory, TaskArchive currentArchive) {
+        Task[] archived = new Task[1];
+        repository.compute(task.getId(), (id, current) -> {
+            archived[0] = current == null ? findArchived(currentArchive, id) : null;
+            // Returning the stored object itself would mean "unchanged"
+            return task != current ? task : new Task(task);
+        }, (previous, current) -> {
+            Task before = previous != null ? previous : archived[0];
+            if (archived[0] != null) {
+                dropArchivedCopy(currentArchive, current.getId());
+            }
+            if (recordHistory) {
+                if (before == null) {
+                    history.record(TaskActivityHistory.Event.CREATED, current.getPriority());
+                }
+                if (current.isCompleted() && (before == null || !before.isCompleted())) {
+                    history.record(TaskActivityHistory.Event.COMPLETED, current.getPriority());
+                }
+            }
+            changed(before, current);
+        });
+    }
+
+    private boolean remove(String id, boolean recordHistory, TaskArchive currentArchive) {
+        if (id == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        repository.compute(id, (key, existingTask) -> {
+            if (existingTask == null) {
+                // Possibly archived. Deleting it there is no change to the repository, so
+                // it is reported here.
+                Task archivedTask = removeFromArchive(currentArchive, key);
+                if (archivedTask != null) {
+                    removed[0] = true;
+                    if (recordHistory) {
+                        history.record(TaskActivityHistory.Event.DELETED, archivedTask.getPriority());
+                    }
+                    changed(archivedTask, null);
+                }
+                return null;
+            }
+            return null;
+        }, (previous, current) -> {
+            removed[0] = true;
+            if (recordHistory) {
+                history.record(TaskActivityHistory.Event.DELETED, previous.getPriority());
+            }
+            // A copy left behind by an interrupted move out of the archive must not resurface
+            dropArchivedCopy(currentArchive, id);
+            changed(previous, current);
+        });
+        return removed[0];
+    }
+
+    /**
+     * Called once a change is visible, while the task's ID is still held
+     */
+    private void changed(Task previous, Task current) {
+        queryCache.invalidate(previous, current);
+        if (current != null) {
+            firePut(current);
+        } else {
+            fireDeleted(previous.getId());
+        }
+    }
+
+    private void firePut(Task task) {
+        if (mutationListeners.isEmpty()) {
+            return;
+        }
+        Task copy = new Task(task);
+        for (TaskMutationListener listener : mutationListeners) {
+            listener.onTaskPut(copy);
+        }
+    }
+
+    private void fireDeleted(String id) {
+        for (TaskMutationListener listener : mutationListeners) {
+            listener.onTaskDeleted(id);
+        }
     }
 
     /**
      * Get tasks by completion status
      */
     public List<Task> getTasksByStatus(boolean completed) {
-        return tasks.values().stream()
-                .filter(task -> task.isCompleted() == completed)
-                .sorted(Comparator.comparing(Task::getCreatedAt).reversed())
-                .collect(Collectors.toList());
+        return query(TaskQuery.all().completed(completed));
     }
 
     /**
      * Get tasks by priority
      */
     public List<Task> getTasksByPriority(TaskPriority priority) {
-        return tasks.values().stream()
-                .filter(task -> task.getPriority() == priority)
-                .sorted(Comparator.comparing(Task::getCreatedAt).reversed())
-                .collect(Collectors.toList());
+        if (priority == null) {
+            return new ArrayList<>();
+        }
+        return query(TaskQuery.all().priority(priority));
     }
 
     /**
      * Search tasks by title (case-insensitive)
      */
     public List<Task> searchTasks(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return getAllTasks();
-        }
-        
-        String lowerQuery = query.toLowerCase();
-        return tasks.values().stream()
-                .filter(task -> task.getTitle().toLowerCase().contains(lowerQuery))
-                .sorted(Comparator.comparing(Task::getCreatedAt).reversed())
-                .collect(Collectors.toList());
+        return query(TaskQuery.all().search(query));
     }
 
     /**
      * Get task statistics
      */
     public TaskStats getTaskStats() {
-        long total = tasks.size();
-        long completed = tasks.values().stream()
-                .mapToLong(task -> task.isCompleted() ? 1 : 0)
-                .sum();
+        long total = repository.count(null, null);
+        long completed = repository.count(true, null);
         long pending = total - completed;
         
-        long highPriority = tasks.values().stream()
-                .mapToLong(task -> task.getPriority() == TaskPriority.HIGH ? 1 : 0)
-                .sum();
-        long mediumPriority = tasks.values().stream()
-                .mapToLong(task -> task.getPriority() == TaskPriority.MEDIUM ? 1 : 0)
-                .sum();
-        long lowPriority = tasks.values().stream()
-                .mapToLong(task -> task.getPriority() == TaskPriority.LOW ? 1 : 0)
-                .sum();
+        long highPriority = repository.count(null, TaskPriority.HIGH);
+        long mediumPriority = repository.count(null, TaskPriority.MEDIUM);
+        long lowPriority = repository.count(null, TaskPriority.LOW);
+        
+        // Archived tasks are all completed, and the archive keeps per-priority counts
+        TaskArchive currentArchive = archive;
+        if (currentArchive != null) {
+            long archived = currentArchive.getTaskCount();
+            total += archived;
+            completed += archived;
+            highPriority += currentArchive.getTaskCount(TaskPriority.HIGH);
+            mediumPriority += currentArchive.getTaskCount(TaskPriority.MEDIUM);
+            lowPriority += currentArchive.getTaskCount(TaskPriority.LOW);
+        }
         
         return new TaskStats(total, completed, pending, highPriority, mediumPriority, lowPriority);
     }
 
+    /**
+     * Cache of serialized query responses, invalidated by every mutation of this service
+     */
+    public QueryResultCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Rolling per-second and per-minute history of created, completed and deleted tasks
+     */
+    public TaskActivityHistory getActivityHistory() {
+        return history;
+    }
+
+    /**
+     * Snapshot of the archive followed by the repository. The archive is read block by block,
+     * so a task removed from it (restored or deleted) before its block is read is skipped
+     * there; it was preserved in the snapshot instead and is returned after the archive.
+     */
+    private final class StoreSnapshot implements TaskSnapshot {
+        private final Map<String, Task> preserved = new ConcurrentHashMap<>();
+        private TaskSnapshot repositoryView;
+        private TaskArchive.Reader archiveReader;
+        private List<Task> pending = new ArrayList<>();
+        private int pendingIndex;
+
+        void open(TaskArchive currentArchive) {
+            repositoryView = repository.openSnapshot();
+            if (currentArchive != null) {
+                archiveReader = currentArchive.openReader();
+            }
+        }
+
+        /**
+         * Keep the archived state of a task about to leave the archive. Archived tasks do not
+         * change, so the first state kept is the one the snapshot was opened with.
+         */
+        void preserve(Task task) {
+            preserved.putIfAbsent(task.getId(), task);
+        }
+
+        @Override
+        public List<Task> nextBatch(int maxTasks) {
+            List<Task> batch = new ArrayList<>(Math.min(maxTasks, 1024));
+            while (batch.size() < maxTasks) {
+                if (pendingIndex < pending.size()) {
+                    batch.add(pending.get(pendingIndex++));
+                } else if (archiveReader != null) {
+                    pending = nextArchived();
+                    pendingIndex = 0;
+                } else {
+                    break;
+                }
+            }
+            if (batch.size() < maxTasks) {
+                batch.addAll(repositoryView.nextBatch(maxTasks - batch.size()));
+            }
+            return batch;
+        }
+
+        private List<Task> nextArchived() {
+            List<Task> block;
+            try {
+                block = archiveReader.nextBlock();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read task archive", e);
+            }
+            if (!block.isEmpty()) {
+                return block;
+            }
+            archiveReader.close();
+            archiveReader = null;
+            // A task removed after the reader passed its block was returned by the reader;
+            // one removed before that was preserved by now
+            openSnapshots.remove(this);
+            return new ArrayList<>(preserved.values());
+        }
+
+        @Override
+        public void close() {
+            openSnapshots.remove(this);
+            if (archiveReader != null) {
+                archiveReader.close();
+                archiveReader = null;
+            }
+            if (repositoryView != null) {
+                repositoryView.close();
+            }
+        }
+    }
+
     /**
      * Inner class for task statistics
      */
@@ -0,0 +1,25 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+
+import java.util.List;
+
+/**
+ * Point-in-time view of every task in a {@link TaskRepository}, read in batches while the
+ * repository keeps accepting mutations. Tasks created after the snapshot was opened are not
+ * returned and tasks deleted or changed since are returned as they were.
+ *
+ * <p>A snapshot is read by one thread at a time and must be closed.
+ */
+public interface TaskSnapshot extends AutoCloseable {
+
+    /**
+     * The next tasks of the snapshot, in no particular order
+     *
+     * @return up to {@code maxTasks} tasks; empty once every task has been returned
+     */
+    List<Task> nextBatch(int maxTasks);
+
+    @Override
+    void close();
+}
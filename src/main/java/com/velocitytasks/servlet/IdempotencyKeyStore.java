@@ -0,0 +1,229 @@
+package com.velocitytasks.servlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Responses to write requests, remembered by the client-chosen {@code Idempotency-Key} so a
+ * retried request is answered with the original response instead of being applied again.
+ *
+ * <p>A request first {@linkplain #claim claims} its key. Only the first claim may run the
+ * request; it then either {@linkplain #complete completes} the key with the response to replay
+ * or {@linkplain #release releases} it (after a failure worth retrying). Each key also records a
+ * fingerprint of the request that claimed it, so a key reused for a different request is
+ * refused rather than answered with an unrelated response.
+ *
+ * <p>Keys are kept for a fixed retention period, up to a maximum number of keys and a maximum
+ * total size of stored response bodies; when either is exceeded, the oldest key is forgotten
+ * first.
+ */
+public class IdempotencyKeyStore {
+    public static final int DEFAULT_MAX_KEYS = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    public static final long DEFAULT_RETENTION_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * What a {@link #claim} found
+     */
+    public enum Outcome {
+        /** The key is new: run the request, then complete or release the claim */
+        CLAIMED,
+        /** The request already ran; replay {@link Claim#getResponse()} */
+        COMPLETED,
+        /** The first request with the key is still running */
+        IN_PROGRESS,
+        /** The key was claimed by a request with a different fingerprint */
+        MISMATCH
+    }
+
+    private final int maxKeys;
+    private final long maxBytes;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+    /** Insertion ordered, so the eldest entries are the first to expire; guarded by itself */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    /** Total size of the stored response bodies; guarded by {@link #entries} */
+    private long storedBytes;
+
+    public IdempotencyKeyStore() {
+        this(DEFAULT_MAX_KEYS, DEFAULT_RETENTION_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a store driven by the given millisecond clock
+     */
+    public IdempotencyKeyStore(int maxKeys, long retentionMillis, LongSupplier clock) {
+        this(maxKeys, DEFAULT_MAX_BYTES, retentionMillis, clock);
+    }
+
+    /**
+     * Create a store keeping at most {@code maxBytes} of response bodies, driven by the given
+     * millisecond clock
+     */
+    public IdempotencyKeyStore(int maxKeys, long maxBytes, long retentionMillis, LongSupplier clock) {
+        if (maxKeys <= 0 || maxBytes <= 0 || retentionMillis <= 0) {
+            throw new IllegalArgumentException("Store bounds must be positive");
+        }
+        this.maxKeys = maxKeys;
+        this.maxBytes = maxBytes;
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Claim a key for a request
+     *
+     * @param fingerprint identifies the request, such as its method, path and a hash of its body
+     */
+    public Claim claim(String key, String fingerprint) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            expire(now);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now);
+                entries.put(key, entry);
+                trim();
+                return new Claim(key, entry, Outcome.CLAIMED, null);
+            }
+            if (!entry.fingerprint.equals(fingerprint)) {
+                return new Claim(key, entry, Outcome.MISMATCH, null);
+            }
+            if (entry.response == null) {
+                return new Claim(key, entry, Outcome.IN_PROGRESS, null);
+            }
+            return new Claim(key, entry, Outcome.COMPLETED, entry.response);
+        }
+    }
+
+    /**
+     * Record the response of a claimed request, to be replayed to every retry
+     */
+    public void complete(Claim claim, StoredResponse response) {
+        requireClaimed(claim);
+        synchronized (entries) {
+            claim.entry.response = response;
+            // Unless the key was already forgotten, its response now counts against the budget
+            if (entries.get(claim.key) == claim.entry) {
+                storedBytes += response.getBody().length;
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Forget a claimed key whose request failed, so a retry runs it again
+     */
+    public void release(Claim claim) {
+        requireClaimed(claim);
+        synchronized (entries) {
+            if (entries.remove(claim.key, claim.entry)) {
+                forget(claim.entry);
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            expire(clock.getAsLong());
+            return entries.size();
+        }
+    }
+
+    /**
+     * Total size of the stored response bodies
+     */
+    public long getStoredBytes() {
+        synchronized (entries) {
+            return storedBytes;
+        }
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (now - eldest.claimedAt < retentionMillis) {
+                break;
+            }
+            iterator.remove();
+            forget(eldest);
+        }
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxKeys || storedBytes > maxBytes) && iterator.hasNext()) {
+            forget(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private void forget(Entry entry) {
+        if (entry.response != null) {
+            storedBytes -= entry.response.getBody().length;
+        }
+    }
+
+    private static void requireClaimed(Claim claim) {
+        if (claim.outcome != Outcome.CLAIMED) {
+            throw new IllegalStateException("Key " + claim.key + " was not claimed: " + claim.outcome);
+        }
+    }
+
+    /**
+     * Result of {@link #claim}
+     */
+    public static final class Claim {
+        private final String key;
+        private final Entry entry;
+        private final Outcome outcome;
+        private final StoredResponse response;
+
+        private Claim(String key, Entry entry, Outcome outcome, StoredResponse response) {
+            this.key = key;
+            this.entry = entry;
+            this.outcome = outcome;
+            this.response = response;
+        }
+
+        public String getKey() { return key; }
+        public Outcome getOutcome() { return outcome; }
+
+        /**
+         * The response to replay when the outcome is {@link Outcome#COMPLETED}, otherwise {@code null}
+         */
+        public StoredResponse getResponse() { return response; }
+    }
+
+    /**
+     * Status, content type and body of a response
+     */
+    public static final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() { return status; }
+        public String getContentType() { return contentType; }
+        public byte[] getBody() { return body; }
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long claimedAt;
+        StoredResponse response;
+
+        Entry(String fingerprint, long claimedAt) {
+            this.fingerprint = fingerprint;
+            this.claimedAt = claimedAt;
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package com.velocitytasks.servlet;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.velocitytasks.archive.TaskArchive;
+import com.velocitytasks.codec.JsonTaskCodec;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.replication.ReplicationContextListener;
+import com.velocitytasks.replication.ReplicationFollower;
+import com.velocitytasks.replication.ReplicationLeader;
+import com.velocitytasks.repository.CachingTaskRepository;
+import com.velocitytasks.service.QueryResultCache;
+import com.velocitytasks.service.TaskActivityHistory;
 import com.velocitytasks.service.TaskService;
 
 import jakarta.servlet.ServletException;
@@ -21,22 +29,23 @@ public class StatsServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(StatsServlet.class.getName());
     private static final String CONTENT_TYPE_JSON = "application/json";
     private static final String CHARACTER_ENCODING = "UTF-8";
+    private static final String HISTORY_PATH = "/api/stats/history";
+    private static final String DEFAULT_WINDOW = "5m";
+    private static final int DEFAULT_POINTS = 60;
+    private static final int MAX_POINTS = 3600;
     
     private TaskService taskService;
-    private Gson gson;
 
     @Override
     public void init() throws ServletException {
         super.init();
         this.taskService = TaskService.getInstance();
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .create();
         LOGGER.info("StatsServlet initialized successfully");
     }
 
     /**
      * GET /api/stats - Get application statistics
+     * GET /api/stats/history?window=5m&amp;points=60 - Get activity rates and trends over a window
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
@@ -46,23 +55,162 @@ public class StatsServlet extends HttpServlet {
         response.setContentType(CONTENT_TYPE_JSON);
         response.setCharacterEncoding(CHARACTER_ENCODING);
 
+        if (HISTORY_PATH.equals(request.getServletPath())) {
+            handleHistory(request, response);
+            return;
+        }
+
         try {
             TaskService.TaskStats taskStats = taskService.getTaskStats();
-            AppStats appStats = new AppStats(taskStats);
+            TaskArchive archive = taskService.getArchive();
+            AppStats appStats = new AppStats(taskStats, getReplicationStats(),
+                    new CacheStats(taskService.getQueryCache().getStats()), getRepositoryCacheStats(),
+                    archive != null ? new ArchiveStats(archive) : null);
             
             try (PrintWriter writer = response.getWriter()) {
-                writer.write(gson.toJson(appStats));
+                JsonWriter json = JsonTaskCodec.newWriter(writer);
+                appStats.writeTo(json);
+                json.flush();
             }
             
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error getting statistics", e);
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             try (PrintWriter writer = response.getWriter()) {
-                writer.write(gson.toJson(new ErrorResponse("Internal server error", 500)));
+                JsonTaskCodec.writeError(writer, "Internal server error", 500);
+            }
+        }
+    }
+
+    private void handleHistory(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        
+        String window = request.getParameter("window");
+        if (window == null || window.trim().isEmpty()) {
+            window = DEFAULT_WINDOW;
+        }
+        long windowSeconds = parseWindowSeconds(window.trim());
+        int points = parsePoints(request.getParameter("points"));
+        if (windowSeconds <= 0 || windowSeconds > TaskActivityHistory.MAX_WINDOW_SECONDS || points <= 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            try (PrintWriter writer = response.getWriter()) {
+                JsonTaskCodec.writeError(writer, "Invalid window or points (window up to 24h, e.g. 30s, 5m, 1h)", 400);
+            }
+            return;
+        }
+
+        try {
+            TaskActivityHistory.Window history = taskService.getActivityHistory().getWindow(windowSeconds, points);
+            try (PrintWriter writer = response.getWriter()) {
+                JsonWriter json = JsonTaskCodec.newWriter(writer);
+                writeHistory(json, window.trim(), history);
+                json.flush();
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error getting statistics history", e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            try (PrintWriter writer = response.getWriter()) {
+                JsonTaskCodec.writeError(writer, "Internal server error", 500);
             }
         }
     }
 
+    /**
+     * Parse a window such as {@code 90}, {@code 30s}, {@code 5m}, {@code 1h} or {@code 1d}
+     *
+     * @return the window in seconds, or -1 if invalid
+     */
+    static long parseWindowSeconds(String window) {
+        if (window.isEmpty()) {
+            return -1;
+        }
+        char unit = Character.toLowerCase(window.charAt(window.length() - 1));
+        long multiplier;
+        if (Character.isDigit(unit)) {
+            multiplier = 1;
+        } else if (unit == 's') {
+            multiplier = 1;
+        } else if (unit == 'm') {
+            multiplier = 60;
+        } else if (unit == 'h') {
+            multiplier = 3600;
+        } else if (unit == 'd') {
+            multiplier = 86_400;
+        } else {
+            return -1;
+        }
+        String amount = Character.isDigit(unit) ? window : window.substring(0, window.length() - 1);
+        try {
+            return Long.parseLong(amount) * multiplier;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int parsePoints(String points) {
+        if (points == null || points.trim().isEmpty()) {
+            return DEFAULT_POINTS;
+        }
+        try {
+            return Math.min(Integer.parseInt(points.trim()), MAX_POINTS);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeHistory(JsonWriter json, String window, TaskActivityHistory.Window history) 
+            throws IOException {
+        
+        TaskActivityHistory.Event[] events = TaskActivityHistory.Event.values();
+        json.beginObject();
+        json.name("window").value(window);
+        json.name("windowSeconds").value(history.getWindowSeconds());
+        json.name("resolutionSeconds").value(history.getResolutionSeconds());
+        json.name("pointSeconds").value(history.getPointSeconds());
+
+        json.name("totals").beginObject();
+        for (TaskActivityHistory.Event event : events) {
+            json.name(event.name().toLowerCase()).value(history.getTotal(event));
+        }
+        json.endObject();
+
+        json.name("byPriority").beginObject();
+        for (TaskPriority priority : TaskPriority.values()) {
+            json.name(priority.name().toLowerCase()).beginObject();
+            for (TaskActivityHistory.Event event : events) {
+                json.name(event.name().toLowerCase()).value(history.getTotal(event, priority));
+            }
+            json.endObject();
+        }
+        json.endObject();
+
+        json.name("ratesPerMinute").beginObject();
+        for (TaskActivityHistory.Event event : events) {
+            json.name(event.name().toLowerCase())
+                    .value(Math.round(history.getRatePerMinute(event) * 100.0) / 100.0);
+        }
+        json.endObject();
+
+        // Share of the window's new tasks matched by completions, as a percentage
+        long created = history.getTotal(TaskActivityHistory.Event.CREATED);
+        long completed = history.getTotal(TaskActivityHistory.Event.COMPLETED);
+        json.name("completionRate").value(created > 0 ? Math.round(completed * 10000.0 / created) / 100.0 : 0);
+
+        json.name("series").beginArray();
+        for (int point = 0; point < history.getPointCount(); point++) {
+            json.beginObject();
+            json.name("timestamp").value(history.getPointStartMillis(point));
+            for (TaskActivityHistory.Event event : events) {
+                json.name(event.name().toLowerCase()).value(history.getPointValue(point, event));
+            }
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("timestamp").value(System.currentTimeMillis());
+        json.endObject();
+    }
+
     /**
      * Handle OPTIONS requests for CORS preflight
      */
@@ -73,6 +221,25 @@ public class StatsServlet extends HttpServlet {
         response.setStatus(HttpServletResponse.SC_OK);
     }
 
+    private ReplicationStats getReplicationStats() {
+        Object leader = getServletContext().getAttribute(ReplicationContextListener.LEADER_ATTRIBUTE);
+        if (leader != null) {
+            return new ReplicationStats((ReplicationLeader) leader);
+        }
+        Object follower = getServletContext().getAttribute(ReplicationContextListener.FOLLOWER_ATTRIBUTE);
+        if (follower != null) {
+            return new ReplicationStats((ReplicationFollower) follower);
+        }
+        return null;
+    }
+
+    private RepositoryCacheStats getRepositoryCacheStats() {
+        if (taskService.getRepository() instanceof CachingTaskRepository) {
+            return new RepositoryCacheStats((CachingTaskRepository) taskService.getRepository());
+        }
+        return null;
+    }
+
     private void setupCORSHeaders(HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
@@ -86,20 +253,58 @@ public class StatsServlet extends HttpServlet {
     private static class AppStats {
         private final TaskCounts tasks;
         private final PriorityCounts priority;
+        private final ReplicationStats replication;
+        private final CacheStats cache;
+        private final RepositoryCacheStats repositoryCache;
+        private final ArchiveStats archive;
         private final long timestamp;
         private final String version;
 
-        public AppStats(TaskService.TaskStats taskStats) {
+        public AppStats(TaskService.TaskStats taskStats, ReplicationStats replication, CacheStats cache,
+                        RepositoryCacheStats repositoryCache, ArchiveStats archive) {
             this.tasks = new TaskCounts(taskStats);
             this.priority = new PriorityCounts(taskStats);
+            this.replication = replication;
+            this.cache = cache;
+            this.repositoryCache = repositoryCache;
+            this.archive = archive;
             this.timestamp = System.currentTimeMillis();
             this.version = "1.0.0";
         }
 
         public TaskCounts getTasks() { return tasks; }
         public PriorityCounts getPriority() { return priority; }
+        public ReplicationStats getReplication() { return replication; }
+        public CacheStats getCache() { return cache; }
+        public RepositoryCacheStats getRepositoryCache() { return repositoryCache; }
+        public ArchiveStats getArchive() { return archive; }
         public long getTimestamp() { return timestamp; }
         public String getVersion() { return version; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("tasks");
+            tasks.writeTo(json);
+            json.name("priority");
+            priority.writeTo(json);
+            if (replication != null) {
+                json.name("replication");
+                replication.writeTo(json);
+            }
+            json.name("cache");
+            cache.writeTo(json);
+            if (repositoryCache != null) {
+                json.name("repositoryCache");
+                repositoryCache.writeTo(json);
+            }
+            if (archive != null) {
+                json.name("archive");
+                archive.writeTo(json);
+            }
+            json.name("timestamp").value(timestamp);
+            json.name("version").value(version);
+            json.endObject();
+        }
     }
 
     /**
@@ -122,6 +327,15 @@ public class StatsServlet extends HttpServlet {
         public long getCompleted() { return completed; }
         public long getPending() { return pending; }
         public double getCompletionRate() { return Math.round(completionRate * 100.0) / 100.0; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("total").value(total);
+            json.name("completed").value(completed);
+            json.name("pending").value(pending);
+            json.name("completionRate").value(completionRate);
+            json.endObject();
+        }
     }
 
     /**
@@ -141,24 +355,162 @@ public class StatsServlet extends HttpServlet {
         public long getHigh() { return high; }
         public long getMedium() { return medium; }
         public long getLow() { return low; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("high").value(high);
+            json.name("medium").value(medium);
+            json.name("low").value(low);
+            json.endObject();
+        }
     }
 
     /**
-     * Error response class
+     * Replication role and lag; omitted from the response when replication is disabled
      */
-    private static class ErrorResponse {
-        private final String error;
-        private final int status;
-        private final long timestamp;
+    private static class ReplicationStats {
+        private final String role;
+        private final long leaderOffset;
+        private final Long appliedOffset;
+        private final long lag;
+        private final Integer followers;
+        private final Boolean connected;
+        private final Long millisSinceLastContact;
 
-        public ErrorResponse(String error, int status) {
-            this.error = error;
-            this.status = status;
-            this.timestamp = System.currentTimeMillis();
+        public ReplicationStats(ReplicationLeader leader) {
+            this.role = "leader";
+            this.leaderOffset = leader.getHeadOffset();
+            this.appliedOffset = null;
+            this.lag = leader.getMaxFollowerLag();
+            this.followers = leader.getFollowerCount();
+            this.connected = null;
+            this.millisSinceLastContact = null;
         }
 
-        public String getError() { return error; }
-        public int getStatus() { return status; }
-        public long getTimestamp() { return timestamp; }
+        public ReplicationStats(ReplicationFollower follower) {
+            this.role = "follower";
+            this.leaderOffset = follower.getLeaderOffset();
+            this.appliedOffset = follower.getAppliedOffset();
+            this.lag = follower.getLag();
+            this.followers = null;
+            this.connected = follower.isConnected();
+            this.millisSinceLastContact = follower.getMillisSinceLastContact();
+        }
+
+        public String getRole() { return role; }
+        public long getLeaderOffset() { return leaderOffset; }
+        public Long getAppliedOffset() { return appliedOffset; }
+        public long getLag() { return lag; }
+        public Integer getFollowers() { return followers; }
+        public Boolean getConnected() { return connected; }
+        public Long getMillisSinceLastContact() { return millisSinceLastContact; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("role").value(role);
+            json.name("leaderOffset").value(leaderOffset);
+            if (appliedOffset != null) {
+                json.name("appliedOffset").value(appliedOffset);
+            }
+            json.name("lag").value(lag);
+            if (followers != null) {
+                json.name("followers").value(followers);
+            }
+            if (connected != null) {
+                json.name("connected").value(connected);
+            }
+            if (millisSinceLastContact != null) {
+                json.name("millisSinceLastContact").value(millisSinceLastContact);
+            }
+            json.endObject();
+        }
+    }
+
+    /**
+     * Query result cache effectiveness
+     */
+    private static class CacheStats {
+        private final QueryResultCache.Stats stats;
+
+        public CacheStats(QueryResultCache.Stats stats) {
+            this.stats = stats;
+        }
+
+        public double getHitRate() { return Math.round(stats.getHitRate() * 100.0) / 100.0; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("hits").value(stats.getHits());
+            json.name("misses").value(stats.getMisses());
+            json.name("hitRate").value(getHitRate());
+            json.name("entries").value(stats.getEntries());
+            json.name("bytes").value(stats.getBytes());
+            json.name("evictions").value(stats.getEvictions());
+            json.name("invalidations").value(stats.getInvalidations());
+            json.name("rejections").value(stats.getRejections());
+            json.endObject();
+        }
+    }
+
+    /**
+     * Effectiveness of the by-ID task cache in front of the database; omitted from the
+     * response when the repository is not cached
+     */
+    private static class RepositoryCacheStats {
+        private final long hits;
+        private final long misses;
+        private final int entries;
+
+        public RepositoryCacheStats(CachingTaskRepository repository) {
+            this.hits = repository.getHits();
+            this.misses = repository.getMisses();
+            this.entries = repository.size();
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public int getEntries() { return entries; }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups > 0 ? Math.round(hits * 10000.0 / lookups) / 100.0 : 0;
+        }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("hits").value(hits);
+            json.name("misses").value(misses);
+            json.name("hitRate").value(getHitRate());
+            json.name("entries").value(entries);
+            json.endObject();
+        }
+    }
+
+    /**
+     * Size of the cold store; omitted from the response when archiving is disabled. Its
+     * tasks are already included in the task and priority counts.
+     */
+    private static class ArchiveStats {
+        private final long archived;
+        private final int blocks;
+        private final long bytes;
+
+        public ArchiveStats(TaskArchive archive) throws IOException {
+            this.archived = archive.getTaskCount();
+            this.blocks = archive.getBlockCount();
+            this.bytes = archive.getSizeBytes();
+        }
+
+        public long getArchived() { return archived; }
+        public int getBlocks() { return blocks; }
+        public long getBytes() { return bytes; }
+
+        public void writeTo(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("archived").value(archived);
+            json.name("blocks").value(blocks);
+            json.name("bytes").value(bytes);
+            json.endObject();
+        }
     }
 }
@@ -1,42 +1,81 @@
 package com.velocitytasks.servlet;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.velocitytasks.codec.BinaryTaskCodec;
+import com.velocitytasks.codec.JsonTaskCodec;
 import com.velocitytasks.model.Task;
 import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.replication.LeaderUnavailableException;
+import com.velocitytasks.replication.ReplicationContextListener;
+import com.velocitytasks.replication.ReplicationFollower;
+import com.velocitytasks.service.QueryResultCache;
+import com.velocitytasks.service.TaskQuery;
 import com.velocitytasks.service.TaskService;
 
+import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32C;
 
 /**
  * Main servlet for handling task operations in VelocityTasks application.
  * Provides RESTful API endpoints for task management.
+ * Requests and responses are JSON unless the client negotiates the compact binary format
+ * ({@link BinaryTaskCodec#MEDIA_TYPE}) through the {@code Content-Type} and {@code Accept} headers.
+ *
+ * <p>Listings carry an {@code ETag} and are answered with {@code 304 Not Modified} when the
+ * client's {@code If-None-Match} still matches. Writes may carry an {@code Idempotency-Key}
+ * header: a retry with the same key gets the original response instead of being applied again.
+ * On a follower, the key also goes with the write to the leader, so a retry sent to another
+ * follower is not applied twice either.
  */
 public class TaskServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(TaskServlet.class.getName());
     private static final String CONTENT_TYPE_JSON = "application/json";
     private static final String CHARACTER_ENCODING = "UTF-8";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int MAX_SYNC_OPERATIONS = 1000;
+    /** Largest body of a request with an idempotency key, which is buffered to fingerprint it */
+    private static final int MAX_BUFFERED_BODY_BYTES = 1 << 20;
+    private static final int MAX_SYNC_BODY_BYTES = 16 << 20;
+    /** Status for a key reused with a different request (422 Unprocessable Content) */
+    private static final int SC_UNPROCESSABLE_CONTENT = 422;
     
     private TaskService taskService;
-    private Gson gson;
+    private ReplicationFollower follower;
+    private final IdempotencyKeyStore idempotencyKeys = new IdempotencyKeyStore();
 
     @Override
     public void init() throws ServletException {
         super.init();
         this.taskService = TaskService.getInstance();
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .create();
+        // Followers serve reads locally and forward writes to the leader
+        this.follower = (ReplicationFollower) getServletContext()
+                .getAttribute(ReplicationContextListener.FOLLOWER_ATTRIBUTE);
         LOGGER.info("TaskServlet initialized successfully");
     }
 
@@ -51,6 +90,7 @@ public class TaskServlet extends HttpServlet {
         setupCORSHeaders(response);
         response.setContentType(CONTENT_TYPE_JSON);
         response.setCharacterEncoding(CHARACTER_ENCODING);
+        response.setHeader("Vary", "Accept");
 
         try {
             String pathInfo = request.getPathInfo();
@@ -61,7 +101,7 @@ public class TaskServlet extends HttpServlet {
             } else {
                 // Get specific task by ID
                 String taskId = pathInfo.substring(1); // Remove leading slash
-                handleGetTaskById(taskId, response);
+                handleGetTaskById(taskId, request, response);
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error handling GET request", e);
@@ -72,6 +112,8 @@ public class TaskServlet extends HttpServlet {
 
     /**
      * POST /api/tasks - Create new task
+     * POST /api/tasks/batch - Create several tasks at once
+     * POST /api/tasks/sync - Replay a list of queued writes, each with its own idempotency key
      */
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) 
@@ -81,8 +123,59 @@ public class TaskServlet extends HttpServlet {
         response.setContentType(CONTENT_TYPE_JSON);
         response.setCharacterEncoding(CHARACTER_ENCODING);
 
+        String pathInfo = request.getPathInfo();
+        if ("/sync".equals(pathInfo)) {
+            handleSync(request, response);
+        } else if ("/batch".equals(pathInfo)) {
+            handleIdempotently(request, response, this::handleBatchCreate);
+        } else {
+            handleIdempotently(request, response, this::handleCreate);
+        }
+    }
+
+    /**
+     * PUT /api/tasks/{id} - Update existing task
+     */
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        setupCORSHeaders(response);
+        response.setContentType(CONTENT_TYPE_JSON);
+        response.setCharacterEncoding(CHARACTER_ENCODING);
+
+        handleIdempotently(request, response, this::handleUpdate);
+    }
+
+    /**
+     * DELETE /api/tasks/{id} - Delete task
+     */
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        setupCORSHeaders(response);
+        response.setContentType(CONTENT_TYPE_JSON);
+        response.setCharacterEncoding(CHARACTER_ENCODING);
+
+        handleIdempotently(request, response, this::handleDelete);
+    }
+
+    /**
+     * Handle OPTIONS requests for CORS preflight
+     */
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        setupCORSHeaders(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private void handleCreate(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        
         try {
-            Task task = gson.fromJson(request.getReader(), Task.class);
+            Task task = readTask(request);
             
             if (task == null || task.getTitle() == null || task.getTitle().trim().isEmpty()) {
                 sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
@@ -95,15 +188,17 @@ public class TaskServlet extends HttpServlet {
                 task.setPriority(TaskPriority.MEDIUM);
             }
 
-            Task createdTask = taskService.addTask(task);
+            Task createdTask = follower != null 
+                    ? follower.forwardAdd(forwardedWriteId(request, 0), task) 
+                    : taskService.addTask(task);
             
             response.setStatus(HttpServletResponse.SC_CREATED);
-            try (PrintWriter writer = response.getWriter()) {
-                writer.write(gson.toJson(createdTask));
-            }
+            writeTask(request, response, createdTask);
             
             LOGGER.info("Created new task: " + createdTask.getId());
             
+        } catch (LeaderUnavailableException e) {
+            handleLeaderUnavailable(response, e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error creating task", e);
             sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
@@ -111,17 +206,9 @@ public class TaskServlet extends HttpServlet {
         }
     }
 
-    /**
-     * PUT /api/tasks/{id} - Update existing task
-     */
-    @Override
-    protected void doPut(HttpServletRequest request, HttpServletResponse response) 
-            throws ServletException, IOException {
+    private void handleUpdate(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
         
-        setupCORSHeaders(response);
-        response.setContentType(CONTENT_TYPE_JSON);
-        response.setCharacterEncoding(CHARACTER_ENCODING);
-
         try {
             String pathInfo = request.getPathInfo();
             if (pathInfo == null || pathInfo.equals("/")) {
@@ -131,7 +218,7 @@ public class TaskServlet extends HttpServlet {
             }
 
             String taskId = pathInfo.substring(1); // Remove leading slash
-            Task updatedTask = gson.fromJson(request.getReader(), Task.class);
+            Task updatedTask = readTask(request);
             
             if (updatedTask == null) {
                 sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
@@ -139,18 +226,20 @@ public class TaskServlet extends HttpServlet {
                 return;
             }
 
-            Optional<Task> result = taskService.updateTask(taskId, updatedTask);
+            Optional<Task> result = follower != null
+                    ? follower.forwardUpdate(forwardedWriteId(request, 0), taskId, updatedTask)
+                    : taskService.updateTask(taskId, updatedTask);
             
             if (result.isPresent()) {
-                try (PrintWriter writer = response.getWriter()) {
-                    writer.write(gson.toJson(result.get()));
-                }
+                writeTask(request, response, result.get());
                 LOGGER.info("Updated task: " + taskId);
             } else {
                 sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, 
                                 "Task not found");
             }
             
+        } catch (LeaderUnavailableException e) {
+            handleLeaderUnavailable(response, e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error updating task", e);
             sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
@@ -158,17 +247,9 @@ public class TaskServlet extends HttpServlet {
         }
     }
 
-    /**
-     * DELETE /api/tasks/{id} - Delete task
-     */
-    @Override
-    protected void doDelete(HttpServletRequest request, HttpServletResponse response) 
-            throws ServletException, IOException {
+    private void handleDelete(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
         
-        setupCORSHeaders(response);
-        response.setContentType(CONTENT_TYPE_JSON);
-        response.setCharacterEncoding(CHARACTER_ENCODING);
-
         try {
             String pathInfo = request.getPathInfo();
             if (pathInfo == null || pathInfo.equals("/")) {
@@ -178,7 +259,9 @@ public class TaskServlet extends HttpServlet {
             }
 
             String taskId = pathInfo.substring(1); // Remove leading slash
-            boolean deleted = taskService.deleteTask(taskId);
+            boolean deleted = follower != null 
+                    ? follower.forwardDelete(forwardedWriteId(request, 0), taskId) 
+                    : taskService.deleteTask(taskId);
             
             if (deleted) {
                 response.setStatus(HttpServletResponse.SC_NO_CONTENT);
@@ -188,6 +271,8 @@ public class TaskServlet extends HttpServlet {
                                 "Task not found");
             }
             
+        } catch (LeaderUnavailableException e) {
+            handleLeaderUnavailable(response, e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error deleting task", e);
             sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 
@@ -195,62 +280,416 @@ public class TaskServlet extends HttpServlet {
         }
     }
 
-    /**
-     * Handle OPTIONS requests for CORS preflight
-     */
-    @Override
-    protected void doOptions(HttpServletRequest request, HttpServletResponse response) 
-            throws ServletException, IOException {
-        setupCORSHeaders(response);
-        response.setStatus(HttpServletResponse.SC_OK);
-    }
-
     private void handleGetAllTasks(HttpServletRequest request, HttpServletResponse response) 
             throws IOException {
         
         String status = request.getParameter("status");
         String priority = request.getParameter("priority");
         String search = request.getParameter("search");
+        String sort = request.getParameter("sort");
+        String limit = request.getParameter("limit");
         
-        List<Task> tasks;
-        
-        if (search != null && !search.trim().isEmpty()) {
-            tasks = taskService.searchTasks(search);
-        } else if ("completed".equals(status)) {
-            tasks = taskService.getTasksByStatus(true);
+        // Filters combine: every one that is given must match
+        TaskQuery query = TaskQuery.all().search(search)
+                .includeArchived(Boolean.parseBoolean(request.getParameter("includeArchived")));
+        if ("completed".equals(status)) {
+            query.completed(true);
         } else if ("pending".equals(status)) {
-            tasks = taskService.getTasksByStatus(false);
-        } else if (priority != null) {
-            TaskPriority taskPriority = TaskPriority.fromString(priority);
-            tasks = taskService.getTasksByPriority(taskPriority);
-        } else {
-            tasks = taskService.getAllTasks();
+            query.completed(false);
+        }
+        if (priority != null) {
+            query.priority(TaskPriority.fromString(priority));
+        }
+        if (sort != null) {
+            TaskQuery.Sort order = TaskQuery.Sort.fromParameter(sort);
+            if (order == null) {
+                sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid sort: " + sort);
+                return;
+            }
+            query.sort(order);
+        }
+        if (limit != null) {
+            try {
+                query.limit(Integer.parseInt(limit.trim()));
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid limit: " + limit);
+                return;
+            }
         }
         
-        try (PrintWriter writer = response.getWriter()) {
-            writer.write(gson.toJson(tasks));
+        // Listings are served from responses cached until a task they could contain changes
+        boolean binary = BinaryTaskCodec.accepted(request.getHeader("Accept"));
+        QueryResultCache cache = taskService.getQueryCache();
+        QueryResultCache.Key key = QueryResultCache.key(query, binary ? BinaryTaskCodec.MEDIA_TYPE : CONTENT_TYPE_JSON);
+        QueryResultCache.CachedResponse listing = cache.get(key);
+        response.setHeader("X-Cache", listing != null ? "HIT" : "MISS");
+        if (listing == null) {
+            long version = cache.getVersion();
+            listing = new QueryResultCache.CachedResponse(encodeTasks(taskService.query(query), binary));
+            cache.put(key, listing, version);
         }
+        
+        if (binary) {
+            response.setContentType(BinaryTaskCodec.MEDIA_TYPE);
+        }
+        // Clients revalidate every time; unchanged listings cost a 304 instead of the body
+        response.setHeader("ETag", listing.getEntityTag());
+        response.setHeader("Cache-Control", "no-cache");
+        if (matchesEntityTag(request.getHeader("If-None-Match"), listing.getEntityTag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = listing.getBody();
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
     }
 
-    private void handleGetTaskById(String taskId, HttpServletResponse response) 
+    private void handleGetTaskById(String taskId, HttpServletRequest request, HttpServletResponse response) 
             throws IOException {
         
         Optional<Task> task = taskService.getTaskById(taskId);
         
         if (task.isPresent()) {
-            try (PrintWriter writer = response.getWriter()) {
-                writer.write(gson.toJson(task.get()));
-            }
+            writeTask(request, response, task.get());
         } else {
             sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, 
                             "Task not found");
         }
     }
 
+    private void handleBatchCreate(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        
+        try {
+            List<Task> tasks = readTasks(request);
+            if (tasks == null || tasks.isEmpty()) {
+                sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+                                "At least one task is required");
+                return;
+            }
+            // Validate the whole batch before creating anything
+            for (Task task : tasks) {
+                if (task == null || task.getTitle() == null || task.getTitle().trim().isEmpty()) {
+                    sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+                                    "Task title is required");
+                    return;
+                }
+                if (task.getPriority() == null) {
+                    task.setPriority(TaskPriority.MEDIUM);
+                }
+            }
+
+            List<Task> created = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                created.add(follower != null 
+                        ? follower.forwardAdd(forwardedWriteId(request, created.size()), task) 
+                        : taskService.addTask(task));
+            }
+            
+            response.setStatus(HttpServletResponse.SC_CREATED);
+            writeTasks(request, response, created);
+            
+            LOGGER.info("Created " + created.size() + " tasks in batch");
+            
+        } catch (LeaderUnavailableException e) {
+            handleLeaderUnavailable(response, e);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error creating task batch", e);
+            sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+                            "Invalid task data");
+        }
+    }
+
+    /**
+     * Run a write, or replay its response if a request with the same {@code Idempotency-Key}
+     * already ran. Responses are kept unless they are server errors, which are worth retrying.
+     */
+    private void handleIdempotently(HttpServletRequest request, HttpServletResponse response, 
+                                    WriteHandler handler) throws IOException {
+        
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key == null) {
+            handler.handle(request, response);
+            return;
+        }
+        if (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY_HEADER);
+            return;
+        }
+
+        byte[] body = readBody(request, MAX_BUFFERED_BODY_BYTES);
+        if (body == null) {
+            sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, 
+                            "Request body exceeds " + MAX_BUFFERED_BODY_BYTES + " bytes");
+            return;
+        }
+        BufferedRequest buffered = new BufferedRequest(request, body);
+        IdempotencyKeyStore.Claim claim = idempotencyKeys.claim(key, buffered.fingerprint());
+        switch (claim.getOutcome()) {
+            case COMPLETED:
+                response.setHeader("Idempotent-Replayed", "true");
+                writeStoredResponse(response, claim.getResponse());
+                return;
+            case IN_PROGRESS:
+                sendErrorResponse(response, HttpServletResponse.SC_CONFLICT, 
+                                "A request with this " + IDEMPOTENCY_KEY_HEADER + " is in progress");
+                return;
+            case MISMATCH:
+                sendErrorResponse(response, SC_UNPROCESSABLE_CONTENT, 
+                                IDEMPOTENCY_KEY_HEADER + " was used for a different request");
+                return;
+            default:
+                break;
+        }
+
+        BufferedResponse captured = new BufferedResponse(response);
+        IdempotencyKeyStore.StoredResponse stored;
+        try {
+            handler.handle(buffered, captured);
+            stored = captured.toStoredResponse();
+        } catch (IOException | RuntimeException e) {
+            idempotencyKeys.release(claim);
+            throw e;
+        }
+        if (stored.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+            idempotencyKeys.release(claim);
+        } else {
+            idempotencyKeys.complete(claim, stored);
+        }
+        writeStoredResponse(response, stored);
+    }
+
+    /**
+     * Apply a JSON array of writes queued by an offline client, in order. Each operation names
+     * its method, its path below {@code /api/tasks}, its idempotency key and its JSON body, and
+     * runs exactly as the same request sent on its own would, so replaying a batch that was
+     * already (partly) applied is safe. Every operation gets a result; one failing does not
+     * stop the rest.
+     */
+    private void handleSync(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException, ServletException {
+        
+        byte[] body = readBody(request, MAX_SYNC_BODY_BYTES);
+        if (body == null) {
+            sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, 
+                            "Sync request exceeds " + MAX_SYNC_BODY_BYTES + " bytes");
+            return;
+        }
+        List<SyncOperation> operations;
+        try {
+            operations = readSyncOperations(body);
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.log(Level.WARNING, "Error reading sync operations", e);
+            sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid sync operations");
+            return;
+        }
+        if (operations.size() > MAX_SYNC_OPERATIONS) {
+            sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+                            "At most " + MAX_SYNC_OPERATIONS + " operations can be synced at once");
+            return;
+        }
+        // Validate the whole list before applying anything
+        for (SyncOperation operation : operations) {
+            String error = operation.validate();
+            if (error != null) {
+                sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, error);
+                return;
+            }
+        }
+
+        List<IdempotencyKeyStore.StoredResponse> results = new ArrayList<>(operations.size());
+        for (SyncOperation operation : operations) {
+            BufferedRequest operationRequest = new BufferedRequest(request, operation);
+            BufferedResponse operationResponse = new BufferedResponse(response);
+            switch (operation.method) {
+                case "POST":
+                    doPost(operationRequest, operationResponse);
+                    break;
+                case "PUT":
+                    doPut(operationRequest, operationResponse);
+                    break;
+                default:
+                    doDelete(operationRequest, operationResponse);
+                    break;
+            }
+            results.add(operationResponse.toStoredResponse());
+        }
+
+        try (PrintWriter out = response.getWriter()) {
+            JsonWriter json = JsonTaskCodec.newWriter(out);
+            json.beginArray();
+            for (int i = 0; i < operations.size(); i++) {
+                IdempotencyKeyStore.StoredResponse result = results.get(i);
+                json.beginObject();
+                json.name("idempotencyKey").value(operations.get(i).idempotencyKey);
+                json.name("status").value(result.getStatus());
+                if (result.getBody().length > 0 && result.getContentType() != null 
+                        && result.getContentType().startsWith(CONTENT_TYPE_JSON)) {
+                    json.name("body").jsonValue(new String(result.getBody(), StandardCharsets.UTF_8));
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.flush();
+        }
+        LOGGER.info("Synced " + operations.size() + " queued writes");
+    }
+
+    private static List<SyncOperation> readSyncOperations(byte[] body) throws IOException {
+        JsonReader json = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        List<SyncOperation> operations = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            SyncOperation operation = new SyncOperation();
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "idempotencyKey":
+                        operation.idempotencyKey = json.nextString();
+                        break;
+                    case "method":
+                        operation.method = json.nextString();
+                        break;
+                    case "path":
+                        operation.path = json.nextString();
+                        break;
+                    case "body":
+                        operation.body = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+            operations.add(operation);
+        }
+        json.endArray();
+        return operations;
+    }
+
+    /**
+     * Read a request body into memory, or return {@code null} if it is longer than {@code maxBytes}
+     */
+    private static byte[] readBody(HttpServletRequest request, int maxBytes) throws IOException {
+        if (request.getContentLengthLong() > maxBytes) {
+            return null;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+        return body.length <= maxBytes ? body : null;
+    }
+
+    /**
+     * ID by which the leader recognises a write forwarded again, or {@code null} for a request
+     * without an idempotency key. It names the key and the request's fingerprint, so a key
+     * reused for a different request is not mistaken for a retry.
+     *
+     * @param index position of the task among those the request writes
+     */
+    private static String forwardedWriteId(HttpServletRequest request, int index) {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key == null || !(request instanceof BufferedRequest)) {
+            return null;
+        }
+        return key + " " + ((BufferedRequest) request).fingerprint() + " " + index;
+    }
+
+    private static void writeStoredResponse(HttpServletResponse response, IdempotencyKeyStore.StoredResponse stored) 
+            throws IOException {
+        
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setContentLength(stored.getBody().length);
+        if (stored.getBody().length > 0) {
+            response.getOutputStream().write(stored.getBody());
+        }
+    }
+
+    private static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses the weak comparison, so W/ prefixes are ignored
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Task readTask(HttpServletRequest request) throws IOException {
+        if (BinaryTaskCodec.isContentType(request.getContentType())) {
+            return BinaryTaskCodec.readTask(request.getInputStream());
+        }
+        return JsonTaskCodec.readTask(request.getReader());
+    }
+
+    private List<Task> readTasks(HttpServletRequest request) throws IOException {
+        if (BinaryTaskCodec.isContentType(request.getContentType())) {
+            return BinaryTaskCodec.readTasks(request.getInputStream());
+        }
+        return JsonTaskCodec.readTasks(request.getReader());
+    }
+
+    private void writeTask(HttpServletRequest request, HttpServletResponse response, Task task) 
+            throws IOException {
+        
+        if (BinaryTaskCodec.accepted(request.getHeader("Accept"))) {
+            response.setContentType(BinaryTaskCodec.MEDIA_TYPE);
+            BinaryTaskCodec.writeTask(response.getOutputStream(), task);
+            return;
+        }
+        try (PrintWriter writer = response.getWriter()) {
+            JsonTaskCodec.writeTask(writer, task);
+        }
+    }
+
+    private void writeTasks(HttpServletRequest request, HttpServletResponse response, List<Task> tasks) 
+            throws IOException {
+        
+        if (BinaryTaskCodec.accepted(request.getHeader("Accept"))) {
+            response.setContentType(BinaryTaskCodec.MEDIA_TYPE);
+            BinaryTaskCodec.writeTasks(response.getOutputStream(), tasks);
+            return;
+        }
+        try (PrintWriter writer = response.getWriter()) {
+            JsonTaskCodec.writeTasks(writer, tasks);
+        }
+    }
+
+    private static byte[] encodeTasks(List<Task> tasks, boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + tasks.size() * 192);
+        if (binary) {
+            BinaryTaskCodec.writeTasks(out, tasks);
+        } else {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JsonTaskCodec.writeTasks(writer, tasks);
+            writer.flush();
+        }
+        return out.toByteArray();
+    }
+
+    private void handleLeaderUnavailable(HttpServletResponse response, LeaderUnavailableException e) 
+            throws IOException {
+        
+        LOGGER.log(Level.WARNING, "Error forwarding write to replication leader", e);
+        sendErrorResponse(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+                        "Leader unavailable");
+    }
+
     private void setupCORSHeaders(HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", 
+                "Content-Type, Authorization, " + IDEMPOTENCY_KEY_HEADER + ", If-None-Match");
+        response.setHeader("Access-Control-Expose-Headers", "ETag, X-Cache, Idempotent-Replayed");
         response.setHeader("Access-Control-Max-Age", "3600");
     }
 
@@ -258,27 +697,274 @@ public class TaskServlet extends HttpServlet {
             throws IOException {
         
         response.setStatus(statusCode);
+        response.setContentType(CONTENT_TYPE_JSON);
         try (PrintWriter writer = response.getWriter()) {
-            writer.write(gson.toJson(new ErrorResponse(message, statusCode)));
+            JsonTaskCodec.writeError(writer, message, statusCode);
+        }
+    }
+
+    @FunctionalInterface
+    private interface WriteHandler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+    }
+
+    /**
+     * One queued write of a {@code /api/tasks/sync} request
+     */
+    private static final class SyncOperation {
+        String idempotencyKey;
+        String method;
+        String path;
+        String body;
+
+        /**
+         * @return why the operation cannot be applied, or {@code null}
+         */
+        String validate() {
+            if (idempotencyKey == null || idempotencyKey.isEmpty() 
+                    || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return "Every operation needs a valid idempotencyKey";
+            }
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            if ("POST".equals(method)) {
+                return "/".equals(path) || "/batch".equals(path) ? null : "Invalid path for POST: " + path;
+            }
+            if ("PUT".equals(method) || "DELETE".equals(method)) {
+                return path.length() > 1 && path.indexOf('/', 1) < 0 ? null : "Invalid path for " + method + ": " + path;
+            }
+            return "Unsupported method: " + method;
         }
     }
 
     /**
-     * Simple error response class
+     * A request whose body has been read into memory, so it can be fingerprinted and then read
+     * again by a handler. Also stands in for each operation of a sync request.
      */
-    private static class ErrorResponse {
-        private final String error;
-        private final int status;
-        private final long timestamp;
+    private static final class BufferedRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+        private final SyncOperation operation;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+            this.operation = null;
+        }
 
-        public ErrorResponse(String error, int status) {
-            this.error = error;
+        BufferedRequest(HttpServletRequest request, SyncOperation operation) {
+            super(request);
+            this.body = operation.body != null ? operation.body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            this.operation = operation;
+        }
+
+        String fingerprint() {
+            CRC32C crc = new CRC32C();
+            crc.update(body, 0, body.length);
+            String path = getPathInfo() != null ? getPathInfo() : "/";
+            return getMethod() + " " + path + " " + body.length + "-" + Long.toHexString(crc.getValue());
+        }
+
+        @Override
+        public String getMethod() {
+            return operation != null ? operation.method : super.getMethod();
+        }
+
+        @Override
+        public String getPathInfo() {
+            return operation != null ? operation.path : super.getPathInfo();
+        }
+
+        @Override
+        public String getContentType() {
+            // Sync operations are always JSON, whatever the sync request itself negotiated
+            return operation != null ? CONTENT_TYPE_JSON : super.getContentType();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (operation == null) {
+                return super.getHeader(name);
+            }
+            if (IDEMPOTENCY_KEY_HEADER.equalsIgnoreCase(name)) {
+                return operation.idempotencyKey;
+            }
+            return "Accept".equalsIgnoreCase(name) ? CONTENT_TYPE_JSON : super.getHeader(name);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Buffered requests are read synchronously");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Collects the status, content type and body a handler writes, instead of sending them.
+     * Those are all a stored response keeps, so other headers are dropped.
+     */
+    private static final class BufferedResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int status = HttpServletResponse.SC_OK;
+        private String contentType;
+        private PrintWriter writer;
+
+        BufferedResponse(HttpServletResponse response) {
+            super(response);
+            this.contentType = response.getContentType();
+        }
+
+        IdempotencyKeyStore.StoredResponse toStoredResponse() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return new IdempotencyKeyStore.StoredResponse(status, contentType, body.toByteArray());
+        }
+
+        @Override
+        public void setStatus(int status) {
             this.status = status;
-            this.timestamp = System.currentTimeMillis();
         }
 
-        public String getError() { return error; }
-        public int getStatus() { return status; }
-        public long getTimestamp() { return timestamp; }
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void sendError(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void sendError(int status, String message) {
+            this.status = status;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+        }
+
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) {
+                    body.write(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                    throw new UnsupportedOperationException("Buffered responses are written synchronously");
+                }
+            };
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.reset();
+        }
     }
 }
@@ -0,0 +1,153 @@
+package com.velocitytasks.servlet;
+
+import com.google.gson.stream.JsonWriter;
+import com.velocitytasks.codec.JsonTaskCodec;
+import com.velocitytasks.replication.ReplicationContextListener;
+import com.velocitytasks.replication.ReplicationFollower;
+import com.velocitytasks.service.TaskService;
+import com.velocitytasks.transfer.TaskExporter;
+import com.velocitytasks.transfer.TaskImporter;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servlet for bulk transfer of tasks as newline-delimited JSON, one compact task object per
+ * line. Both directions stream, so moving millions of tasks needs no more memory than a few.
+ */
+public class TaskTransferServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(TaskTransferServlet.class.getName());
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String CHARACTER_ENCODING = "UTF-8";
+    private static final String EXPORT_PATH = "/api/tasks/export";
+    private static final String IMPORT_PATH = "/api/tasks/import";
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    private TaskService taskService;
+    private ReplicationFollower follower;
+    private TaskImporter importer;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.taskService = TaskService.getInstance();
+        // Followers export their local copy but forward imported tasks to the leader
+        this.follower = (ReplicationFollower) getServletContext()
+                .getAttribute(ReplicationContextListener.FOLLOWER_ATTRIBUTE);
+        this.importer = new TaskImporter();
+        LOGGER.info("TaskTransferServlet initialized successfully");
+    }
+
+    @Override
+    public void destroy() {
+        importer.close();
+        super.destroy();
+    }
+
+    /**
+     * GET /api/tasks/export - Stream a point-in-time copy of every task
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        setupCORSHeaders(response);
+        if (!EXPORT_PATH.equals(request.getServletPath())) {
+            sendErrorResponse(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+            return;
+        }
+
+        response.setContentType(JsonTaskCodec.NDJSON_MEDIA_TYPE);
+        response.setCharacterEncoding(CHARACTER_ENCODING);
+        response.setHeader("Content-Disposition", "attachment; filename=\"tasks.ndjson\"");
+        try (Writer writer = new BufferedWriter(response.getWriter(), WRITE_BUFFER_CHARS)) {
+            long count = TaskExporter.exportTasks(taskService, writer);
+            LOGGER.info("Exported " + count + " tasks");
+        } catch (IOException e) {
+            // Usually the client went away; the response is already committed
+            LOGGER.log(Level.WARNING, "Error streaming task export", e);
+        }
+    }
+
+    /**
+     * POST /api/tasks/import - Add every task of a newline-delimited JSON body
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        setupCORSHeaders(response);
+        response.setContentType(CONTENT_TYPE_JSON);
+        response.setCharacterEncoding(CHARACTER_ENCODING);
+        if (!IMPORT_PATH.equals(request.getServletPath())) {
+            sendErrorResponse(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+            return;
+        }
+
+        try {
+            if (request.getCharacterEncoding() == null) {
+                request.setCharacterEncoding(CHARACTER_ENCODING);
+            }
+            TaskImporter.Result result = follower != null
+                    ? importer.importTasks(request.getReader(), follower::forwardAdd)
+                    : importer.importTasks(request.getReader(), taskService);
+            LOGGER.info("Imported " + result.getImported() + " tasks, " + result.getFailed() + " failed");
+
+            try (PrintWriter writer = response.getWriter()) {
+                JsonWriter json = JsonTaskCodec.newWriter(writer);
+                json.beginObject();
+                json.name("imported").value(result.getImported());
+                json.name("failed").value(result.getFailed());
+                json.name("errors").beginArray();
+                for (String error : result.getErrors()) {
+                    json.value(error);
+                }
+                json.endArray();
+                json.endObject();
+                json.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendErrorResponse(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Import interrupted");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error reading task import", e);
+            sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Error reading import body");
+        }
+    }
+
+    /**
+     * Handle OPTIONS requests for CORS preflight
+     */
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        setupCORSHeaders(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private void setupCORSHeaders(HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Max-Age", "3600");
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int statusCode, String message) 
+            throws IOException {
+        
+        response.setStatus(statusCode);
+        response.setContentType(CONTENT_TYPE_JSON);
+        try (PrintWriter writer = response.getWriter()) {
+            JsonTaskCodec.writeError(writer, message, statusCode);
+        }
+    }
+}
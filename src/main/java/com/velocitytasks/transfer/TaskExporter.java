@@ -0,0 +1,48 @@
+package com.velocitytasks.transfer;
+
+import com.velocitytasks.codec.JsonTaskCodec;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.service.TaskService;
+import com.velocitytasks.service.TaskSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Bulk export of tasks as a newline-delimited JSON stream ({@link JsonTaskCodec#NDJSON_MEDIA_TYPE}).
+ *
+ * <p>Tasks are read from a {@link TaskSnapshot} one batch at a time, so the output is a
+ * consistent point-in-time copy while memory use stays independent of the number of tasks.
+ * The snapshot covers archived tasks too, read block by block ahead of the in-memory ones.
+ * The stream can be fed back to {@link TaskImporter}.
+ */
+public final class TaskExporter {
+    public static final int BATCH_SIZE = 1000;
+
+    private TaskExporter() {
+    }
+
+    /**
+     * Write every task as of now to the writer, one per line
+     *
+     * @return the number of tasks written
+     */
+    public static long exportTasks(TaskService taskService, Writer out) throws IOException {
+        long count = 0;
+        try (TaskSnapshot snapshot = taskService.openSnapshot()) {
+            for (List<Task> batch = snapshot.nextBatch(BATCH_SIZE); !batch.isEmpty(); batch = snapshot.nextBatch(BATCH_SIZE)) {
+                for (Task task : batch) {
+                    JsonTaskCodec.writeTaskLine(out, task);
+                }
+                count += batch.size();
+            }
+        } catch (UncheckedIOException e) {
+            // Reading the archive failed
+            throw e.getCause();
+        }
+        out.flush();
+        return count;
+    }
+}
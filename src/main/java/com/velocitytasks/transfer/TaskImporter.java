@@ -0,0 +1,273 @@
+package com.velocitytasks.transfer;
+
+import com.velocitytasks.codec.JsonTaskCodec;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk import of tasks from a newline-delimited JSON stream ({@link JsonTaskCodec#NDJSON_MEDIA_TYPE}).
+ *
+ * <p>The calling thread only splits the stream into lines and groups them into batches;
+ * worker threads parse each batch and add its tasks. Batches queued or in progress hold at
+ * most a fixed number of characters between them, and the reader waits for room before
+ * reading on, so memory stays bounded however long the stream is and however long its lines
+ * are. A batch ends at its line limit or at its share of that budget, whichever comes
+ * first. Tasks keep their IDs and timestamps (an existing task with the same ID is
+ * overwritten), so an export can be restored as-is. A malformed or invalid line is counted
+ * and reported without stopping the import.
+ */
+public class TaskImporter implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT_CHARS = 32 << 20;
+    /** Longest accepted line; longer ones are skipped and reported */
+    public static final int MAX_LINE_CHARS = 1 << 20;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /**
+     * Where imported tasks go
+     */
+    @FunctionalInterface
+    public interface Sink {
+        Task add(Task task) throws IOException;
+    }
+
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final int maxInFlightChars;
+    /** Characters after which a batch is submitted: two batches per worker fit in flight */
+    private final int batchChars;
+
+    public TaskImporter() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public TaskImporter(int threads, int batchSize) {
+        this(threads, batchSize, DEFAULT_MAX_IN_FLIGHT_CHARS);
+    }
+
+    public TaskImporter(int threads, int batchSize, int maxInFlightChars) {
+        if (threads <= 0 || batchSize <= 0 || maxInFlightChars <= 0) {
+            throw new IllegalArgumentException("Threads, batch size and in-flight characters must be positive");
+        }
+        this.batchSize = batchSize;
+        this.maxInFlightChars = maxInFlightChars;
+        this.batchChars = Math.max(1, maxInFlightChars / (threads * 2));
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "task-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Import every line of the stream into the service
+     */
+    public Result importTasks(Reader in, TaskService taskService) throws IOException, InterruptedException {
+        return importTasks(in, taskService::addTask);
+    }
+
+    /**
+     * Import every line of the stream into the sink, returning once all of them are processed
+     */
+    public Result importTasks(Reader in, Sink sink) throws IOException, InterruptedException {
+        // One permit per character of the batches handed to workers
+        Semaphore inFlight = new Semaphore(maxInFlightChars);
+        Result result = new Result();
+        LineReader lines = new LineReader(in);
+        try {
+            List<String> batch = new ArrayList<>();
+            long chars = 0;
+            long firstLine = 1;
+            String line;
+            while ((line = lines.next()) != null) {
+                if (lines.wasTruncated()) {
+                    result.fail(lines.getLineNumber(), "Line exceeds " + MAX_LINE_CHARS + " characters");
+                    line = "";
+                }
+                batch.add(line);
+                chars += line.length() + 1;
+                if (batch.size() == batchSize || chars >= batchChars) {
+                    submit(batch, chars, firstLine, sink, result, inFlight);
+                    firstLine += batch.size();
+                    batch = new ArrayList<>();
+                    chars = 0;
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch, chars, firstLine, sink, result, inFlight);
+            }
+        } finally {
+            // Wait for the batches already handed to workers, even if reading failed
+            inFlight.acquireUninterruptibly(maxInFlightChars);
+        }
+        return result;
+    }
+
+    private void submit(List<String> batch, long chars, long firstLine, Sink sink, Result result,
+            Semaphore inFlight) throws InterruptedException {
+        // A single line longer than the whole budget still goes, on its own
+        int permits = (int) Math.min(chars, maxInFlightChars);
+        inFlight.acquire(permits);
+        try {
+            workers.execute(() -> {
+                try {
+                    importBatch(batch, firstLine, sink, result);
+                } finally {
+                    inFlight.release(permits);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release(permits);
+            throw e;
+        }
+    }
+
+    private static void importBatch(List<String> batch, long firstLine, Sink sink, Result result) {
+        for (int i = 0; i < batch.size(); i++) {
+            String line = batch.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            long lineNumber = firstLine + i;
+            try {
+                Task task = JsonTaskCodec.readTaskLine(line);
+                if (task == null || task.getTitle() == null || task.getTitle().trim().isEmpty()) {
+                    result.fail(lineNumber, "Task title is required");
+                    continue;
+                }
+                if (task.getPriority() == null) {
+                    // Not through the setter, which would touch updatedAt
+                    task = new Task(task.getId(), task.getTitle(), TaskPriority.MEDIUM, task.isCompleted(),
+                            task.getCreatedAt(), task.getUpdatedAt());
+                }
+                sink.add(task);
+                result.imported.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                result.fail(lineNumber, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Outcome of an import: counts and the first few errors
+     */
+    public static class Result {
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+
+        void fail(long lineNumber, String message) {
+            failed.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add("Line " + lineNumber + ": " + message);
+                }
+            }
+        }
+
+        public long getImported() { return imported.get(); }
+        public long getFailed() { return failed.get(); }
+
+        /**
+         * Up to 20 error messages, each naming its line
+         */
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+    }
+
+    /**
+     * Splits a stream into lines (ending in {@code \n}, {@code \r\n} or {@code \r}) without
+     * ever buffering more than {@link #MAX_LINE_CHARS} characters
+     */
+    private static final class LineReader {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private long lineNumber;
+        private boolean skipLineFeed;
+        private boolean truncated;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Whether the last line returned was cut short at {@link #MAX_LINE_CHARS}
+         */
+        boolean wasTruncated() {
+            return truncated;
+        }
+
+        /**
+         * The next line, or {@code null} at the end of the stream
+         */
+        String next() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (line.length() == 0 && !truncated) {
+                            return null;
+                        }
+                        break;
+                    }
+                }
+                char c = buffer[position++];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (c == '\n') {
+                        continue;
+                    }
+                }
+                if (c == '\n' || c == '\r') {
+                    skipLineFeed = c == '\r';
+                    break;
+                }
+                if (line.length() < MAX_LINE_CHARS) {
+                    line.append(c);
+                } else {
+                    truncated = true;
+                }
+            }
+            lineNumber++;
+            return line.toString();
+        }
+    }
+}
@@ -39,11 +39,39 @@ class VelocityTasks {
                 document.getElementById('task-title').focus();
             }
         });
+
+        // The service worker serves cached tasks first and tells us when they were stale,
+        // and replays writes made offline once the connection is back
+        if ('serviceWorker' in navigator) {
+            navigator.serviceWorker.addEventListener('message', (e) => {
+                this.handleWorkerMessage(e.data);
+            });
+            window.addEventListener('online', () => {
+                if (navigator.serviceWorker.controller) {
+                    navigator.serviceWorker.controller.postMessage({ type: 'replay-outbox' });
+                }
+            });
+        }
     }
 
-    async loadTasks() {
+    handleWorkerMessage(message) {
+        if (!message) return;
+
+        if (message.type === 'tasks-updated') {
+            this.loadTasks(true);
+        } else if (message.type === 'outbox-replayed') {
+            this.loadTasks(true);
+            if (message.rejected > 0) {
+                this.showToast(`${message.rejected} offline change(s) could not be applied`, 'error');
+            } else {
+                this.showToast('Offline changes synced', 'success');
+            }
+        }
+    }
+
+    async loadTasks(quiet = false) {
         try {
-            this.showLoading(true);
+            if (!quiet) this.showLoading(true);
             const response = await fetch('/api/tasks');
             if (response.ok) {
                 this.tasks = await response.json();
@@ -56,10 +84,26 @@ class VelocityTasks {
             console.error('Error loading tasks:', error);
             this.showToast('Error loading tasks', 'error');
         } finally {
-            this.showLoading(false);
+            if (!quiet) this.showLoading(false);
         }
     }
 
+    /**
+     * Send a write with a fresh Idempotency-Key, so the server applies it at most once however
+     * often it is retried. A 202 response means the service worker queued it while offline.
+     */
+    sendWrite(url, options) {
+        const headers = { ...(options.headers || {}), 'Idempotency-Key': this.newIdempotencyKey() };
+        return fetch(url, { ...options, headers });
+    }
+
+    newIdempotencyKey() {
+        if (window.crypto && crypto.randomUUID) {
+            return crypto.randomUUID();
+        }
+        return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+    }
+
     async addTask() {
         const titleInput = document.getElementById('task-title');
         const prioritySelect = document.getElementById('task-priority');
@@ -81,7 +125,7 @@ class VelocityTasks {
 
         try {
             this.showLoading(true);
-            const response = await fetch('/api/tasks', {
+            const response = await this.sendWrite('/api/tasks', {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
@@ -89,7 +133,19 @@ class VelocityTasks {
                 body: JSON.stringify(task)
             });
 
-            if (response.ok) {
+            if (response.status === 202) {
+                // Queued offline: show it now, it gets its real ID once synced
+                const queued = await response.json();
+                this.tasks.unshift({ ...task, id: `pending-${queued.idempotencyKey}`, pending: true });
+                this.renderTasks();
+                this.updateStats();
+
+                titleInput.value = '';
+                prioritySelect.value = 'MEDIUM';
+                titleInput.focus();
+
+                this.showToast('Offline: task will be added when you reconnect', 'info');
+            } else if (response.ok) {
                 const newTask = await response.json();
                 this.tasks.unshift(newTask);
                 this.renderTasks();
@@ -114,10 +170,10 @@ class VelocityTasks {
 
     async toggleTask(taskId) {
         const task = this.tasks.find(t => t.id === taskId);
-        if (!task) return;
+        if (!task || task.pending) return;
 
         try {
-            const response = await fetch(`/api/tasks/${taskId}`, {
+            const response = await this.sendWrite(`/api/tasks/${taskId}`, {
                 method: 'PUT',
                 headers: {
                     'Content-Type': 'application/json',
@@ -133,8 +189,9 @@ class VelocityTasks {
                 this.renderTasks();
                 this.updateStats();
                 this.showToast(
-                    task.completed ? 'Task completed!' : 'Task reopened!', 
-                    'success'
+                    response.status === 202 ? 'Offline: change will sync when you reconnect'
+                        : task.completed ? 'Task completed!' : 'Task reopened!', 
+                    response.status === 202 ? 'info' : 'success'
                 );
             } else {
                 this.showToast('Failed to update task', 'error');
@@ -151,7 +208,7 @@ class VelocityTasks {
         }
 
         try {
-            const response = await fetch(`/api/tasks/${taskId}`, {
+            const response = await this.sendWrite(`/api/tasks/${taskId}`, {
                 method: 'DELETE'
             });
 
@@ -159,7 +216,11 @@ class VelocityTasks {
                 this.tasks = this.tasks.filter(t => t.id !== taskId);
                 this.renderTasks();
                 this.updateStats();
-                this.showToast('Task deleted successfully!', 'success');
+                if (response.status === 202) {
+                    this.showToast('Offline: task will be deleted when you reconnect', 'info');
+                } else {
+                    this.showToast('Task deleted successfully!', 'success');
+                }
             } else {
                 this.showToast('Failed to delete task', 'error');
             }
@@ -221,11 +282,12 @@ class VelocityTasks {
         emptyState.style.display = 'none';
         
         container.innerHTML = filteredTasks.map(task => `
-            <div class="task-item ${task.completed ? 'completed' : ''} priority-${task.priority.toLowerCase()}">
+            <div class="task-item ${task.completed ? 'completed' : ''} ${task.pending ? 'pending' : ''} priority-${task.priority.toLowerCase()}">
                 <input 
                     type="checkbox" 
                     class="task-checkbox" 
                     ${task.completed ? 'checked' : ''} 
+                    ${task.pending ? 'disabled' : ''} 
                     onchange="app.toggleTask('${task.id}')"
                 >
                 <div class="task-content">
@@ -240,6 +302,7 @@ class VelocityTasks {
                 <div class="task-actions">
                     <button 
                         class="action-btn delete-btn" 
+                        ${task.pending ? 'disabled' : ''} 
                         onclick="app.deleteTask('${task.id}')"
                         title="Delete task"
                     >
@@ -312,7 +375,7 @@ document.addEventListener('DOMContentLoaded', () => {
     window.app = new VelocityTasks();
 });
 
-// Service Worker registration for future PWA capabilities
+// Service Worker registration: offline task listings and queued offline changes
 if ('serviceWorker' in navigator) {
     window.addEventListener('load', () => {
         navigator.serviceWorker.register('/sw.js')
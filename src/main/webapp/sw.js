@@ -1,5 +1,6 @@
 // VelocityTasks Service Worker
-const CACHE_NAME = 'velocity-tasks-v1';
+const CACHE_NAME = 'velocity-tasks-v2';
+const API_CACHE_NAME = 'velocity-tasks-api-v1';
 const urlsToCache = [
     '/',
     '/css/style.css',
@@ -7,6 +8,14 @@ const urlsToCache = [
     '/images/favicon.svg'
 ];
 
+const TASKS_PATH = '/api/tasks';
+const SYNC_PATH = TASKS_PATH + '/sync';
+const SYNC_TAG = 'velocity-tasks-outbox';
+// The server accepts at most this many operations per sync request
+const SYNC_BATCH_SIZE = 1000;
+const OUTBOX_DB = 'velocity-tasks';
+const OUTBOX_STORE = 'outbox';
+
 // Install event - cache resources
 self.addEventListener('install', (event) => {
     event.waitUntil(
@@ -18,13 +27,29 @@ self.addEventListener('install', (event) => {
     );
 });
 
-// Fetch event - serve from cache when offline
+// Fetch event - task listings are stale-while-revalidate, writes are queued while offline,
+// everything else is served from cache when offline
 self.addEventListener('fetch', (event) => {
+    const request = event.request;
+    const url = new URL(request.url);
+
+    if (url.origin === self.location.origin && isTasksApi(url.pathname)) {
+        if (request.method === 'GET' && url.pathname === TASKS_PATH) {
+            event.respondWith(staleWhileRevalidate(event));
+        } else if (isQueueableWrite(request.method, url.pathname)) {
+            event.respondWith(sendOrQueue(request));
+        }
+        return;
+    }
+    if (request.method !== 'GET') {
+        return;
+    }
+
     event.respondWith(
-        caches.match(event.request)
+        caches.match(request)
             .then((response) => {
                 // Return cached version or fetch from network
-                return response || fetch(event.request);
+                return response || fetch(request);
             }
         )
     );
@@ -36,7 +61,7 @@ self.addEventListener('activate', (event) => {
         caches.keys().then((cacheNames) => {
             return Promise.all(
                 cacheNames.map((cacheName) => {
-                    if (cacheName !== CACHE_NAME) {
+                    if (cacheName !== CACHE_NAME && cacheName !== API_CACHE_NAME) {
                         console.log('Deleting old cache:', cacheName);
                         return caches.delete(cacheName);
                     }
@@ -45,3 +70,216 @@ self.addEventListener('activate', (event) => {
         })
     );
 });
+
+// Background sync - replay queued writes once the browser is back online
+self.addEventListener('sync', (event) => {
+    if (event.tag === SYNC_TAG) {
+        event.waitUntil(replayOutbox());
+    }
+});
+
+// Pages ask for a replay when they see the connection come back (for browsers without background sync)
+self.addEventListener('message', (event) => {
+    if (event.data && event.data.type === 'replay-outbox') {
+        event.waitUntil(replayOutbox().catch(() => {}));
+    }
+});
+
+function isTasksApi(pathname) {
+    return pathname === TASKS_PATH || pathname.startsWith(TASKS_PATH + '/');
+}
+
+function isQueueableWrite(method, pathname) {
+    const path = pathname.substring(TASKS_PATH.length);
+    if (method === 'POST') {
+        return path === '' || path === '/' || path === '/batch';
+    }
+    if (method === 'PUT' || method === 'DELETE') {
+        return /^\/[^/]+$/.test(path);
+    }
+    return false;
+}
+
+/**
+ * Answer from the cached listing straight away and revalidate it in the background with its
+ * ETag; pages are told when the listing actually changed. Without a cached copy the request
+ * waits for the network.
+ */
+async function staleWhileRevalidate(event) {
+    const cache = await caches.open(API_CACHE_NAME);
+    const cached = await cache.match(event.request);
+    const revalidation = revalidate(cache, event.request, cached);
+    if (!cached) {
+        return revalidation;
+    }
+    event.waitUntil(revalidation.catch(() => {}));
+    return cached;
+}
+
+async function revalidate(cache, request, cached) {
+    const headers = new Headers(request.headers);
+    const etag = cached && cached.headers.get('ETag');
+    if (etag) {
+        headers.set('If-None-Match', etag);
+    }
+    // Bypass the HTTP cache so a 304 reaches us and the cached copy is the only validator
+    const response = await fetch(request.url, { headers, cache: 'no-store', credentials: request.credentials });
+    replayOutbox().catch(() => {});
+
+    if (response.status === 304 && cached) {
+        return cached;
+    }
+    if (response.ok) {
+        await cache.put(request, response.clone());
+        if (cached && response.headers.get('ETag') !== etag) {
+            notifyClients({ type: 'tasks-updated' });
+        }
+    }
+    return response;
+}
+
+/**
+ * Send a write, or queue it while offline (or while earlier writes are still queued, so they
+ * are applied in order) and answer 202 Accepted. Queued writes keep their Idempotency-Key, so
+ * replaying one the server already applied is harmless.
+ */
+async function sendOrQueue(request) {
+    const copy = request.clone();
+    if (!replaying && await countOutbox() === 0) {
+        try {
+            return await fetch(request);
+        } catch (error) {
+            // Offline; fall through and queue it
+        }
+    }
+
+    const operation = {
+        idempotencyKey: copy.headers.get('Idempotency-Key') || crypto.randomUUID(),
+        method: copy.method,
+        path: new URL(copy.url).pathname.substring(TASKS_PATH.length),
+        body: await copy.text()
+    };
+    await addToOutbox(operation);
+    if (self.registration.sync) {
+        self.registration.sync.register(SYNC_TAG).catch(() => {});
+    }
+    replayOutbox().catch(() => {});
+    return new Response(JSON.stringify({ queued: true, idempotencyKey: operation.idempotencyKey }), {
+        status: 202,
+        headers: { 'Content-Type': 'application/json' }
+    });
+}
+
+let replaying = null;
+
+/**
+ * Send every queued write to the server as one batched sync request. Writes the server
+ * applied or rejected are removed; writes still in progress elsewhere or that hit a server
+ * error stay queued for the next replay. Rejects if the server cannot be reached.
+ */
+function replayOutbox() {
+    if (!replaying) {
+        replaying = replayBatches().finally(() => {
+            replaying = null;
+        });
+    }
+    return replaying;
+}
+
+async function replayBatches() {
+    let applied = 0;
+    let rejected = 0;
+    for (;;) {
+        const entries = await readOutbox(SYNC_BATCH_SIZE);
+        if (entries.length === 0) {
+            break;
+        }
+        const response = await fetch(SYNC_PATH, {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/json' },
+            body: JSON.stringify(entries.map(({ idempotencyKey, method, path, body }) =>
+                ({ idempotencyKey, method, path, body })))
+        });
+        if (!response.ok) {
+            throw new Error(`Sync failed with status ${response.status}`);
+        }
+        const results = await response.json();
+        const finished = [];
+        entries.forEach((entry, i) => {
+            if (isFinished(results[i])) {
+                finished.push(entry.id);
+                if (results[i].status >= 400) {
+                    rejected++;
+                } else {
+                    applied++;
+                }
+            }
+        });
+        await removeFromOutbox(finished);
+        if (finished.length < entries.length) {
+            break;
+        }
+    }
+    if (applied + rejected > 0) {
+        notifyClients({ type: 'outbox-replayed', applied, rejected });
+    }
+}
+
+function isFinished(result) {
+    return result !== undefined && result.status !== 409 && result.status < 500;
+}
+
+async function notifyClients(message) {
+    const clients = await self.clients.matchAll({ type: 'window' });
+    clients.forEach(client => client.postMessage(message));
+}
+
+// Outbox of queued writes in IndexedDB, in the order they were made
+
+let outboxDb = null;
+
+function openOutbox() {
+    if (!outboxDb) {
+        outboxDb = new Promise((resolve, reject) => {
+            const request = indexedDB.open(OUTBOX_DB, 1);
+            request.onupgradeneeded = () => {
+                request.result.createObjectStore(OUTBOX_STORE, { keyPath: 'id', autoIncrement: true });
+            };
+            request.onsuccess = () => resolve(request.result);
+            request.onerror = () => {
+                outboxDb = null;
+                reject(request.error);
+            };
+        });
+    }
+    return outboxDb;
+}
+
+async function outboxTransaction(mode, work) {
+    const db = await openOutbox();
+    return new Promise((resolve, reject) => {
+        const transaction = db.transaction(OUTBOX_STORE, mode);
+        const request = work(transaction.objectStore(OUTBOX_STORE));
+        transaction.oncomplete = () => resolve(request ? request.result : undefined);
+        transaction.onerror = () => reject(transaction.error);
+        transaction.onabort = () => reject(transaction.error);
+    });
+}
+
+function addToOutbox(operation) {
+    return outboxTransaction('readwrite', store => store.add(operation));
+}
+
+function countOutbox() {
+    return outboxTransaction('readonly', store => store.count());
+}
+
+function readOutbox(limit) {
+    return outboxTransaction('readonly', store => store.getAll(null, limit));
+}
+
+function removeFromOutbox(ids) {
+    return outboxTransaction('readwrite', store => {
+        ids.forEach(id => store.delete(id));
+    });
+}
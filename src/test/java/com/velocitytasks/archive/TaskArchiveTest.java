@@ -0,0 +1,323 @@
+package com.velocitytasks.archive;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.InMemoryTaskRepository;
+import com.velocitytasks.service.TaskQuery;
+import com.velocitytasks.service.TaskRepositoryException;
+import com.velocitytasks.service.TaskService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the task archive and the archiver moving tasks into it
+ */
+class TaskArchiveTest {
+
+    private static final String OLD = "2024-01-01T00:00:00";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendGetRemoveAndReopen() throws IOException {
+        List<Task> tasks = completedTasks(35);
+        try (TaskArchive archive = TaskArchive.open(directory, 10)) {
+            archive.append(tasks);
+            assertEquals(4, archive.getBlockCount());
+            assertEquals(35, archive.getTaskCount());
+            for (Task task : tasks) {
+                Task archived = archive.get(task.getId()).orElseThrow();
+                assertEquals(task.getTitle(), archived.getTitle());
+                assertEquals(task.getPriority(), archived.getPriority());
+                assertEquals(task.getUpdatedAt(), archived.getUpdatedAt());
+            }
+            assertFalse(archive.get("missing").isPresent());
+
+            assertEquals(tasks.get(7).getId(), archive.remove(tasks.get(7).getId()).getId());
+            assertNull(archive.remove(tasks.get(7).getId()));
+            assertFalse(archive.get(tasks.get(7).getId()).isPresent());
+            assertEquals(34, archive.getTaskCount());
+        }
+
+        try (TaskArchive archive = TaskArchive.open(directory, 10)) {
+            assertEquals(4, archive.getBlockCount());
+            assertEquals(34, archive.getTaskCount());
+            assertFalse(archive.get(tasks.get(7).getId()).isPresent());
+            assertTrue(archive.get(tasks.get(8).getId()).isPresent());
+            long high = tasks.stream().filter(task -> task.getPriority() == TaskPriority.HIGH).count()
+                    - (tasks.get(7).getPriority() == TaskPriority.HIGH ? 1 : 0);
+            assertEquals(high, archive.getTaskCount(TaskPriority.HIGH));
+            List<Task> scanned = new ArrayList<>();
+            archive.scan(TaskPriority.HIGH, scanned::add);
+            assertEquals(high, scanned.size());
+
+            // A copy archived again after the removal is live again
+            archive.append(List.of(tasks.get(7)));
+            assertTrue(archive.get(tasks.get(7).getId()).isPresent());
+            assertEquals(35, archive.getTaskCount());
+        }
+    }
+
+    @Test
+    void testIncompleteBlockIsTruncatedOnOpen() throws IOException {
+        List<Task> tasks = completedTasks(20);
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            archive.append(tasks);
+        }
+        long size = Files.size(directory.resolve(TaskArchive.BLOCKS_FILE));
+        Files.write(directory.resolve(TaskArchive.BLOCKS_FILE), new byte[]{0x56, 0x54, 0x42, 0x31, 0, 0, 0},
+                StandardOpenOption.APPEND);
+
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            assertEquals(size, archive.getSizeBytes());
+            assertEquals(20, archive.getTaskCount());
+            archive.append(completedTasks(5));
+            assertEquals(25, archive.getTaskCount());
+            assertTrue(archive.get(tasks.get(19).getId()).isPresent());
+        }
+    }
+
+    @Test
+    void testCompactionDropsRemovedTasksAndTombstones() throws IOException {
+        List<Task> tasks = completedTasks(40);
+        try (TaskArchive archive = TaskArchive.open(directory, 10)) {
+            archive.append(tasks);
+            for (Task task : tasks.subList(0, 25)) {
+                archive.remove(task.getId());
+            }
+            // A newer copy of a live task supersedes the older one
+            archive.append(List.of(tasks.get(30)));
+            long sizeBefore = archive.getSizeBytes();
+            assertTrue(archive.needsCompaction());
+
+            assertEquals(15, archive.compact());
+            assertFalse(archive.needsCompaction());
+            assertEquals(2, archive.getBlockCount());
+            assertTrue(archive.getSizeBytes() < sizeBefore);
+            assertEquals(0, Files.size(directory.resolve(TaskArchive.TOMBSTONES_FILE)));
+            List<Task> scanned = new ArrayList<>();
+            archive.scan(null, scanned::add);
+            assertEquals(ids(tasks.subList(25, 40)), ids(scanned).stream().sorted().collect(Collectors.toList()));
+
+            assertEquals(tasks.get(26).getId(), archive.remove(tasks.get(26).getId()).getId());
+            assertEquals(14, archive.getTaskCount());
+        }
+
+        // A compaction cut short before it replaced anything is discarded on open
+        Files.write(directory.resolve(TaskArchive.COMPACTING_FILE), new byte[]{1, 2, 3});
+        try (TaskArchive archive = TaskArchive.open(directory, 10)) {
+            assertFalse(Files.exists(directory.resolve(TaskArchive.COMPACTING_FILE)));
+            assertEquals(14, archive.getTaskCount());
+            assertFalse(archive.get(tasks.get(3).getId()).isPresent());
+            assertFalse(archive.get(tasks.get(26).getId()).isPresent());
+            assertTrue(archive.get(tasks.get(39).getId()).isPresent());
+        }
+    }
+
+    @Test
+    void testReaderSkipsRemovedTasksAndPutsOffCompaction() throws IOException {
+        List<Task> tasks = completedTasks(30);
+        try (TaskArchive archive = TaskArchive.open(directory, 10)) {
+            archive.append(tasks);
+            List<Task> read = new ArrayList<>();
+            try (TaskArchive.Reader reader = archive.openReader()) {
+                read.addAll(reader.nextBlock());
+                for (Task task : tasks) {
+                    archive.remove(task.getId());
+                }
+                archive.append(completedTasks(5));
+                assertFalse(archive.needsCompaction());
+                assertEquals(5, archive.compact());
+                assertEquals(4, archive.getBlockCount());
+
+                assertTrue(reader.nextBlock().isEmpty());
+            }
+            assertEquals(10, read.size());
+            assertTrue(archive.needsCompaction());
+            assertEquals(5, archive.compact());
+            assertEquals(1, archive.getBlockCount());
+        }
+    }
+
+    @Test
+    void testOnlyCompletedTasksCanBeArchived() throws IOException {
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> archive.append(List.of(new Task("Pending", TaskPriority.LOW))));
+            assertEquals(0, archive.getTaskCount());
+        }
+    }
+
+    @Test
+    void testArchiverMovesOldCompletedTasksOutOfMemory() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        List<Task> old = completedTasks(30);
+        old.forEach(service::addTask);
+        Task pending = service.addTask(new Task(Task.generateId(), "Old but pending", TaskPriority.HIGH, false, OLD, OLD));
+        Task recent = service.addTask(new Task("Recently completed", TaskPriority.LOW));
+        Task updateData = new Task();
+        updateData.setCompleted(true);
+        service.updateTask(recent.getId(), updateData);
+        TaskService.TaskStats before = service.getTaskStats();
+
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            service.setArchive(archive);
+            assertEquals(30, new TaskArchiver(service, archive, Duration.ofDays(1)).runOnce());
+
+            assertEquals(30, archive.getTaskCount());
+            assertEquals(2, service.getAllTasks().size());
+            assertEquals(32, service.query(TaskQuery.all().includeArchived(true)).size());
+            assertTrue(service.getTaskById(old.get(3).getId()).isPresent());
+            assertTrue(service.getTaskById(pending.getId()).isPresent());
+
+            // Counts merge the archive's summaries with the tasks in memory
+            TaskService.TaskStats after = service.getTaskStats();
+            assertEquals(before.getTotal(), after.getTotal());
+            assertEquals(before.getCompleted(), after.getCompleted());
+            assertEquals(before.getHighPriority(), after.getHighPriority());
+            assertEquals(before.getLowPriority(), after.getLowPriority());
+
+            // Updating moves a task back into memory; deleting removes it for good
+            Task reopen = new Task();
+            reopen.setCompleted(false);
+            Task restored = service.updateTask(old.get(3).getId(), reopen).orElseThrow();
+            assertFalse(restored.isCompleted());
+            assertEquals(3, service.getAllTasks().size());
+            assertTrue(service.deleteTask(old.get(4).getId()));
+            assertFalse(service.getTaskById(old.get(4).getId()).isPresent());
+            assertFalse(service.deleteTask(old.get(4).getId()));
+            assertEquals(28, archive.getTaskCount());
+            assertEquals(before.getTotal() - 1, service.getTaskStats().getTotal());
+
+            // Writing a task again by ID supersedes the archived copy
+            service.applyReplicatedPut(new Task(old.get(5)));
+            assertEquals(27, archive.getTaskCount());
+            assertEquals(before.getTotal() - 1, service.getTaskStats().getTotal());
+            service.setArchive(null);
+        }
+    }
+
+    @Test
+    void testArchiverKeepsTasksChangedWhileArchiving() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        completedTasks(10).forEach(service::addTask);
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            service.setArchive(archive);
+            Task changed = service.getAllTasks().get(0);
+            // A stale reference, as if the task changed between being archived and evicted
+            service.updateTask(changed.getId(), new Task(changed));
+            assertFalse(service.evictToArchive(changed));
+            assertEquals(10, new TaskArchiver(service, archive, Duration.ZERO).runOnce());
+            assertEquals(0, service.getAllTasks().size());
+            service.setArchive(null);
+        }
+    }
+
+    @Test
+    void testArchiverFallsBackToCreationTime() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        Task noUpdateTime = new Task(Task.generateId(), "Never updated", TaskPriority.LOW, true, OLD, null);
+        Task noTimes = new Task(Task.generateId(), "No times", TaskPriority.LOW, true, null, null);
+        service.applyReplicatedPut(noUpdateTime);
+        service.applyReplicatedPut(noTimes);
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            service.setArchive(archive);
+            assertEquals(1, new TaskArchiver(service, archive, Duration.ofDays(1)).runOnce());
+            assertTrue(archive.get(noUpdateTime.getId()).isPresent());
+            assertEquals(List.of(noTimes.getId()), ids(service.getAllTasks()));
+            service.setArchive(null);
+        }
+    }
+
+    @Test
+    void testFailedWriteKeepsArchivedCopy() throws IOException {
+        FailingRepository repository = new FailingRepository();
+        TaskService service = TaskService.newStandaloneInstance(repository);
+        Task task = completedTasks(1).get(0);
+        service.addTask(task);
+        try (TaskArchive archive = TaskArchive.open(directory)) {
+            service.setArchive(archive);
+            assertEquals(1, new TaskArchiver(service, archive, Duration.ofDays(1)).runOnce());
+
+            repository.failWrites = true;
+            Task reopen = new Task();
+            reopen.setCompleted(false);
+            assertThrows(TaskRepositoryException.class, () -> service.updateTask(task.getId(), reopen));
+            assertThrows(TaskRepositoryException.class, () -> service.applyReplicatedPut(new Task(task)));
+            assertEquals(1, archive.getTaskCount());
+            assertTrue(service.getTaskById(task.getId()).isPresent());
+
+            repository.failWrites = false;
+            assertFalse(service.updateTask(task.getId(), reopen).orElseThrow().isCompleted());
+            assertEquals(0, archive.getTaskCount());
+            service.setArchive(null);
+        }
+    }
+
+    @Test
+    void testIncludeArchivedKeepsSortAndLimit() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        List<Task> tasks = completedTasks(50);
+        tasks.forEach(service::addTask);
+        try (TaskArchive archive = TaskArchive.open(directory, 8)) {
+            service.setArchive(archive);
+            List<Task> expected = service.query(TaskQuery.all().sort(TaskQuery.Sort.TITLE_ASC)
+                    .priority(TaskPriority.MEDIUM).search("task 1").limit(5));
+
+            // Archive the first half, leaving the rest in memory
+            List<Task> firstHalf = service.query(TaskQuery.all().sort(TaskQuery.Sort.UPDATED_ASC).limit(25));
+            archive.append(firstHalf);
+            firstHalf.forEach(service::evictToArchive);
+            assertEquals(25, service.getAllTasks().size());
+
+            List<Task> actual = service.query(TaskQuery.all().sort(TaskQuery.Sort.TITLE_ASC)
+                    .priority(TaskPriority.MEDIUM).search("task 1").limit(5).includeArchived(true));
+            assertEquals(ids(expected), ids(actual));
+            assertTrue(service.query(TaskQuery.all().completed(false).includeArchived(true)).isEmpty());
+            service.setArchive(null);
+        }
+    }
+
+    private static List<Task> completedTasks(int count) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String updatedAt = String.format("2024-01-01T00:%02d:%02d", i / 60, i % 60);
+            tasks.add(new Task(Task.generateId(), "Task " + i, TaskPriority.values()[i % 3], true, OLD, updatedAt));
+        }
+        return tasks;
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Rolls back every write after its remapping ran, when told to
+     */
+    private static final class FailingRepository extends InMemoryTaskRepository {
+        volatile boolean failWrites;
+
+        @Override
+        public Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange) {
+            if (failWrites) {
+                remapping.apply(id, findById(id).orElse(null));
+                throw new TaskRepositoryException("Write to " + id + " rolled back", null);
+            }
+            return super.compute(id, remapping, onChange);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.velocitytasks.codec;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BinaryTaskCodec
+ */
+class BinaryTaskCodecTest {
+
+    private static Task roundTrip(Task task) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTask(out, task);
+        return BinaryTaskCodec.readTask(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSameFields(Task expected, Task actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.isCompleted(), actual.isCompleted());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+    }
+
+    @Test
+    void testTaskRoundTrip() throws IOException {
+        Task task = new Task("Ship the binary codec 🚀 — ünïcode", TaskPriority.HIGH);
+        task.setCompleted(true);
+
+        assertSameFields(task, roundTrip(task));
+    }
+
+    @Test
+    void testTimestampsRoundTripExactly() throws IOException {
+        String[] timestamps = {
+            "2025-01-20T10:30:00",
+            "2025-01-20T10:30:00.1",
+            "2025-01-20T10:30:00.123456",
+            "2025-01-20T10:30:00.123456789",
+            "1969-12-31T23:59:59.999",
+            "2024-02-29T00:00:00",
+            "not a timestamp",
+            "2025-01-20T10:30:00.120",
+            "2025-02-30T10:30:00"
+        };
+        for (String timestamp : timestamps) {
+            Task task = new Task("id", "Title", TaskPriority.LOW, false, timestamp, timestamp);
+            assertSameFields(task, roundTrip(task));
+        }
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() throws IOException {
+        Task task = new Task(null, null, null, false, null, null);
+
+        assertSameFields(task, roundTrip(task));
+    }
+
+    @Test
+    void testListRoundTripIsCompact() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            tasks.add(new Task("Task " + i, TaskPriority.values()[i % 3]));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTasks(out, tasks);
+        List<Task> decoded = BinaryTaskCodec.readTasks(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(tasks.size(), decoded.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertSameFields(tasks.get(i), decoded.get(i));
+        }
+        // Each task is an id, a short title and two ~10 byte timestamps
+        assertTrue(out.size() < tasks.size() * 80);
+    }
+
+    @Test
+    void testTruncatedInputIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTask(out, new Task("Truncated", TaskPriority.MEDIUM));
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThrows(EOFException.class,
+                () -> BinaryTaskCodec.readTask(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void testTrailingBytesAndBadCountsAreRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTask(out, new Task("Trailing", TaskPriority.MEDIUM));
+        out.write(0);
+        assertThrows(IOException.class, () -> BinaryTaskCodec.readTask(new ByteArrayInputStream(out.toByteArray())));
+
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTasks(list, List.of(new Task("Trailing", TaskPriority.LOW)));
+        list.write(0);
+        assertThrows(IOException.class, () -> BinaryTaskCodec.readTasks(new ByteArrayInputStream(list.toByteArray())));
+
+        // Version 1, then a count of 2^31 that would overflow an int
+        byte[] huge = {1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08};
+        assertThrows(IOException.class, () -> BinaryTaskCodec.readTasks(new ByteArrayInputStream(huge)));
+    }
+
+    @Test
+    void testContentNegotiationMatching() {
+        assertTrue(BinaryTaskCodec.accepted("application/x-velocitytasks"));
+        assertTrue(BinaryTaskCodec.accepted("application/x-velocitytasks, application/json;q=0.5"));
+        assertTrue(BinaryTaskCodec.accepted("application/json;q=0.5, Application/X-VelocityTasks ; q=0.9"));
+        assertFalse(BinaryTaskCodec.accepted("application/x-velocitytasks;q=0"));
+        assertFalse(BinaryTaskCodec.accepted("application/x-velocitytasks; q=0.0, application/json"));
+        assertFalse(BinaryTaskCodec.accepted("application/x-velocitytasks-v2"));
+        assertFalse(BinaryTaskCodec.accepted("*/*"));
+        assertFalse(BinaryTaskCodec.accepted("application/json"));
+        assertFalse(BinaryTaskCodec.accepted(null));
+
+        assertTrue(BinaryTaskCodec.isContentType("application/x-velocitytasks"));
+        assertTrue(BinaryTaskCodec.isContentType("application/x-velocitytasks; charset=binary"));
+        assertFalse(BinaryTaskCodec.isContentType("application/x-velocitytasks-v2"));
+        assertFalse(BinaryTaskCodec.isContentType("application/json"));
+        assertFalse(BinaryTaskCodec.isContentType(null));
+    }
+}
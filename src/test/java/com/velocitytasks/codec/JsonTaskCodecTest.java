@@ -0,0 +1,113 @@
+package com.velocitytasks.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JsonTaskCodec, checked against the Gson configuration it replaces
+ */
+class JsonTaskCodecTest {
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    @Test
+    void testTaskOutputMatchesGson() throws IOException {
+        Task task = new Task("Escape <html> & \"quotes\" = 'ok'\n\t\u0001\u2028 \\ 🚀", TaskPriority.HIGH);
+        task.setCompleted(true);
+
+        StringWriter out = new StringWriter();
+        JsonTaskCodec.writeTask(out, task);
+
+        assertEquals(gson.toJson(task), out.toString());
+    }
+
+    @Test
+    void testTaskListOutputMatchesGson() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        StringWriter empty = new StringWriter();
+        JsonTaskCodec.writeTasks(empty, tasks);
+        assertEquals(gson.toJson(tasks), empty.toString());
+
+        tasks.add(new Task("First", TaskPriority.LOW));
+        tasks.add(new Task(null, null, null, false, null, null));
+        StringWriter out = new StringWriter();
+        JsonTaskCodec.writeTasks(out, tasks);
+        assertEquals(gson.toJson(tasks), out.toString());
+    }
+
+    @Test
+    void testErrorOutputShape() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonTaskCodec.writeError(out, "Task not found", 404);
+
+        String json = out.toString();
+        assertTrue(json.startsWith("{\n  \"error\": \"Task not found\",\n  \"status\": 404,\n  \"timestamp\": "));
+        assertTrue(json.endsWith("\n}"));
+    }
+
+    @Test
+    void testReadTaskLeavesUnsetFieldsForTheService() throws IOException {
+        Task task = JsonTaskCodec.readTask(new StringReader(
+                "{\"title\": \"New\", \"completed\": true, \"createdAt\": \"2025-01-20T10:30:00.000Z\", \"extra\": [1, {}]}"));
+
+        assertNull(task.getId());
+        assertEquals("New", task.getTitle());
+        assertEquals(TaskPriority.MEDIUM, task.getPriority());
+        assertTrue(task.isCompleted());
+        assertEquals("2025-01-20T10:30:00.000Z", task.getCreatedAt());
+        assertNull(task.getUpdatedAt());
+    }
+
+    @Test
+    void testReadTaskFollowsGsonRules() throws IOException {
+        String json = "{\"id\": \"abc\", \"title\": 42, \"priority\": \"URGENT\", \"completed\": \"true\"}";
+        Task expected = gson.fromJson(json, Task.class);
+        Task actual = JsonTaskCodec.readTask(new StringReader(json));
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.isCompleted(), actual.isCompleted());
+
+        assertNull(JsonTaskCodec.readTask(new StringReader("")));
+        assertNull(JsonTaskCodec.readTask(new StringReader("null")));
+        assertThrows(RuntimeException.class, () -> JsonTaskCodec.readTask(new StringReader("{} {}")));
+    }
+
+    @Test
+    void testReadTaskList() throws IOException {
+        List<Task> tasks = JsonTaskCodec.readTasks(new StringReader(
+                "[{\"title\": \"One\", \"priority\": \"LOW\"}, {\"title\": \"Two\"}]"));
+
+        assertEquals(2, tasks.size());
+        assertEquals(TaskPriority.LOW, tasks.get(0).getPriority());
+        assertEquals("Two", tasks.get(1).getTitle());
+    }
+
+    @Test
+    void testTaskLineIsCompactGsonOutput() throws IOException {
+        Task task = new Task("Line\nbreak \u2028 <b> 🚀", TaskPriority.LOW);
+
+        StringWriter out = new StringWriter();
+        JsonTaskCodec.writeTaskLine(out, task);
+
+        assertEquals(new GsonBuilder().create().toJson(task) + "\n", out.toString());
+        assertEquals(1, out.toString().split("\n", -1).length - 1);
+
+        Task decoded = JsonTaskCodec.readTaskLine(out.toString().trim());
+        assertEquals(task.getTitle(), decoded.getTitle());
+        assertEquals(task.getUpdatedAt(), decoded.getUpdatedAt());
+        assertNull(JsonTaskCodec.readTaskLine(""));
+    }
+}
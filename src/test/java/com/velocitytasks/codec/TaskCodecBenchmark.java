@@ -0,0 +1,87 @@
+package com.velocitytasks.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encode/decode throughput of the binary and hand-written JSON task codecs against Gson.
+ * Not a unit test; run with:
+ * {@code java -cp target/classes:target/test-classes:<gson.jar> com.velocitytasks.codec.TaskCodecBenchmark}
+ * after {@code mvn test-compile}.
+ */
+public class TaskCodecBenchmark {
+    private static final Type TASK_LIST_TYPE = new TypeToken<List<Task>>() { }.getType();
+    private static final int TASKS = 1000;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 1_000_000_000L;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Task> tasks = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(new Task("Benchmark task number " + i, TaskPriority.values()[i % 3]));
+        }
+        // Configured as the servlets' Gson instances were
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        ByteArrayOutputStream binaryOut = new ByteArrayOutputStream();
+        BinaryTaskCodec.writeTasks(binaryOut, tasks);
+        byte[] binary = binaryOut.toByteArray();
+        byte[] json = gson.toJson(tasks).getBytes(StandardCharsets.UTF_8);
+        System.out.printf("Payload for %d tasks: binary %d bytes, json %d bytes%n", TASKS, binary.length, json.length);
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream(json.length * 2);
+        measure("binary encode", () -> {
+            sink.reset();
+            BinaryTaskCodec.writeTasks(sink, tasks);
+        });
+        measure("gson encode", () -> {
+            sink.reset();
+            Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+            gson.toJson(tasks, writer);
+            writer.flush();
+        });
+        measure("json encode", () -> {
+            sink.reset();
+            Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+            JsonTaskCodec.writeTasks(writer, tasks);
+            writer.flush();
+        });
+        measure("binary decode", () -> BinaryTaskCodec.readTasks(new ByteArrayInputStream(binary)));
+        measure("json decode", () -> JsonTaskCodec.readTasks(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)));
+        measure("gson decode", () -> gson.fromJson(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), TASK_LIST_TYPE));
+    }
+
+    private static void measure(String name, Operation operation) throws Exception {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long iterations = 0;
+            while (System.nanoTime() - start < ROUND_NANOS) {
+                operation.run();
+                iterations++;
+            }
+            double tasksPerSecond = iterations * (double) TASKS * 1e9 / (System.nanoTime() - start);
+            best = Math.max(best, tasksPerSecond);
+        }
+        System.out.printf("%-14s %,14.0f tasks/s%n", name, best);
+    }
+}
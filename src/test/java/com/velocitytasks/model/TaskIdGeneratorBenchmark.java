@@ -0,0 +1,79 @@
+package com.velocitytasks.model;
+
+import com.velocitytasks.service.TaskService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ID generation and task creation throughput across thread counts, comparing random
+ * UUIDs with time-ordered IDs. Creation goes through {@link TaskService#addTask}, so it
+ * includes the contention of inserting into the store; each created task is deleted again
+ * to keep the store small. Not a unit test; run with
+ * {@code java -cp target/classes:target/test-classes com.velocitytasks.model.TaskIdGeneratorBenchmark}
+ * after {@code mvn test-compile}.
+ */
+public class TaskIdGeneratorBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final long RUN_MILLIS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        TaskIdGenerator timeOrdered = new TimeOrderedIdGenerator();
+        System.out.printf("%-8s %22s %22s %22s %22s%n", "threads", "random UUID ids/s", "time-ordered ids/s",
+                "addTask random/s", "addTask ordered/s");
+        for (int threads : THREAD_COUNTS) {
+            // Warm-up pass, then the measured pass
+            run(threads, TaskIdGenerator.RANDOM_UUID::nextId);
+            long random = run(threads, TaskIdGenerator.RANDOM_UUID::nextId);
+            run(threads, timeOrdered::nextId);
+            long ordered = run(threads, timeOrdered::nextId);
+            long randomCreates = runCreates(threads, TaskIdGenerator.RANDOM_UUID);
+            long orderedCreates = runCreates(threads, timeOrdered);
+            System.out.printf("%-8d %,22d %,22d %,22d %,22d%n", threads, random, ordered, randomCreates, orderedCreates);
+        }
+        Task.setIdGenerator(timeOrdered);
+    }
+
+    private static long runCreates(int threads, TaskIdGenerator generator) throws InterruptedException {
+        Task.setIdGenerator(generator);
+        TaskService service = TaskService.newStandaloneInstance();
+        Runnable create = () -> service.deleteTask(service.addTask(new Task("Benchmark task", TaskPriority.MEDIUM)).getId());
+        run(threads, create);
+        return run(threads, create);
+    }
+
+    private static long run(int threads, Runnable operation) throws InterruptedException {
+        LongAdder count = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long local = 0;
+                while (running.get()) {
+                    operation.run();
+                    local++;
+                }
+                count.add(local);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (long) (count.sum() * 1e9 / (System.nanoTime() - begin));
+    }
+}
@@ -0,0 +1,79 @@
+package com.velocitytasks.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimeOrderedIdGenerator
+ */
+class TimeOrderedIdGeneratorTest {
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+
+    @Test
+    void testIdsAreVersion7Uuids() {
+        UUID uuid = UUID.fromString(generator.nextId());
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    void testIdsFromOneThreadSortInCreationOrder() {
+        String previous = generator.nextId();
+        // Far more than the 4096 per-millisecond counter values, to exercise the rollover
+        for (int i = 0; i < 50_000; i++) {
+            String next = generator.nextId();
+            assertTrue(next.compareTo(previous) > 0, next + " should sort after " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testIdsCarryCreationTime() throws InterruptedException {
+        long before = System.currentTimeMillis();
+        String first = generator.nextId();
+        Thread.sleep(5);
+        String second = new TimeOrderedIdGenerator().nextId();
+
+        assertTrue(TimeOrderedIdGenerator.timestampOf(first) >= before);
+        assertTrue(second.compareTo(first) > 0);
+    }
+
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(generator.nextId());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8 * 20_000, ids.size());
+    }
+
+    @Test
+    void testTasksUseConfiguredGenerator() {
+        try {
+            Task.setIdGenerator(() -> "fixed-id");
+            assertEquals("fixed-id", new Task("Custom id", TaskPriority.LOW).getId());
+        } finally {
+            Task.setIdGenerator(new TimeOrderedIdGenerator());
+        }
+        assertEquals(7, UUID.fromString(new Task().getId()).version());
+    }
+}
@@ -0,0 +1,367 @@
+package com.velocitytasks.replication;
+
+import com.velocitytasks.archive.TaskArchive;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-node replication tests running a leader and followers on localhost
+ */
+class ReplicationTest {
+
+    private final List<Closeable> nodes = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Closeable node : nodes) {
+            node.close();
+        }
+    }
+
+    private ReplicationLeader startLeader(TaskService service, int logCapacity) throws IOException {
+        ReplicationLeader leader = new ReplicationLeader(service, 0, logCapacity, 64).start();
+        nodes.add(leader);
+        return leader;
+    }
+
+    private ReplicationFollower startFollower(TaskService service, ReplicationLeader leader) {
+        ReplicationFollower follower = new ReplicationFollower(service, "localhost", leader.getPort()).start();
+        nodes.add(follower);
+        return follower;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for replication");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testFollowersReplicateMutations() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        Task existing = leaderService.addTask(new Task("Before followers", TaskPriority.LOW));
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+
+        TaskService followerA = TaskService.newStandaloneInstance();
+        TaskService followerB = TaskService.newStandaloneInstance();
+        startFollower(followerA, leader);
+        startFollower(followerB, leader);
+
+        Task added = leaderService.addTask(new Task("Replicated", TaskPriority.HIGH));
+        Task update = new Task();
+        update.setPriority(TaskPriority.HIGH);
+        update.setCompleted(true);
+        leaderService.updateTask(added.getId(), update);
+        leaderService.deleteTask(existing.getId());
+
+        for (TaskService follower : List.of(followerA, followerB)) {
+            await(() -> follower.getTaskById(added.getId()).map(Task::isCompleted).orElse(false)
+                    && follower.getTaskById(existing.getId()).isEmpty());
+            Task replica = follower.getTaskById(added.getId()).get();
+            assertEquals("Replicated", replica.getTitle());
+            assertEquals(TaskPriority.HIGH, replica.getPriority());
+            assertEquals(added.getCreatedAt(), replica.getCreatedAt());
+            assertEquals(1, follower.getAllTasks().size());
+        }
+    }
+
+    @Test
+    void testFollowerForwardsWritesToLeader() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+        TaskService followerService = TaskService.newStandaloneInstance();
+        ReplicationFollower follower = startFollower(followerService, leader);
+
+        Task created = follower.forwardAdd(new Task("Forwarded", TaskPriority.MEDIUM));
+        assertTrue(leaderService.getTaskById(created.getId()).isPresent());
+        // Read-your-writes: the follower has applied its own write before returning
+        assertTrue(followerService.getTaskById(created.getId()).isPresent());
+
+        Task update = new Task();
+        update.setTitle("Forwarded and renamed");
+        Optional<Task> updated = follower.forwardUpdate(created.getId(), update);
+        assertTrue(updated.isPresent());
+        assertEquals("Forwarded and renamed", followerService.getTaskById(created.getId()).get().getTitle());
+
+        assertFalse(follower.forwardUpdate("missing", update).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> follower.forwardAdd(new Task()));
+
+        assertTrue(follower.forwardDelete(created.getId()));
+        assertFalse(followerService.getTaskById(created.getId()).isPresent());
+        assertEquals(0, follower.getLag());
+    }
+
+    @Test
+    void testWritesForwardedWithTheSameRequestIdAreAppliedOnce() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+        ReplicationFollower first = startFollower(TaskService.newStandaloneInstance(), leader);
+        ReplicationFollower second = startFollower(TaskService.newStandaloneInstance(), leader);
+
+        // A client retrying against another follower reuses its idempotency key as the request ID
+        Task created = first.forwardAdd("key-1", new Task("Retried", TaskPriority.LOW));
+        Task retried = second.forwardAdd("key-1", new Task("Retried", TaskPriority.LOW));
+
+        assertEquals(created.getId(), retried.getId());
+        assertEquals(1, leaderService.getAllTasks().size());
+    }
+
+    @Test
+    void testRetriedForwardedWritesAreAppliedOnce() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+
+        try (Socket socket = new Socket("localhost", leader.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeByte(ReplicationProtocol.CHANNEL_WRITE);
+            in.readFully(new byte[ReplicationProtocol.NONCE_BYTES]);
+            ReplicationProtocol.writeProof(out, new byte[0]);
+            assertEquals(ReplicationProtocol.HANDSHAKE_ACCEPTED, in.readByte());
+
+            Task first = null;
+            for (int attempt = 0; attempt < 2; attempt++) {
+                out.writeByte(ReplicationProtocol.WRITE_ADD);
+                ReplicationProtocol.writeString(out, "add-1");
+                ReplicationProtocol.writeTask(out, new Task("Sent twice", TaskPriority.LOW));
+                assertEquals(ReplicationProtocol.STATUS_OK, in.readByte());
+                in.readLong();
+                assertTrue(in.readBoolean());
+                Task created = ReplicationProtocol.readTask(in);
+                if (first != null) {
+                    assertEquals(first.getId(), created.getId());
+                }
+                first = created;
+            }
+            assertEquals(1, leaderService.getAllTasks().size());
+
+            for (int attempt = 0; attempt < 2; attempt++) {
+                out.writeByte(ReplicationProtocol.WRITE_DELETE);
+                ReplicationProtocol.writeString(out, "delete-1");
+                ReplicationProtocol.writeString(out, first.getId());
+                // A repeated delete reports the original success rather than a missing task
+                assertEquals(ReplicationProtocol.STATUS_OK, in.readByte());
+                in.readLong();
+                assertFalse(in.readBoolean());
+            }
+            assertTrue(leaderService.getAllTasks().isEmpty());
+        }
+    }
+
+    @Test
+    void testFollowerCatchesUpAfterReconnect() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+        TaskService followerService = TaskService.newStandaloneInstance();
+        ReplicationFollower first = startFollower(followerService, leader);
+
+        leaderService.addTask(new Task("First", TaskPriority.LOW));
+        await(() -> followerService.getAllTasks().size() == 1);
+        long appliedOffset = first.getAppliedOffset();
+        first.close();
+
+        for (int i = 0; i < 200; i++) {
+            leaderService.addTask(new Task("Missed " + i, TaskPriority.MEDIUM));
+        }
+
+        // Local state proves the replica resumed from its offset rather than from a snapshot
+        followerService.addTask(new Task("Local only", TaskPriority.HIGH));
+        ReplicationFollower resumed = new ReplicationFollower(followerService, "localhost",
+                leader.getPort(), null, first.getLeaderRunId(), appliedOffset).start();
+        nodes.add(resumed);
+
+        await(() -> followerService.getAllTasks().size() == 202);
+        assertEquals(leader.getHeadOffset(), resumed.getAppliedOffset());
+        assertFalse(followerService.searchTasks("Local only").isEmpty());
+    }
+
+    @Test
+    void testFollowerBehindRetainedLogResynchronisesFromSnapshot() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = startLeader(leaderService, 16);
+        for (int i = 0; i < 100; i++) {
+            leaderService.addTask(new Task("Task " + i, TaskPriority.LOW));
+        }
+
+        TaskService followerService = TaskService.newStandaloneInstance();
+        followerService.addTask(new Task("Local only", TaskPriority.HIGH));
+        ReplicationFollower follower = startFollower(followerService, leader);
+
+        await(() -> follower.getAppliedOffset() >= leader.getHeadOffset());
+        assertEquals(100, followerService.getAllTasks().size());
+        assertTrue(followerService.searchTasks("Local only").isEmpty());
+    }
+
+    @Test
+    void testSnapshotCarriesArchivedTasks() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        TaskArchive leaderArchive = TaskArchive.open(Files.createDirectory(directory.resolve("leader")));
+        nodes.add(leaderArchive);
+        leaderService.setArchive(leaderArchive);
+        Task archived = new Task(Task.generateId(), "Archived on leader", TaskPriority.LOW, true,
+                "2024-01-01T00:00:00", "2024-01-01T00:00:00");
+        leaderArchive.append(List.of(archived));
+        Task hot = leaderService.addTask(new Task("Hot on leader", TaskPriority.HIGH));
+        ReplicationLeader leader = startLeader(leaderService, 1000);
+
+        TaskService followerService = TaskService.newStandaloneInstance();
+        TaskArchive followerArchive = TaskArchive.open(Files.createDirectory(directory.resolve("follower")));
+        nodes.add(followerArchive);
+        followerService.setArchive(followerArchive);
+        Task stale = new Task(Task.generateId(), "Deleted while away", TaskPriority.MEDIUM, true,
+                "2024-01-01T00:00:00", "2024-01-01T00:00:00");
+        followerArchive.append(List.of(stale));
+        ReplicationFollower follower = startFollower(followerService, leader);
+
+        await(() -> follower.getAppliedOffset() >= 0);
+        assertTrue(followerService.getTaskById(archived.getId()).isPresent());
+        assertTrue(followerService.getTaskById(hot.getId()).isPresent());
+        assertFalse(followerService.getTaskById(stale.getId()).isPresent());
+        assertEquals(0, followerArchive.getTaskCount());
+        assertEquals(2, followerService.getTaskStats().getTotal());
+    }
+
+    @Test
+    void testFollowerResynchronisesAfterLeaderRestart() throws Exception {
+        TaskService oldLeaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader oldLeader = startLeader(oldLeaderService, 1000);
+        int port = oldLeader.getPort();
+        for (int i = 0; i < 5; i++) {
+            oldLeaderService.addTask(new Task("Old run " + i, TaskPriority.LOW));
+        }
+        TaskService followerService = TaskService.newStandaloneInstance();
+        ReplicationFollower follower = startFollower(followerService, oldLeader);
+        await(() -> follower.getAppliedOffset() == 5);
+        oldLeader.close();
+
+        // The restarted leader's log starts over, behind the offset the follower resumes from
+        TaskService newLeaderService = TaskService.newStandaloneInstance();
+        Task survivor = newLeaderService.addTask(new Task("New run", TaskPriority.HIGH));
+        ReplicationLeader newLeader = new ReplicationLeader(newLeaderService, InetAddress.getLoopbackAddress(),
+                port, null, 1000, 64).start();
+        nodes.add(newLeader);
+
+        await(() -> follower.getLeaderRunId() == newLeader.getRunId());
+        assertEquals(List.of(survivor.getId()), followerService.getAllTasks().stream().map(Task::getId).toList());
+        assertEquals(newLeader.getHeadOffset(), follower.getAppliedOffset());
+
+        newLeaderService.addTask(new Task("After restart", TaskPriority.LOW));
+        await(() -> followerService.getAllTasks().size() == 2);
+    }
+
+    @Test
+    void testFollowersMustKnowTheSharedSecret() throws Exception {
+        TaskService leaderService = TaskService.newStandaloneInstance();
+        ReplicationLeader leader = new ReplicationLeader(leaderService, InetAddress.getLoopbackAddress(), 0,
+                "s3cret", 1000, 64).start();
+        nodes.add(leader);
+        leaderService.addTask(new Task("Guarded", TaskPriority.LOW));
+
+        TaskService intruderService = TaskService.newStandaloneInstance();
+        ReplicationFollower intruder = new ReplicationFollower(intruderService, "localhost", leader.getPort(),
+                "guess").start();
+        nodes.add(intruder);
+        TaskService followerService = TaskService.newStandaloneInstance();
+        ReplicationFollower follower = new ReplicationFollower(followerService, "localhost", leader.getPort(),
+                "s3cret").start();
+        nodes.add(follower);
+
+        await(() -> followerService.getAllTasks().size() == 1);
+        assertThrows(LeaderUnavailableException.class, () -> intruder.forwardAdd(new Task("Sneaky", TaskPriority.LOW)));
+        assertTrue(intruderService.getAllTasks().isEmpty());
+        assertEquals(1, leaderService.getAllTasks().size());
+    }
+
+    @Test
+    void testLeaderRefusesPublicAddressWithoutSecret() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplicationLeader(TaskService.newStandaloneInstance(),
+                InetAddress.getByName("0.0.0.0"), 0, null, 1000, 64));
+    }
+
+    @Test
+    void testOversizedCountsFromPeerAreRejected() throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(Integer.MAX_VALUE);
+        byte[] bytes = buffer.toByteArray();
+
+        assertThrows(IOException.class, () -> ReplicationProtocol.readString(new DataInputStream(new ByteArrayInputStream(bytes))));
+        assertThrows(IOException.class, () -> ReplicationProtocol.readBatchEntries(new DataInputStream(new ByteArrayInputStream(bytes))));
+        assertThrows(IOException.class, () -> ReplicationProtocol.readSnapshotTasks(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    void testSnapshotTasksArriveInChunks() throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        ReplicationProtocol.writeSnapshotChunk(out, List.of(new Task("First", TaskPriority.LOW), new Task("Second", TaskPriority.HIGH)));
+        ReplicationProtocol.writeSnapshotChunk(out, List.of(new Task("Third", TaskPriority.MEDIUM)));
+        ReplicationProtocol.writeSnapshotEnd(out);
+
+        List<Task> tasks = ReplicationProtocol.readSnapshotTasks(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+        assertEquals(List.of("First", "Second", "Third"), tasks.stream().map(Task::getTitle).collect(Collectors.toList()));
+        assertThrows(IllegalArgumentException.class, () -> ReplicationProtocol.writeSnapshotChunk(out, List.of()));
+    }
+
+    @Test
+    void testOutOfRangePriorityFromPeerIsRejected() throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        ReplicationProtocol.writeString(out, "id");
+        ReplicationProtocol.writeString(out, "Title");
+        out.writeByte(TaskPriority.values().length);
+        out.writeBoolean(false);
+        ReplicationProtocol.writeString(out, null);
+        ReplicationProtocol.writeString(out, null);
+        byte[] bytes = buffer.toByteArray();
+
+        assertThrows(IOException.class, () -> ReplicationProtocol.readTask(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    void testLogReadsInBatchesAndReportsTruncation() throws Exception {
+        ReplicationLog log = new ReplicationLog(4);
+        for (int i = 0; i < 6; i++) {
+            log.onTaskDeleted("id-" + i);
+        }
+
+        assertEquals(6, log.getHeadOffset());
+        assertEquals(3, log.getFirstOffset());
+        assertNull(log.read(1, 10, 0));
+
+        List<ReplicationEntry> batch = log.read(3, 2, 0);
+        assertEquals(2, batch.size());
+        assertEquals(3, batch.get(0).getOffset());
+        assertEquals("id-3", batch.get(1).getTaskId());
+        assertTrue(log.read(7, 10, 0).isEmpty());
+        assertNull(log.read(8, 10, 0));
+    }
+}
@@ -0,0 +1,62 @@
+package com.velocitytasks.repository;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskRepository;
+import com.velocitytasks.service.TaskRepositoryConformanceTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conformance of the caching decorator over the JDBC repository, plus its cache behaviour
+ */
+class CachingTaskRepositoryTest extends TaskRepositoryConformanceTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Override
+    protected TaskRepository newRepository() {
+        return new CachingTaskRepository(newDatabase(), 100);
+    }
+
+    private static JdbcTaskRepository newDatabase() {
+        return JdbcTaskRepository.open("jdbc:h2:mem:cached" + DATABASES.incrementAndGet(), null, null, 4);
+    }
+
+    @Test
+    void testReadsThroughAndFollowsChanges() throws Exception {
+        try (CachingTaskRepository cache = new CachingTaskRepository(newDatabase(), 2)) {
+            Task task = new Task("Cached", TaskPriority.HIGH);
+            cache.compute(task.getId(), (id, current) -> task, (previous, current) -> { });
+            assertSame(task, cache.findById(task.getId()).orElseThrow());
+            assertEquals(1, cache.getHits());
+
+            Task renamed = new Task(task);
+            renamed.setTitle("Renamed");
+            cache.compute(task.getId(), (id, current) -> renamed, (previous, current) -> { });
+            assertEquals("Renamed", cache.findById(task.getId()).orElseThrow().getTitle());
+            cache.compute(task.getId(), (id, current) -> null, (previous, current) -> { });
+            assertFalse(cache.findById(task.getId()).isPresent());
+
+            // Loaded on a miss, then bounded to the most recently used entries
+            Task[] stored = new Task[3];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = new Task("Stored " + i, TaskPriority.LOW);
+            }
+            cache.saveAll(List.of(stored));
+            assertEquals(0, cache.size());
+            long misses = cache.getMisses();
+            for (Task each : stored) {
+                assertEquals(each.getTitle(), cache.findById(each.getId()).orElseThrow().getTitle());
+            }
+            assertEquals(misses + 3, cache.getMisses());
+            assertEquals(2, cache.size());
+            cache.findById(stored[2].getId());
+            assertEquals(misses + 3, cache.getMisses());
+        }
+    }
+}
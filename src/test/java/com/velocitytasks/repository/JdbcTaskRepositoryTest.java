@@ -0,0 +1,47 @@
+package com.velocitytasks.repository;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskQuery;
+import com.velocitytasks.service.TaskRepository;
+import com.velocitytasks.service.TaskRepositoryConformanceTest;
+import com.velocitytasks.service.TaskService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conformance of the JDBC repository on an in-memory H2 database, plus persistence on disk
+ */
+class JdbcTaskRepositoryTest extends TaskRepositoryConformanceTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected TaskRepository newRepository() {
+        return JdbcTaskRepository.open("jdbc:h2:mem:tasks" + DATABASES.incrementAndGet(), null, null, 4);
+    }
+
+    @Test
+    void testTasksSurviveReopening() throws Exception {
+        String url = "jdbc:h2:" + directory.resolve("tasks").toAbsolutePath();
+        String id;
+        try (JdbcTaskRepository database = JdbcTaskRepository.open(url)) {
+            TaskService service = TaskService.newStandaloneInstance(database);
+            id = service.addTask(new Task("Persistent task", TaskPriority.HIGH)).getId();
+            service.addTask(new Task("Another one", TaskPriority.LOW));
+        }
+        try (JdbcTaskRepository database = JdbcTaskRepository.open(url)) {
+            assertEquals("Persistent task", database.findById(id).orElseThrow().getTitle());
+            assertEquals(2, database.count(null, null));
+            assertEquals(1, database.find(TaskQuery.all().search("persistent")).size());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.velocitytasks.service;
+
+/**
+ * Conformance of the default in-memory repository
+ */
+class InMemoryTaskRepositoryTest extends TaskRepositoryConformanceTest {
+
+    @Override
+    protected TaskRepository newRepository() {
+        return new InMemoryTaskRepository();
+    }
+}
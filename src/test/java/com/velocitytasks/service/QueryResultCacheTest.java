@@ -0,0 +1,157 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for QueryResultCache
+ */
+class QueryResultCacheTest {
+    
+    private static final String FORMAT = "application/json";
+    
+    @Test
+    void testHitsAndMisses() {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key key = QueryResultCache.key(TaskQuery.all().search("Report"), FORMAT);
+        
+        assertNull(cache.get(key));
+        assertTrue(cache.put(key, new byte[] {1, 2, 3}, cache.getVersion()));
+        assertArrayEquals(new byte[] {1, 2, 3}, cache.get(QueryResultCache.key(TaskQuery.all().search("REPORT"), FORMAT)).getBody());
+        assertNull(cache.get(QueryResultCache.key(TaskQuery.all().search("report"), "application/x-velocitytasks")));
+        
+        QueryResultCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+        assertEquals(3, stats.getBytes());
+        assertEquals(100.0 / 3, stats.getHitRate(), 0.001);
+    }
+    
+    @Test
+    void testEntityTagIsStoredWithTheResponse() {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key key = QueryResultCache.key(TaskQuery.all(), FORMAT);
+        QueryResultCache.CachedResponse response = new QueryResultCache.CachedResponse(new byte[] {1, 2, 3});
+        
+        assertTrue(cache.put(key, response, cache.getVersion()));
+        
+        assertSame(response, cache.get(key));
+        assertEquals(new QueryResultCache.CachedResponse(new byte[] {1, 2, 3}).getEntityTag(), response.getEntityTag());
+        assertNotEquals(new QueryResultCache.CachedResponse(new byte[] {1, 2, 4}).getEntityTag(), response.getEntityTag());
+    }
+    
+    @Test
+    void testInvalidatesOnlyAffectedEntries() {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key all = put(cache, TaskQuery.all());
+        QueryResultCache.Key pending = put(cache, TaskQuery.all().completed(false));
+        QueryResultCache.Key completedHigh = put(cache, TaskQuery.all().completed(true).priority(TaskPriority.HIGH));
+        QueryResultCache.Key low = put(cache, TaskQuery.all().priority(TaskPriority.LOW));
+        QueryResultCache.Key invoice = put(cache, TaskQuery.all().search("invoice"));
+        QueryResultCache.Key deploy = put(cache, TaskQuery.all().search("deploy"));
+        QueryResultCache.Key shortSearch = put(cache, TaskQuery.all().search("ep"));
+        
+        cache.invalidate(null, task("Deploy server", TaskPriority.HIGH, false));
+        
+        assertNull(cache.get(all));
+        assertNull(cache.get(pending));
+        assertNull(cache.get(deploy));
+        assertNull(cache.get(shortSearch));
+        assertNotNull(cache.get(completedHigh));
+        assertNotNull(cache.get(low));
+        assertNotNull(cache.get(invoice));
+        assertEquals(4, cache.getStats().getInvalidations());
+    }
+    
+    @Test
+    void testInvalidatesOnPreviousState() {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key low = put(cache, TaskQuery.all().priority(TaskPriority.LOW));
+        QueryResultCache.Key invoice = put(cache, TaskQuery.all().search("invoice"));
+        
+        // A task moving out of a result set changes it just as much as one moving in
+        cache.invalidate(task("Pay invoice", TaskPriority.LOW, false), task("Pay bill", TaskPriority.HIGH, false));
+        
+        assertNull(cache.get(low));
+        assertNull(cache.get(invoice));
+    }
+    
+    @Test
+    void testRejectsResponsesComputedBeforeAMutation() {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key key = QueryResultCache.key(TaskQuery.all(), FORMAT);
+        
+        long version = cache.getVersion();
+        cache.invalidate(null, task("Concurrent write", TaskPriority.LOW, false));
+        
+        assertFalse(cache.put(key, new byte[] {1}, version));
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getStats().getRejections());
+    }
+    
+    @Test
+    void testEvictsLeastFrequentlyUsedBySize() {
+        QueryResultCache cache = new QueryResultCache(100, 10);
+        QueryResultCache.Key hot = QueryResultCache.key(TaskQuery.all(), FORMAT);
+        QueryResultCache.Key cold = QueryResultCache.key(TaskQuery.all().completed(true), FORMAT);
+        QueryResultCache.Key newcomer = QueryResultCache.key(TaskQuery.all().completed(false), FORMAT);
+        
+        // Responses are only cached after a lookup missed
+        cache.get(hot);
+        cache.put(hot, new byte[5], cache.getVersion());
+        cache.get(cold);
+        cache.put(cold, new byte[5], cache.getVersion());
+        for (int i = 0; i < 5; i++) {
+            cache.get(hot);
+        }
+        
+        // Seen once, so not worth more than the least used entry
+        cache.get(newcomer);
+        assertFalse(cache.put(newcomer, new byte[5], cache.getVersion()));
+        
+        // Seen as often as the hot entry, so it replaces the cold one
+        for (int i = 0; i < 5; i++) {
+            cache.get(newcomer);
+        }
+        assertTrue(cache.put(newcomer, new byte[5], cache.getVersion()));
+        assertNotNull(cache.get(hot));
+        assertNull(cache.get(cold));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(10, cache.getStats().getBytes());
+    }
+    
+    @Test
+    void testServiceMutationsInvalidateItsCache() {
+        TaskService service = TaskService.newStandaloneInstance();
+        QueryResultCache cache = service.getQueryCache();
+        QueryResultCache.Key high = put(cache, TaskQuery.all().priority(TaskPriority.HIGH));
+        QueryResultCache.Key low = put(cache, TaskQuery.all().priority(TaskPriority.LOW));
+        
+        Task task = service.addTask(new Task("New task", TaskPriority.HIGH));
+        assertNull(cache.get(high));
+        assertNotNull(cache.get(low));
+        
+        Task updateData = new Task();
+        updateData.setPriority(TaskPriority.LOW);
+        service.updateTask(task.getId(), updateData);
+        assertNull(cache.get(low));
+        
+        low = put(cache, TaskQuery.all().priority(TaskPriority.LOW));
+        service.deleteTask(task.getId());
+        assertNull(cache.get(low));
+    }
+    
+    private static QueryResultCache.Key put(QueryResultCache cache, TaskQuery query) {
+        QueryResultCache.Key key = QueryResultCache.key(query, FORMAT);
+        assertTrue(cache.put(key, new byte[] {0}, cache.getVersion()));
+        return key;
+    }
+    
+    private static Task task(String title, TaskPriority priority, boolean completed) {
+        return new Task("id", title, priority, completed, "2025-01-20T10:30:00", "2025-01-20T10:30:00");
+    }
+}
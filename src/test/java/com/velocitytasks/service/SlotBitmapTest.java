@@ -0,0 +1,88 @@
+package com.velocitytasks.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SlotBitmap
+ */
+class SlotBitmapTest {
+    
+    @Test
+    void testAddRemoveContains() {
+        SlotBitmap bitmap = new SlotBitmap();
+        assertTrue(bitmap.add(5));
+        assertTrue(bitmap.add(70000));
+        assertFalse(bitmap.add(5));
+        
+        assertEquals(2, bitmap.cardinality());
+        assertTrue(bitmap.contains(5));
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(6));
+        
+        assertTrue(bitmap.remove(5));
+        assertFalse(bitmap.remove(5));
+        assertEquals(1, bitmap.cardinality());
+        assertTrue(bitmap.remove(70000));
+        assertTrue(bitmap.isEmpty());
+    }
+    
+    @Test
+    void testDenseContainersConvertBothWays() {
+        SlotBitmap bitmap = new SlotBitmap();
+        for (int slot = 0; slot < 10000; slot++) {
+            bitmap.add(slot);
+        }
+        assertEquals(10000, bitmap.cardinality());
+        for (int slot = 0; slot < 10000; slot += 2) {
+            bitmap.remove(slot);
+        }
+        for (int slot = 0; slot < 9000; slot++) {
+            bitmap.remove(slot);
+        }
+        
+        List<Integer> remaining = new ArrayList<>();
+        bitmap.forEach(remaining::add);
+        assertEquals(500, remaining.size());
+        assertEquals(9001, remaining.get(0));
+        assertEquals(9999, remaining.get(remaining.size() - 1));
+    }
+    
+    @Test
+    void testIntersectionMatchesBitSet() {
+        Random random = new Random(42);
+        SlotBitmap dense = new SlotBitmap();
+        SlotBitmap sparse = new SlotBitmap();
+        BitSet expectedDense = new BitSet();
+        BitSet expectedSparse = new BitSet();
+        for (int i = 0; i < 150000; i++) {
+            int slot = random.nextInt(200000);
+            dense.add(slot);
+            expectedDense.set(slot);
+        }
+        for (int i = 0; i < 3000; i++) {
+            int slot = random.nextInt(200000);
+            sparse.add(slot);
+            expectedSparse.set(slot);
+        }
+        
+        BitSet expected = (BitSet) expectedDense.clone();
+        expected.and(expectedSparse);
+        assertIntersection(expected, dense.and(sparse));
+        assertIntersection(expected, sparse.and(dense));
+        assertIntersection(expectedDense, dense.and(dense));
+    }
+    
+    private static void assertIntersection(BitSet expected, SlotBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        BitSet visited = new BitSet();
+        actual.forEach(visited::set);
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,79 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TaskActivityHistory
+ */
+class TaskActivityHistoryTest {
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private final TaskActivityHistory history = new TaskActivityHistory(clock::get);
+
+    @Test
+    void testCountsByEventAndPriority() {
+        history.record(TaskActivityHistory.Event.CREATED, TaskPriority.HIGH);
+        history.record(TaskActivityHistory.Event.CREATED, TaskPriority.LOW);
+        history.record(TaskActivityHistory.Event.COMPLETED, TaskPriority.HIGH);
+        history.record(TaskActivityHistory.Event.DELETED, TaskPriority.LOW);
+
+        TaskActivityHistory.Window window = history.getWindow(60, 60);
+
+        assertEquals(2, window.getTotal(TaskActivityHistory.Event.CREATED));
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.CREATED, TaskPriority.HIGH));
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.COMPLETED, TaskPriority.HIGH));
+        assertEquals(0, window.getTotal(TaskActivityHistory.Event.COMPLETED, TaskPriority.LOW));
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.DELETED));
+        assertEquals(2.0, window.getRatePerMinute(TaskActivityHistory.Event.CREATED));
+    }
+
+    @Test
+    void testWindowExcludesOlderActivity() {
+        history.record(TaskActivityHistory.Event.CREATED, TaskPriority.MEDIUM);
+        clock.addAndGet(120_000);
+        history.record(TaskActivityHistory.Event.CREATED, TaskPriority.MEDIUM);
+
+        assertEquals(1, history.getWindow(60, 60).getTotal(TaskActivityHistory.Event.CREATED));
+        assertEquals(2, history.getWindow(300, 60).getTotal(TaskActivityHistory.Event.CREATED));
+    }
+
+    @Test
+    void testSeriesIsAggregatedIntoPoints() {
+        for (int second = 0; second < 10; second++) {
+            history.record(TaskActivityHistory.Event.CREATED, TaskPriority.LOW);
+            clock.addAndGet(1000);
+        }
+        clock.addAndGet(-1000);
+
+        TaskActivityHistory.Window window = history.getWindow(10, 5);
+
+        assertEquals(1, window.getResolutionSeconds());
+        assertEquals(2, window.getPointSeconds());
+        assertEquals(5, window.getPointCount());
+        for (int point = 0; point < 5; point++) {
+            assertEquals(2, window.getPointValue(point, TaskActivityHistory.Event.CREATED));
+        }
+        assertTrue(window.getPointStartMillis(0) < window.getPointStartMillis(4));
+    }
+
+    @Test
+    void testLongWindowsUseMinuteRollupsAndMemoryStaysBounded() {
+        history.record(TaskActivityHistory.Event.COMPLETED, TaskPriority.HIGH);
+        // Run well past both ring spans; recycled buckets must not resurface old counts
+        clock.addAndGet(3 * 24 * 3600_000L);
+        history.record(TaskActivityHistory.Event.COMPLETED, TaskPriority.HIGH);
+        clock.addAndGet(2 * 3600_000L);
+
+        TaskActivityHistory.Window window = history.getWindow(24 * 3600, 24);
+
+        assertEquals(60, window.getResolutionSeconds());
+        assertEquals(24, window.getPointCount());
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.COMPLETED));
+        assertEquals(0, history.getWindow(3600, 60).getTotal(TaskActivityHistory.Event.COMPLETED));
+    }
+}
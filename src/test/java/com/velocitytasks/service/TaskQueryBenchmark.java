@@ -0,0 +1,57 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Query latency over a million tasks, comparing indexed queries with a full scan. Not a unit
+ * test; run with
+ * {@code java -Xmx2g -cp target/classes:target/test-classes com.velocitytasks.service.TaskQueryBenchmark}
+ * after {@code mvn test-compile}.
+ */
+public class TaskQueryBenchmark {
+    private static final int TASKS = 1_000_000;
+    private static final int ITERATIONS = 50;
+    private static final String[] WORDS = {"report", "deploy", "review", "invoice", "server", "backup",
+            "meeting", "budget", "release", "customer"};
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        TaskService service = TaskService.newStandaloneInstance();
+        for (int i = 0; i < TASKS; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String createdAt = String.format("2025-01-%02dT%02d:%02d:%02d", 1 + i / 86400, i / 3600 % 24, i / 60 % 60, i % 60);
+            service.addTask(new Task("t" + i, title, TaskPriority.values()[random.nextInt(3)],
+                    random.nextInt(10) == 0, createdAt, createdAt));
+        }
+        List<Task> all = service.snapshotTasks();
+
+        measure("status+priority, limit 50", () -> service.query(TaskQuery.all()
+                .completed(true).priority(TaskPriority.HIGH).limit(50)));
+        measure("status+priority+search, limit 50", () -> service.query(TaskQuery.all()
+                .completed(true).priority(TaskPriority.HIGH).search("budget rel").limit(50)));
+        measure("selective search", () -> service.query(TaskQuery.all().search("999999")));
+        measure("full scan, same filters", () -> all.stream()
+                .filter(t -> t.isCompleted() && t.getPriority() == TaskPriority.HIGH
+                        && t.getTitle().toLowerCase().contains("budget rel"))
+                .sorted(TaskQuery.Sort.CREATED_DESC.getComparator())
+                .limit(50)
+                .count());
+    }
+
+    private static void measure(String name, Supplier<?> query) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+        System.out.printf("%-36s %8.2f ms%n", name, millis);
+    }
+}
@@ -0,0 +1,162 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TaskQuery execution in TaskService
+ */
+class TaskQueryTest {
+    
+    private static final String[] WORDS = {"report", "deploy", "review", "invoice", "Server", "backup"};
+    
+    @Test
+    void testCombinedFilters() {
+        TaskService service = TaskService.newStandaloneInstance();
+        service.addTask(task("1", "Write report", TaskPriority.HIGH, false, 1));
+        service.addTask(task("2", "Review report", TaskPriority.HIGH, true, 2));
+        service.addTask(task("3", "Report bug", TaskPriority.LOW, false, 3));
+        service.addTask(task("4", "Deploy", TaskPriority.HIGH, false, 4));
+        
+        List<Task> results = service.query(TaskQuery.all()
+                .completed(false).priority(TaskPriority.HIGH).search("REPORT"));
+        
+        assertEquals(List.of("1"), ids(results));
+    }
+    
+    @Test
+    void testSortAndLimit() {
+        TaskService service = TaskService.newStandaloneInstance();
+        service.addTask(task("a", "Banana", TaskPriority.LOW, false, 1));
+        service.addTask(task("b", "apple", TaskPriority.HIGH, false, 2));
+        service.addTask(task("c", "Cherry", TaskPriority.MEDIUM, false, 3));
+        
+        assertEquals(List.of("c", "b", "a"), ids(service.query(TaskQuery.all())));
+        assertEquals(List.of("b", "a"), ids(service.query(TaskQuery.all().sort(TaskQuery.Sort.TITLE_ASC).limit(2))));
+        assertEquals(List.of("b"), ids(service.query(TaskQuery.all().sort(TaskQuery.Sort.PRIORITY_DESC).limit(1))));
+        assertEquals(List.of("a", "b", "c"), ids(service.query(TaskQuery.all().sort(TaskQuery.Sort.fromParameter("createdAt")))));
+        assertTrue(service.query(TaskQuery.all().limit(0)).isEmpty());
+        
+        // Timestamps that are not ISO local date-times still sort as strings
+        service.addTask(task("d", "Date", TaskPriority.LOW, false, 0));
+        service.getTaskById("d").get().setCreatedAt("2025-01-21");
+        service.updateTask("d", new Task(null, null, null, false, null, null));
+        assertEquals("d", service.query(TaskQuery.all()).get(0).getId());
+        assertNull(TaskQuery.Sort.fromParameter("-unknown"));
+    }
+    
+    @Test
+    void testShortAndMissingSearchTerms() {
+        TaskService service = TaskService.newStandaloneInstance();
+        service.addTask(task("1", "Go", TaskPriority.LOW, false, 1));
+        service.addTask(task("2", "Gopher", TaskPriority.LOW, false, 2));
+        
+        assertEquals(List.of("2", "1"), ids(service.searchTasks("go")));
+        assertEquals(List.of("2"), ids(service.searchTasks("pher")));
+        assertTrue(service.searchTasks("zzz").isEmpty());
+        assertEquals(2, service.searchTasks("  ").size());
+    }
+    
+    @Test
+    void testIndexFollowsUpdatesAndDeletes() {
+        TaskService service = TaskService.newStandaloneInstance();
+        Task task = service.addTask(task("1", "Old title", TaskPriority.LOW, false, 1));
+        
+        Task updateData = new Task();
+        updateData.setTitle("New title");
+        updateData.setPriority(TaskPriority.HIGH);
+        updateData.setCompleted(true);
+        service.updateTask(task.getId(), updateData);
+        
+        assertTrue(service.searchTasks("old").isEmpty());
+        assertEquals(1, service.searchTasks("new").size());
+        assertTrue(service.getTasksByPriority(TaskPriority.LOW).isEmpty());
+        assertEquals(1, service.getTasksByStatus(true).size());
+        assertEquals(1, service.getTaskStats().getHighPriority());
+        
+        service.deleteTask(task.getId());
+        assertTrue(service.getAllTasks().isEmpty());
+        assertTrue(service.searchTasks("new").isEmpty());
+        assertEquals(0, service.getTaskStats().getTotal());
+    }
+    
+    @Test
+    void testQueriesMatchFullScan() {
+        Random random = new Random(7);
+        TaskService service = TaskService.newStandaloneInstance();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " #" + i;
+            TaskPriority priority = TaskPriority.values()[random.nextInt(3)];
+            service.addTask(task("t" + i, title, priority, random.nextInt(4) == 0, i));
+            ids.add("t" + i);
+        }
+        // Churn so slots are freed and reused
+        for (int i = 0; i < 5000; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            if (random.nextBoolean()) {
+                service.deleteTask(id);
+            } else {
+                Task updateData = new Task();
+                updateData.setTitle(WORDS[random.nextInt(WORDS.length)] + " changed");
+                updateData.setCompleted(random.nextBoolean());
+                service.updateTask(id, updateData);
+            }
+        }
+        
+        List<Task> everything = service.snapshotTasks();
+        // Sorts whose order is total here (creation times are unique)
+        TaskQuery.Sort[] sorts = {TaskQuery.Sort.CREATED_DESC, TaskQuery.Sort.CREATED_ASC, TaskQuery.Sort.PRIORITY_DESC};
+        for (Boolean completed : new Boolean[] {null, true, false}) {
+            for (TaskPriority priority : new TaskPriority[] {null, TaskPriority.HIGH, TaskPriority.LOW}) {
+                for (String search : new String[] {null, "ser", "review", "ng", "#1234", "nothing"}) {
+                    for (TaskQuery.Sort sort : sorts) {
+                        for (int limit : new int[] {50, Integer.MAX_VALUE}) {
+                            TaskQuery query = TaskQuery.all().completed(completed).priority(priority)
+                                    .search(search).sort(sort).limit(limit);
+                            String lowerSearch = search != null ? search.toLowerCase() : null;
+                            List<String> expected = everything.stream()
+                                    .filter(t -> completed == null || t.isCompleted() == completed)
+                                    .filter(t -> priority == null || t.getPriority() == priority)
+                                    .filter(t -> lowerSearch == null || t.getTitle().toLowerCase().contains(lowerSearch))
+                                    .sorted(sort.getComparator())
+                                    .limit(limit)
+                                    .map(Task::getId)
+                                    .collect(Collectors.toList());
+                            assertEquals(expected, ids(service.query(query)),
+                                    completed + "/" + priority + "/" + search + "/" + sort + "/" + limit);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testTimestampKeysOrderLikeStrings() {
+        String[] timestamps = {"2025-01-20T10:30:00", "2025-01-20T10:30:00.5", "2025-01-20T10:30:01", "2025-12-01T00:00:00"};
+        for (int i = 1; i < timestamps.length; i++) {
+            assertTrue(TaskIndex.timestampKey(timestamps[i - 1]) <= TaskIndex.timestampKey(timestamps[i]));
+        }
+        assertEquals(TaskIndex.timestampKey("2025-01-20T10:30:00"), TaskIndex.timestampKey("2025-01-20T10:30:00.5"));
+        assertEquals(-1, TaskIndex.timestampKey("2025-01-20 10:30"));
+        assertEquals(-1, TaskIndex.timestampKey(null));
+    }
+    
+    private static Task task(String id, String title, TaskPriority priority, boolean completed, int second) {
+        String createdAt = String.format("2025-01-20T%02d:%02d:%02d", second / 3600, second / 60 % 60, second % 60);
+        return new Task(id, title, priority, completed, createdAt, createdAt);
+    }
+    
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
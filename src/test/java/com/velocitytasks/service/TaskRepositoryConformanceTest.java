@@ -0,0 +1,289 @@
+package com.velocitytasks.service;
+
+import com.velocitytasks.archive.TaskArchive;
+import com.velocitytasks.archive.TaskArchiver;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link TaskRepository} must share. Subclasses supply the repository; the
+ * results are checked against a plain scan of the tasks written.
+ */
+public abstract class TaskRepositoryConformanceTest {
+
+    protected TaskRepository repository;
+
+    @TempDir
+    Path archiveDirectory;
+
+    protected abstract TaskRepository newRepository() throws Exception;
+
+    @BeforeEach
+    void openRepository() throws Exception {
+        repository = newRepository();
+    }
+
+    @AfterEach
+    void closeRepository() throws Exception {
+        repository.close();
+    }
+
+    @Test
+    void testComputeInsertsReplacesAndDeletes() {
+        List<String> changes = new ArrayList<>();
+        Task task = task(1, "Write report", TaskPriority.HIGH, false);
+
+        assertSame(task, repository.compute(task.getId(), (id, current) -> {
+            assertNull(current);
+            return task;
+        }, (previous, current) -> changes.add(previous + "->" + current.getTitle())));
+        assertEquals("Write report", repository.findById(task.getId()).orElseThrow().getTitle());
+        assertTrue(repository.contains(task.getId()));
+
+        Task renamed = new Task(task);
+        renamed.setTitle("Write final report");
+        repository.compute(task.getId(), (id, current) -> {
+            assertEquals("Write report", current.getTitle());
+            return renamed;
+        }, (previous, current) -> changes.add(previous.getTitle() + "->" + current.getTitle()));
+
+        // Returning the current task is no change
+        repository.compute(task.getId(), (id, current) -> current, (previous, current) -> changes.add("unexpected"));
+        repository.compute("missing", (id, current) -> null, (previous, current) -> changes.add("unexpected"));
+
+        assertNull(repository.compute(task.getId(), (id, current) -> null,
+                (previous, current) -> changes.add(previous.getTitle() + "->" + current)));
+        assertFalse(repository.findById(task.getId()).isPresent());
+        assertFalse(repository.contains(task.getId()));
+        assertFalse(repository.findById(null).isPresent());
+
+        assertEquals(List.of("null->Write report", "Write report->Write final report", "Write final report->null"),
+                changes);
+    }
+
+    @Test
+    void testQueriesMatchFullScan() {
+        Map<String, Task> expected = new HashMap<>();
+        Random random = new Random(42);
+        String[] words = {"report", "Review", "deploy", "50% done", "under_score", "Ünïcode", "a", "REPORT draft"};
+        for (int i = 0; i < 300; i++) {
+            Task task = task(i, words[random.nextInt(words.length)] + " " + i,
+                    TaskPriority.values()[random.nextInt(3)], random.nextBoolean());
+            save(task);
+            expected.put(task.getId(), task);
+        }
+        // Churn: retitle, reprioritize and delete some
+        for (int i = 0; i < 300; i += 7) {
+            String id = id(i);
+            Task changed = task(i, words[random.nextInt(words.length)] + " changed " + i,
+                    TaskPriority.values()[random.nextInt(3)], expected.get(id).isCompleted());
+            save(changed);
+            expected.put(id, changed);
+        }
+        for (int i = 3; i < 300; i += 11) {
+            repository.compute(id(i), (id, current) -> null, (previous, current) -> { });
+            expected.remove(id(i));
+        }
+
+        Boolean[] statuses = {null, true, false};
+        TaskPriority[] priorities = {null, TaskPriority.LOW, TaskPriority.HIGH};
+        String[] searches = {null, "report", "RePoRt", "% d", "_", "r", "ünï", "changed 1", "nothing like it"};
+        int[] limits = {Integer.MAX_VALUE, 5, 0};
+        for (Boolean status : statuses) {
+            for (TaskPriority priority : priorities) {
+                for (String search : searches) {
+                    for (TaskQuery.Sort sort : TaskQuery.Sort.values()) {
+                        for (int limit : limits) {
+                            TaskQuery query = TaskQuery.all().completed(status).priority(priority)
+                                    .search(search).sort(sort).limit(limit);
+                            List<String> scan = expected.values().stream().filter(query::matches)
+                                    .sorted(sort.getComparator()).limit(limit)
+                                    .map(Task::getId).collect(Collectors.toList());
+                            List<String> actual = repository.find(query).stream()
+                                    .map(Task::getId).collect(Collectors.toList());
+                            assertEquals(scan, actual, status + " " + priority + " " + search + " " + sort + " " + limit);
+                        }
+                    }
+                }
+                long count = expected.values().stream()
+                        .filter(TaskQuery.all().completed(status).priority(priority)::matches).count();
+                assertEquals(count, repository.count(status, priority));
+            }
+        }
+    }
+
+    @Test
+    void testSaveAllOverwritesByIdAndKeepsFieldsAsIs() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            tasks.add(task(i, "Bulk " + i, TaskPriority.values()[i % 3], i % 2 == 0));
+        }
+        repository.saveAll(tasks);
+        Task changed = task(5, "Bulk overwritten", TaskPriority.HIGH, false);
+        repository.saveAll(List.of(changed));
+
+        assertEquals(1200, repository.count(null, null));
+        assertEquals(new HashSet<>(tasks.stream().map(Task::getId).collect(Collectors.toList())),
+                new HashSet<>(repository.findAllIds()));
+        Task stored = repository.findById(tasks.get(5).getId()).orElseThrow();
+        assertEquals("Bulk overwritten", stored.getTitle());
+        assertEquals(changed.getCreatedAt(), stored.getCreatedAt());
+        assertEquals(changed.getUpdatedAt(), stored.getUpdatedAt());
+        assertEquals(TaskPriority.HIGH, stored.getPriority());
+        assertFalse(stored.isCompleted());
+        assertEquals(List.of(changed.getId()), ids(repository.find(TaskQuery.all().search("overwritten"))));
+        assertTrue(repository.find(TaskQuery.all().search("bulk 5 ")).isEmpty());
+    }
+
+    @Test
+    void testSnapshotIsPointInTime() {
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Task task = task(i, "Snapshot " + i, TaskPriority.MEDIUM, false);
+            save(task);
+            before.put(task.getId(), task.getTitle());
+        }
+
+        Map<String, String> seen = new HashMap<>();
+        try (TaskSnapshot snapshot = repository.openSnapshot()) {
+            snapshot.nextBatch(10).forEach(task -> seen.put(task.getId(), task.getTitle()));
+            // Change every task, delete some and add more while the snapshot is being read
+            for (int i = 0; i < 50; i++) {
+                Task changed = task(i, "Changed " + i, TaskPriority.HIGH, true);
+                save(changed);
+            }
+            for (int i = 0; i < 50; i += 5) {
+                repository.compute(id(i), (id, current) -> null, (previous, current) -> { });
+            }
+            save(task(100, "Added later", TaskPriority.LOW, false));
+            for (List<Task> batch = snapshot.nextBatch(7); !batch.isEmpty(); batch = snapshot.nextBatch(7)) {
+                batch.forEach(task -> assertNull(seen.put(task.getId(), task.getTitle())));
+            }
+            assertTrue(snapshot.nextBatch(7).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> snapshot.nextBatch(0));
+        }
+        assertEquals(before, seen);
+    }
+
+    @Test
+    void testChangesToOneIdAreSerialized() throws Exception {
+        String id = id(0);
+        save(task(0, "0", TaskPriority.LOW, false));
+        List<Integer> observed = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < 4; worker++) {
+                futures.add(workers.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        repository.compute(id, (key, current) -> {
+                            Task next = new Task(current);
+                            next.setTitle(String.valueOf(Integer.parseInt(current.getTitle()) + 1));
+                            return next;
+                        }, (previous, current) -> observed.add(Integer.parseInt(current.getTitle())));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdown();
+        }
+        assertEquals("400", repository.findById(id).orElseThrow().getTitle());
+        List<Integer> inOrder = new ArrayList<>();
+        for (int i = 1; i <= 400; i++) {
+            inOrder.add(i);
+        }
+        assertEquals(inOrder, observed);
+    }
+
+    @Test
+    void testServiceRunsOnRepository() {
+        TaskService service = TaskService.newStandaloneInstance(repository);
+        Task task = service.addTask(new Task("Backed by " + repository.getClass().getSimpleName(), TaskPriority.HIGH));
+        service.addTask(new Task("Another", TaskPriority.LOW));
+        Task updateData = new Task();
+        updateData.setPriority(null);
+        updateData.setCompleted(true);
+        assertTrue(service.updateTask(task.getId(), updateData).orElseThrow().isCompleted());
+        assertTrue(service.getTaskById(task.getId()).orElseThrow().isCompleted());
+
+        TaskService.TaskStats stats = service.getTaskStats();
+        assertEquals(2, stats.getTotal());
+        assertEquals(1, stats.getCompleted());
+        assertEquals(1, stats.getHighPriority());
+        assertEquals(1, service.searchTasks("backed").size());
+        assertEquals(2, service.snapshotTasks().size());
+
+        assertTrue(service.deleteTask(task.getId()));
+        assertFalse(service.deleteTask(task.getId()));
+        assertEquals(1, service.getAllTasks().size());
+    }
+
+    @Test
+    void testArchiverMovesOldCompletedTasksOut() throws Exception {
+        TaskService service = TaskService.newStandaloneInstance(repository);
+        for (int i = 0; i < 3; i++) {
+            service.addTask(task(i, "Done " + i, TaskPriority.values()[i], true));
+        }
+        service.addTask(task(3, "Still open", TaskPriority.LOW, false));
+
+        try (TaskArchive archive = TaskArchive.open(archiveDirectory);
+             TaskArchiver archiver = new TaskArchiver(service, archive, Duration.ofDays(1))) {
+            service.setArchive(archive);
+            assertEquals(3, archiver.runOnce());
+            assertEquals(List.of(id(3)), repository.findAllIds());
+            assertEquals(3, archive.getTaskCount());
+
+            // Nothing is left to archive, so another run writes nothing
+            long size = archive.getSizeBytes();
+            assertEquals(0, archiver.runOnce());
+            assertEquals(size, archive.getSizeBytes());
+
+            assertEquals("Done 1", service.getTaskById(id(1)).orElseThrow().getTitle());
+            assertEquals(4, service.getTaskStats().getTotal());
+            assertEquals(3, service.getTaskStats().getCompleted());
+        }
+    }
+
+    private void save(Task task) {
+        repository.compute(task.getId(), (id, current) -> task, (previous, current) -> { });
+    }
+
+    /**
+     * Deterministic IDs and distinct, ordered timestamps, so every sort has a single answer
+     */
+    private static Task task(int n, String title, TaskPriority priority, boolean completed) {
+        String createdAt = String.format("2025-01-%02dT%02d:%02d:00", 1 + n % 28, n / 60 % 24, n % 60);
+        String updatedAt = String.format("2025-02-%02dT%02d:%02d:00", 1 + (n * 7) % 28, n / 60 % 24, n % 60);
+        return new Task(id(n), title, priority, completed, createdAt, updatedAt);
+    }
+
+    private static String id(int n) {
+        return String.format("task-%05d", n);
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
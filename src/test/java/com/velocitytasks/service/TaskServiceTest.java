@@ -7,6 +7,8 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +38,17 @@ class TaskServiceTest {
         assertFalse(createdTask.isCompleted());
     }
     
+    @Test
+    void testCreateTaskFillsMissingIdAndTimestamps() {
+        Task task = new Task(null, "Decoded Task", TaskPriority.LOW, true, "2025-01-20T10:30:00", null);
+        Task createdTask = taskService.addTask(task);
+        
+        assertNotNull(createdTask.getId());
+        assertEquals("2025-01-20T10:30:00", createdTask.getCreatedAt());
+        assertNotNull(createdTask.getUpdatedAt());
+        assertTrue(createdTask.isCompleted());
+    }
+    
     @Test
     void testGetTaskById() {
         Task task = new Task("Test Task", TaskPriority.MEDIUM);
@@ -123,4 +136,48 @@ class TaskServiceTest {
         assertTrue(stats.getCompleted() >= 1);
         assertTrue(stats.getPending() >= 1);
     }
+    
+    @Test
+    void testActivityHistoryRecordsMutations() {
+        TaskService service = TaskService.newStandaloneInstance();
+        Task task = service.addTask(new Task("Tracked Task", TaskPriority.HIGH));
+        
+        Task updateData = new Task();
+        updateData.setCompleted(true);
+        service.updateTask(task.getId(), updateData);
+        service.deleteTask(task.getId());
+        
+        TaskActivityHistory.Window window = service.getActivityHistory().getWindow(60, 1);
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.CREATED, TaskPriority.HIGH));
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.COMPLETED));
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.DELETED));
+    }
+    
+    @Test
+    void testRolledBackWritesAreNotRecorded() {
+        boolean[] failWrites = new boolean[1];
+        TaskService service = TaskService.newStandaloneInstance(new InMemoryTaskRepository() {
+            @Override
+            public Task compute(String id, BiFunction<String, Task, Task> remapping, BiConsumer<Task, Task> onChange) {
+                if (failWrites[0]) {
+                    remapping.apply(id, findById(id).orElse(null));
+                    throw new TaskRepositoryException("Write to " + id + " rolled back", null);
+                }
+                return super.compute(id, remapping, onChange);
+            }
+        });
+        Task task = service.addTask(new Task("Tracked Task", TaskPriority.HIGH));
+        
+        failWrites[0] = true;
+        Task updateData = new Task();
+        updateData.setCompleted(true);
+        assertThrows(TaskRepositoryException.class, () -> service.addTask(new Task("Lost", TaskPriority.LOW)));
+        assertThrows(TaskRepositoryException.class, () -> service.updateTask(task.getId(), updateData));
+        assertThrows(TaskRepositoryException.class, () -> service.deleteTask(task.getId()));
+        
+        TaskActivityHistory.Window window = service.getActivityHistory().getWindow(60, 1);
+        assertEquals(1, window.getTotal(TaskActivityHistory.Event.CREATED));
+        assertEquals(0, window.getTotal(TaskActivityHistory.Event.COMPLETED));
+        assertEquals(0, window.getTotal(TaskActivityHistory.Event.DELETED));
+    }
 }
@@ -0,0 +1,84 @@
+package com.velocitytasks.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IdempotencyKeyStore
+ */
+class IdempotencyKeyStoreTest {
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private final IdempotencyKeyStore store = new IdempotencyKeyStore(3, 60_000, clock::get);
+
+    @Test
+    void testCompletedResponseIsReplayed() {
+        IdempotencyKeyStore.Claim first = store.claim("k1", "POST / 1");
+        assertEquals(IdempotencyKeyStore.Outcome.CLAIMED, first.getOutcome());
+        assertEquals(IdempotencyKeyStore.Outcome.IN_PROGRESS, store.claim("k1", "POST / 1").getOutcome());
+
+        store.complete(first, response(201, "{\"id\":\"a\"}"));
+        IdempotencyKeyStore.Claim retry = store.claim("k1", "POST / 1");
+
+        assertEquals(IdempotencyKeyStore.Outcome.COMPLETED, retry.getOutcome());
+        assertEquals(201, retry.getResponse().getStatus());
+        assertEquals("{\"id\":\"a\"}", new String(retry.getResponse().getBody(), StandardCharsets.UTF_8));
+        assertThrows(IllegalStateException.class, () -> store.complete(retry, response(200, "")));
+    }
+
+    @Test
+    void testKeyReusedForDifferentRequestIsRefused() {
+        store.complete(store.claim("k1", "POST / 1"), response(201, "{}"));
+
+        IdempotencyKeyStore.Claim reused = store.claim("k1", "DELETE /a 0");
+
+        assertEquals(IdempotencyKeyStore.Outcome.MISMATCH, reused.getOutcome());
+        assertNull(reused.getResponse());
+    }
+
+    @Test
+    void testReleasedKeyCanBeClaimedAgain() {
+        store.release(store.claim("k1", "PUT /a 1"));
+
+        assertEquals(IdempotencyKeyStore.Outcome.CLAIMED, store.claim("k1", "PUT /a 1").getOutcome());
+    }
+
+    @Test
+    void testKeysExpireAndOldestAreEvicted() {
+        store.complete(store.claim("k1", "f"), response(204, ""));
+        clock.addAndGet(30_000);
+        store.complete(store.claim("k2", "f"), response(204, ""));
+        store.complete(store.claim("k3", "f"), response(204, ""));
+        store.complete(store.claim("k4", "f"), response(204, ""));
+
+        assertEquals(3, store.size());
+        assertEquals(IdempotencyKeyStore.Outcome.CLAIMED, store.claim("k1", "f").getOutcome());
+
+        clock.addAndGet(60_000);
+        assertEquals(0, store.size());
+        assertEquals(IdempotencyKeyStore.Outcome.CLAIMED, store.claim("k2", "f").getOutcome());
+    }
+
+    @Test
+    void testOldestResponsesAreEvictedOverTheByteBudget() {
+        IdempotencyKeyStore bounded = new IdempotencyKeyStore(10, 10, 60_000, clock::get);
+        bounded.complete(bounded.claim("k1", "f"), response(201, "123456"));
+        bounded.complete(bounded.claim("k2", "f"), response(201, "1234"));
+        assertEquals(10, bounded.getStoredBytes());
+
+        bounded.complete(bounded.claim("k3", "f"), response(201, "12"));
+
+        assertEquals(2, bounded.size());
+        assertEquals(6, bounded.getStoredBytes());
+        assertEquals(IdempotencyKeyStore.Outcome.COMPLETED, bounded.claim("k2", "f").getOutcome());
+        assertEquals(IdempotencyKeyStore.Outcome.CLAIMED, bounded.claim("k1", "f").getOutcome());
+    }
+
+    private static IdempotencyKeyStore.StoredResponse response(int status, String body) {
+        return new IdempotencyKeyStore.StoredResponse(status, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+}
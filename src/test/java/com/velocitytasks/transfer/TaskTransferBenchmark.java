@@ -0,0 +1,116 @@
+package com.velocitytasks.transfer;
+
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskService;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a generated NDJSON body of many tasks through {@link TaskImporter} into a counting
+ * sink, and exports a populated service to a discarding writer, reporting throughput and peak
+ * heap. Not a unit test; run with a small heap to check memory stays flat, e.g.
+ * {@code java -Xmx64m -cp target/classes:target/test-classes:<gson.jar> com.velocitytasks.transfer.TaskTransferBenchmark 10000000}
+ * after {@code mvn test-compile}.
+ */
+public class TaskTransferBenchmark {
+    private static final int EXPORTED_TASKS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        long lines = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+
+        AtomicLong added = new AtomicLong();
+        long start = System.nanoTime();
+        try (TaskImporter importer = new TaskImporter()) {
+            TaskImporter.Result result = importer.importTasks(new GeneratedNdjson(lines), task -> {
+                added.incrementAndGet();
+                return task;
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("import: %,d tasks (%,d failed) in %.1f s, %,.0f tasks/s%n",
+                    result.getImported(), result.getFailed(), seconds, result.getImported() / seconds);
+        }
+
+        TaskService service = TaskService.newStandaloneInstance();
+        for (int i = 0; i < EXPORTED_TASKS; i++) {
+            service.addTask(new Task("Exported task " + i, TaskPriority.values()[i % 3]));
+        }
+        CountingWriter out = new CountingWriter();
+        start = System.nanoTime();
+        long exported = TaskExporter.exportTasks(service, out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("export: %,d tasks, %,d chars in %.2f s, %,.0f tasks/s%n",
+                exported, out.chars, seconds, exported / seconds);
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("peak heap: %,d KB (max %,d KB)%n", peak / 1024, Runtime.getRuntime().maxMemory() / 1024);
+    }
+
+    /**
+     * NDJSON body produced on the fly, one task per line
+     */
+    private static final class GeneratedNdjson extends Reader {
+        private final long lines;
+        private long line;
+        private char[] current = new char[0];
+        private int position;
+
+        GeneratedNdjson(long lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == current.length) {
+                if (line == lines) {
+                    return -1;
+                }
+                current = ("{\"id\":\"task-" + line + "\",\"title\":\"Imported task " + line
+                        + "\",\"priority\":\"HIGH\",\"completed\":false,\"createdAt\":\"2025-01-20T10:30:00\","
+                        + "\"updatedAt\":\"2025-01-20T10:30:00\"}\n").toCharArray();
+                position = 0;
+                line++;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class CountingWriter extends Writer {
+        private long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void write(String value, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.velocitytasks.transfer;
+
+import com.velocitytasks.archive.TaskArchive;
+import com.velocitytasks.model.Task;
+import com.velocitytasks.model.TaskPriority;
+import com.velocitytasks.service.TaskService;
+import com.velocitytasks.service.TaskSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for NDJSON export and import
+ */
+class TaskTransferTest {
+    
+    private final TaskImporter importer = new TaskImporter(4, 7);
+    
+    @TempDir
+    Path directory;
+    
+    @AfterEach
+    void tearDown() {
+        importer.close();
+    }
+    
+    @Test
+    void testExportThenImportRestoresEveryTask() throws Exception {
+        TaskService source = TaskService.newStandaloneInstance();
+        for (int i = 0; i < 100; i++) {
+            Task task = source.addTask(new Task("Task " + i + (i % 10 == 0 ? " with \"quotes\"\nand 🚀" : ""),
+                    TaskPriority.values()[i % 3]));
+            if (i % 4 == 0) {
+                Task updateData = new Task();
+                updateData.setCompleted(true);
+                source.updateTask(task.getId(), updateData);
+            }
+        }
+        
+        StringWriter out = new StringWriter();
+        assertEquals(100, TaskExporter.exportTasks(source, out));
+        assertEquals(100, out.toString().split("\n").length);
+        
+        TaskService target = TaskService.newStandaloneInstance();
+        TaskImporter.Result result = importer.importTasks(new StringReader(out.toString()), target);
+        
+        assertEquals(100, result.getImported());
+        assertEquals(0, result.getFailed());
+        Map<String, Task> restored = target.snapshotTasks().stream()
+                .collect(Collectors.toMap(Task::getId, Function.identity()));
+        for (Task task : source.snapshotTasks()) {
+            Task copy = restored.get(task.getId());
+            assertNotNull(copy);
+            assertEquals(task.getTitle(), copy.getTitle());
+            assertEquals(task.getPriority(), copy.getPriority());
+            assertEquals(task.isCompleted(), copy.isCompleted());
+            assertEquals(task.getCreatedAt(), copy.getCreatedAt());
+            assertEquals(task.getUpdatedAt(), copy.getUpdatedAt());
+        }
+    }
+    
+    @Test
+    void testImportReportsBadLinesAndContinues() throws Exception {
+        String body = "{\"id\":\"a\",\"title\":\"First\",\"priority\":\"HIGH\"}\r\n"
+                + "\r\n"
+                + "{\"title\":\n"
+                + "{\"id\":\"b\",\"priority\":\"LOW\"}\r"
+                + "{\"id\":\"c\",\"title\":\"No priority\",\"updatedAt\":\"2025-01-20T10:30:00\"}";
+        TaskService target = TaskService.newStandaloneInstance();
+        
+        TaskImporter.Result result = importer.importTasks(new StringReader(body), target);
+        
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getFailed());
+        List<String> errors = result.getErrors();
+        errors.sort(Comparator.naturalOrder());
+        assertTrue(errors.get(0).startsWith("Line 3: "));
+        assertEquals("Line 4: Task title is required", errors.get(1));
+        
+        Task unprioritized = target.getTaskById("c").orElseThrow();
+        assertEquals(TaskPriority.MEDIUM, unprioritized.getPriority());
+        assertEquals("2025-01-20T10:30:00", unprioritized.getUpdatedAt());
+    }
+    
+    @Test
+    void testImportSkipsOverlongLines() throws Exception {
+        StringBuilder body = new StringBuilder("{\"title\":\"");
+        for (int i = 0; i < TaskImporter.MAX_LINE_CHARS; i++) {
+            body.append('x');
+        }
+        body.append("\"}\n{\"title\":\"Short\"}\n");
+        List<Task> added = new ArrayList<>();
+        
+        TaskImporter.Result result = importer.importTasks(new StringReader(body.toString()), task -> {
+            synchronized (added) {
+                added.add(task);
+            }
+            return task;
+        });
+        
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals("Short", added.get(0).getTitle());
+    }
+    
+    @Test
+    void testInFlightBatchesAreBoundedByCharacters() throws Exception {
+        String title = "x".repeat(100);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"title\":\"").append(title).append("\"}\n");
+        }
+        // One line longer than the whole budget still gets through on its own
+        body.append("{\"title\":\"").append("y".repeat(5000)).append("\"}\n");
+        AtomicLong charsRead = new AtomicLong();
+        FilterReader counting = new FilterReader(new StringReader(body.toString())) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                charsRead.addAndGet(Math.max(0, read));
+                return read;
+            }
+        };
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong imported = new AtomicLong();
+
+        try (TaskImporter bounded = new TaskImporter(4, 1000, 2000)) {
+            Thread reader = new Thread(() -> {
+                try {
+                    bounded.importTasks(counting, task -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        imported.incrementAndGet();
+                        return task;
+                    });
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            reader.start();
+            Thread.sleep(200);
+            // The budget, plus what the reader buffers and the line it holds
+            assertTrue(charsRead.get() <= 2000 + 8192 + 200, "Read " + charsRead.get() + " characters ahead");
+
+            release.countDown();
+            reader.join(5000);
+            assertFalse(reader.isAlive());
+            assertEquals(1001, imported.get());
+        }
+    }
+
+    @Test
+    void testSnapshotIgnoresChangesMadeWhileReading() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(service.addTask(new Task("Task " + i, TaskPriority.LOW)).getId());
+        }
+        
+        List<Task> seen = new ArrayList<>();
+        try (TaskSnapshot snapshot = service.openSnapshot()) {
+            seen.addAll(snapshot.nextBatch(3));
+            List<String> unread = ids.stream()
+                    .filter(id -> seen.stream().noneMatch(task -> task.getId().equals(id)))
+                    .collect(Collectors.toList());
+            
+            Task updateData = new Task();
+            updateData.setTitle("Renamed");
+            service.updateTask(unread.get(0), updateData);
+            service.deleteTask(unread.get(1));
+            service.addTask(new Task("Created later", TaskPriority.HIGH));
+            
+            for (List<Task> batch = snapshot.nextBatch(3); !batch.isEmpty(); batch = snapshot.nextBatch(3)) {
+                seen.addAll(batch);
+            }
+        }
+        
+        assertEquals(10, seen.size());
+        assertEquals(ids.stream().sorted().collect(Collectors.toList()),
+                seen.stream().map(Task::getId).sorted().collect(Collectors.toList()));
+        assertTrue(seen.stream().allMatch(task -> task.getTitle().startsWith("Task ")));
+    }
+    
+    @Test
+    void testSnapshotKeepsArchivedTasksRestoredWhileReading() throws IOException {
+        TaskService service = TaskService.newStandaloneInstance();
+        try (TaskArchive archive = TaskArchive.open(directory, 2)) {
+            service.setArchive(archive);
+            List<Task> archived = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                archived.add(new Task(Task.generateId(), "Archived " + i, TaskPriority.LOW, true,
+                        "2024-01-01T00:00:00", "2024-01-01T00:00:00"));
+            }
+            archive.append(archived);
+            Task hot = service.addTask(new Task("Hot", TaskPriority.HIGH));
+            
+            List<Task> seen = new ArrayList<>();
+            try (TaskSnapshot snapshot = service.openSnapshot()) {
+                seen.addAll(snapshot.nextBatch(1));
+                List<String> unread = archived.stream().map(Task::getId)
+                        .filter(id -> !id.equals(seen.get(0).getId()))
+                        .collect(Collectors.toList());
+                
+                // Both leave the archive before the snapshot reads their blocks
+                Task updateData = new Task();
+                updateData.setTitle("Restored");
+                updateData.setCompleted(false);
+                assertTrue(service.updateTask(unread.get(unread.size() - 1), updateData).isPresent());
+                assertTrue(service.deleteTask(unread.get(unread.size() - 2)));
+                
+                for (List<Task> batch = snapshot.nextBatch(1); !batch.isEmpty(); batch = snapshot.nextBatch(1)) {
+                    seen.addAll(batch);
+                }
+            }
+            
+            List<String> expected = new ArrayList<>();
+            archived.forEach(task -> expected.add(task.getId()));
+            expected.add(hot.getId());
+            assertEquals(expected.stream().sorted().collect(Collectors.toList()),
+                    seen.stream().map(Task::getId).sorted().collect(Collectors.toList()));
+            assertTrue(seen.stream().noneMatch(task -> task.getTitle().equals("Restored")));
+            
+            StringWriter out = new StringWriter();
+            assertEquals(6, TaskExporter.exportTasks(service, out));
+        }
+    }
+}